@@ -0,0 +1,284 @@
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+// Clase para acumular días de licencia por mes, por tipo y por empleado.
+// Compartida por SistemaLicenciasCompleto (StorageManager) y SistemaLicencias_ModificadoFinal (LicenciaDAO).
+//
+// Cada licencia se reparte entre los meses que cubre: del 25/01 al 05/02 suma 7 días a enero y 5 a
+// febrero. Los acumulados se guardan por (estado, mes, tipo) y por (estado, año, legajo), así que un
+// reporte solo recorre acumulados (algunos miles de celdas), nunca las licencias. El StorageManager los
+// mantiene al día en cada alta y cambio de estado o tipo; para una fuente sin acumulados (la base de
+// datos) se calculan de una vez con calcular(), en paralelo con fork-join.
+public final class AnaliticaLicencias {
+    // Debajo de este tamaño una tarea de fork-join recorre su tramo sin volver a dividirlo
+    private static final int UMBRAL_DIVISION = 8_192;
+    // Licencias que no se tomaron: por defecto no cuentan como días de licencia
+    private static final Set<String> ESTADOS_SIN_DIAS = Set.of("Rechazada", "Anulada");
+
+    private record ClaveMes(String estado, int mes, String tipo) {
+    }
+
+    private record ClaveEmpleado(String estado, int anio, int legajo) {
+    }
+
+    // Días acumulados de un empleado, para el ranking de ausentismo
+    public record DiasEmpleado(int legajo, long dias) {
+    }
+
+    // Extrae de cada elemento los datos que necesita el cálculo
+    public interface Lector<T> {
+        void sumarA(T elemento, AnaliticaLicencias analitica);
+    }
+
+    // Fuente dividida en particiones que pueden recorrerse en paralelo (por ejemplo, rangos de ID en la base)
+    public interface Particiones {
+        int cantidad();
+
+        void recorrer(int particion, AnaliticaLicencias analitica) throws Exception;
+    }
+
+    private final Map<ClaveMes, LongAdder> porMes = new ConcurrentHashMap<>();
+    private final Map<ClaveEmpleado, LongAdder> porEmpleado = new ConcurrentHashMap<>();
+
+    // Segura para varios hilos: cada celda es un LongAdder
+    public void sumar(int legajo, String tipo, String estado, LocalDate inicio, LocalDate fin) {
+        acumular(legajo, tipo, estado, inicio, fin, 1);
+    }
+
+    public void restar(int legajo, String tipo, String estado, LocalDate inicio, LocalDate fin) {
+        acumular(legajo, tipo, estado, inicio, fin, -1);
+    }
+
+    private void acumular(int legajo, String tipo, String estado, LocalDate inicio, LocalDate fin, int signo) {
+        if (inicio == null || fin == null || fin.isBefore(inicio)) return;
+        LocalDate desde = inicio;
+        while (!desde.isAfter(fin)) {
+            YearMonth mes = YearMonth.from(desde);
+            LocalDate finTramo = mes.atEndOfMonth().isBefore(fin) ? mes.atEndOfMonth() : fin;
+            long dias = finTramo.toEpochDay() - desde.toEpochDay() + 1;
+            porMes.computeIfAbsent(new ClaveMes(estado, indice(mes), tipo), k -> new LongAdder()).add(signo * dias);
+            porEmpleado.computeIfAbsent(new ClaveEmpleado(estado, mes.getYear(), legajo), k -> new LongAdder()).add(signo * dias);
+            desde = finTramo.plusDays(1);
+        }
+    }
+
+    // Suma los acumulados de otra instancia (la combinación de las tareas de fork-join)
+    public void combinar(AnaliticaLicencias otra) {
+        otra.porMes.forEach((clave, dias) -> porMes.computeIfAbsent(clave, k -> new LongAdder()).add(dias.sum()));
+        otra.porEmpleado.forEach((clave, dias) -> porEmpleado.computeIfAbsent(clave, k -> new LongAdder()).add(dias.sum()));
+    }
+
+    // --- Cálculo completo en paralelo ---
+
+    public static <T> AnaliticaLicencias calcular(List<T> elementos, Lector<T> lector) {
+        return ForkJoinPool.commonPool().invoke(new TareaLista<>(elementos, lector, 0, elementos.size()));
+    }
+
+    public static AnaliticaLicencias calcular(Particiones particiones) {
+        return ForkJoinPool.commonPool().invoke(new TareaParticiones(particiones, 0, particiones.cantidad()));
+    }
+
+    private static final class TareaLista<T> extends RecursiveTask<AnaliticaLicencias> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> elementos;
+        private final Lector<T> lector;
+        private final int desde;
+        private final int hasta;
+
+        TareaLista(List<T> elementos, Lector<T> lector, int desde, int hasta) {
+            this.elementos = elementos;
+            this.lector = lector;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected AnaliticaLicencias compute() {
+            if (hasta - desde <= UMBRAL_DIVISION) {
+                AnaliticaLicencias parcial = new AnaliticaLicencias();
+                for (int i = desde; i < hasta; i++) {
+                    lector.sumarA(elementos.get(i), parcial);
+                }
+                return parcial;
+            }
+            int medio = (desde + hasta) >>> 1;
+            TareaLista<T> izquierda = new TareaLista<>(elementos, lector, desde, medio);
+            izquierda.fork();
+            AnaliticaLicencias resultado = new TareaLista<>(elementos, lector, medio, hasta).compute();
+            resultado.combinar(izquierda.join());
+            return resultado;
+        }
+    }
+
+    // Cada partición suele esperar E/S (una consulta a la base), así que se bloquea con managedBlock
+    // para que el pool agregue hilos mientras tanto
+    private static final class TareaParticiones extends RecursiveTask<AnaliticaLicencias> {
+        private static final long serialVersionUID = 1L;
+
+        private final Particiones particiones;
+        private final int desde;
+        private final int hasta;
+
+        TareaParticiones(Particiones particiones, int desde, int hasta) {
+            this.particiones = particiones;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected AnaliticaLicencias compute() {
+            if (hasta - desde == 1) {
+                AnaliticaLicencias parcial = new AnaliticaLicencias();
+                try {
+                    ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                        private boolean listo;
+
+                        @Override
+                        public boolean block() throws InterruptedException {
+                            try {
+                                particiones.recorrer(desde, parcial);
+                            } catch (InterruptedException e) {
+                                throw e;
+                            } catch (Exception e) {
+                                throw new IllegalStateException("Error al recorrer la partición " + desde, e);
+                            }
+                            listo = true;
+                            return true;
+                        }
+
+                        @Override
+                        public boolean isReleasable() {
+                            return listo;
+                        }
+                    });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Cálculo interrumpido", e);
+                }
+                return parcial;
+            }
+            if (hasta <= desde) return new AnaliticaLicencias();
+            int medio = (desde + hasta) >>> 1;
+            TareaParticiones izquierda = new TareaParticiones(particiones, desde, medio);
+            izquierda.fork();
+            AnaliticaLicencias resultado = new TareaParticiones(particiones, medio, hasta).compute();
+            resultado.combinar(izquierda.join());
+            return resultado;
+        }
+    }
+
+    // --- Reportes (solo recorren los acumulados) ---
+
+    // Estados que cuentan en un reporte: los elegidos (separados por coma) o, si no se eligió ninguno, todos
+    // menos rechazadas y anuladas. Los dos programas usan este mismo filtro para dar los mismos números
+    public static Predicate<String> filtroEstados(String estados) {
+        if (estados == null || estados.isBlank()) return estado -> !ESTADOS_SIN_DIAS.contains(estado);
+        Set<String> elegidos = new HashSet<>();
+        for (String estado : estados.split(",")) {
+            if (!estado.isBlank()) elegidos.add(estado.trim());
+        }
+        return elegidos::contains;
+    }
+
+    // Días por mes entre desde y hasta (inclusive); los meses sin licencias aparecen con 0
+    public TreeMap<YearMonth, Long> diasPorMes(Predicate<String> estados, YearMonth desde, YearMonth hasta) {
+        TreeMap<YearMonth, Long> resultado = new TreeMap<>();
+        for (YearMonth mes = desde; !mes.isAfter(hasta); mes = mes.plusMonths(1)) {
+            resultado.put(mes, 0L);
+        }
+        int inicio = indice(desde);
+        int fin = indice(hasta);
+        porMes.forEach((clave, dias) -> {
+            if (clave.mes() >= inicio && clave.mes() <= fin && estados.test(clave.estado())) {
+                resultado.merge(mes(clave.mes()), dias.sum(), Long::sum);
+            }
+        });
+        return resultado;
+    }
+
+    // Días por tipo entre desde y hasta, de mayor a menor
+    public List<Map.Entry<String, Long>> diasPorTipo(Predicate<String> estados, YearMonth desde, YearMonth hasta) {
+        Map<String, Long> totales = new HashMap<>();
+        int inicio = indice(desde);
+        int fin = indice(hasta);
+        porMes.forEach((clave, dias) -> {
+            if (clave.mes() >= inicio && clave.mes() <= fin && estados.test(clave.estado())) {
+                totales.merge(clave.tipo(), dias.sum(), Long::sum);
+            }
+        });
+        List<Map.Entry<String, Long>> ordenados = new ArrayList<>(totales.entrySet());
+        ordenados.removeIf(entrada -> entrada.getValue() == 0);
+        ordenados.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        return ordenados;
+    }
+
+    // Días de un empleado por año
+    public TreeMap<Integer, Long> diasEmpleado(Predicate<String> estados, int legajo) {
+        TreeMap<Integer, Long> resultado = new TreeMap<>();
+        porEmpleado.forEach((clave, dias) -> {
+            if (clave.legajo() == legajo && estados.test(clave.estado())) {
+                resultado.merge(clave.anio(), dias.sum(), Long::sum);
+            }
+        });
+        resultado.values().removeIf(dias -> dias == 0);
+        return resultado;
+    }
+
+    // Los n empleados con más días de licencia entre los años desdeAnio y hastaAnio (inclusive)
+    public List<DiasEmpleado> topAusentes(Predicate<String> estados, int desdeAnio, int hastaAnio, int n) {
+        Map<Integer, Long> totales = new HashMap<>();
+        porEmpleado.forEach((clave, dias) -> {
+            if (clave.anio() >= desdeAnio && clave.anio() <= hastaAnio && estados.test(clave.estado())) {
+                totales.merge(clave.legajo(), dias.sum(), Long::sum);
+            }
+        });
+        Comparator<DiasEmpleado> orden = Comparator.comparingLong(DiasEmpleado::dias)
+                .thenComparing(Comparator.comparingInt(DiasEmpleado::legajo).reversed());
+        PriorityQueue<DiasEmpleado> mejores = new PriorityQueue<>(orden);
+        totales.forEach((legajo, dias) -> {
+            if (dias <= 0) return;
+            mejores.add(new DiasEmpleado(legajo, dias));
+            if (mejores.size() > n) mejores.poll();
+        });
+        List<DiasEmpleado> resultado = new ArrayList<>(mejores);
+        resultado.sort(orden.reversed());
+        return resultado;
+    }
+
+    // Igualdad de acumulados (sin celdas en cero), para comparar lo incremental con un cálculo completo
+    public boolean mismosTotales(AnaliticaLicencias otra) {
+        return totales(porMes).equals(totales(otra.porMes)) && totales(porEmpleado).equals(totales(otra.porEmpleado));
+    }
+
+    private static <K> Map<K, Long> totales(Map<K, LongAdder> celdas) {
+        Map<K, Long> resultado = new HashMap<>();
+        celdas.forEach((clave, dias) -> {
+            long suma = dias.sum();
+            if (suma != 0) resultado.put(clave, suma);
+        });
+        return resultado;
+    }
+
+    private static int indice(YearMonth mes) {
+        return mes.getYear() * 12 + mes.getMonthValue() - 1;
+    }
+
+    private static YearMonth mes(int indice) {
+        return YearMonth.of(indice / 12, indice % 12 + 1);
+    }
+}
@@ -0,0 +1,315 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Clase para exportar licencias a CSV o JSON Lines, opcionalmente comprimidas con gzip.
+// Compartida por SistemaLicenciasCompleto (StorageManager) y SistemaLicencias_ModificadoFinal (LicenciaDAO).
+//
+// La fuente se divide en particiones (rangos de ID) que se escriben en paralelo, cada una en su archivo
+// temporal; al final se concatenan en el destino con transferTo. Con gzip cada parte es un miembro gzip
+// independiente, y un archivo con varios miembros seguidos sigue siendo un .gz válido.
+//
+// Cada fila se arma en un StringBuilder reutilizado y se codifica a UTF-8 directo en un buffer de bytes,
+// sin String intermedios por campo ni String.format.
+public final class ExportadorLicencias {
+    private static final int TAMANIO_BUFFER = 1 << 20;
+    // Cuánto se espera a que las particiones en curso terminen (o atiendan la interrupción) antes de borrar
+    // sus archivos
+    private static final long ESPERA_PARTICIONES_SEGUNDOS = 30;
+    private static final DateTimeFormatter FORMATO_FECHA_HORA = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    public enum Formato { CSV, JSONL }
+
+    // Fuente de datos dividida en particiones que pueden recorrerse en paralelo
+    public interface Particiones {
+        int cantidad();
+
+        // Escribe todas las filas de la partición; cada fila termina con filas.fin()
+        void recorrer(int particion, Filas filas) throws Exception;
+    }
+
+    public record Resultado(long filas, long bytes, double segundos) {
+        public double filasPorSegundo() {
+            return segundos == 0 ? 0 : filas / segundos;
+        }
+    }
+
+    private final List<String> columnas;
+    private final Formato formato;
+    private final boolean gzip;
+    // Claves JSON ya escapadas ("\"columna\":"), calculadas una sola vez
+    private final String[] clavesJson;
+
+    public ExportadorLicencias(List<String> columnas, Formato formato, boolean gzip) {
+        this.columnas = List.copyOf(columnas);
+        this.formato = formato;
+        this.gzip = gzip;
+        this.clavesJson = new String[columnas.size()];
+        for (int i = 0; i < clavesJson.length; i++) {
+            StringBuilder clave = new StringBuilder();
+            escribirTextoJson(clave, columnas.get(i));
+            clavesJson[i] = clave.append(':').toString();
+        }
+    }
+
+    public Resultado exportar(Path destino, Particiones particiones, int hilos) throws IOException {
+        long inicio = System.nanoTime();
+        int cantidad = particiones.cantidad();
+        List<Path> partes = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            partes.add(destino.resolveSibling(destino.getFileName() + String.format(".parte-%04d", i)));
+        }
+
+        ExecutorService ejecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(hilos, cantidad)));
+        long filas = 0;
+        try {
+            List<Future<Long>> pendientes = new ArrayList<>(cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                int particion = i;
+                pendientes.add(ejecutor.submit(() -> escribirParte(partes.get(particion), particiones, particion)));
+            }
+            for (Future<Long> pendiente : pendientes) {
+                filas += pendiente.get();
+            }
+            long bytes;
+            try {
+                bytes = unir(destino, partes);
+            } catch (IOException | RuntimeException e) {
+                // Un destino a medias no debe quedar como si fuera una exportación completa
+                Files.deleteIfExists(destino);
+                throw e;
+            }
+            return new Resultado(filas, bytes, (System.nanoTime() - inicio) / 1e9);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Exportación interrumpida", e);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause() instanceof UncheckedIOException sinChequear ? sinChequear.getCause() : e.getCause();
+            if (causa instanceof IOException io) throw io;
+            throw new IOException("Error al exportar: " + causa.getMessage(), causa);
+        } finally {
+            // Si una partición falló, las demás pueden seguir escribiendo su parte: se las interrumpe y se
+            // espera a que terminen antes de borrar, para que ninguna vuelva a dejar un archivo después
+            ejecutor.shutdownNow();
+            try {
+                if (!ejecutor.awaitTermination(ESPERA_PARTICIONES_SEGUNDOS, TimeUnit.SECONDS)) {
+                    System.err.println("Hay particiones de la exportación que no terminaron; se borran sus partes igual");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Path parte : partes) {
+                Files.deleteIfExists(parte);
+            }
+        }
+    }
+
+    private long escribirParte(Path parte, Particiones particiones, int particion) throws Exception {
+        try (FileChannel canal = FileChannel.open(parte, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             Filas filas = new Filas(canal)) {
+            particiones.recorrer(particion, filas);
+            return filas.escritas;
+        }
+    }
+
+    // El encabezado CSV va primero (como miembro gzip propio si corresponde) y después cada parte en orden
+    private long unir(Path destino, List<Path> partes) throws IOException {
+        try (FileChannel salida = FileChannel.open(destino, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (formato == Formato.CSV) {
+                try (Filas encabezado = new Filas(salida)) {
+                    for (String columna : columnas) {
+                        encabezado.texto(columna);
+                    }
+                    encabezado.fin();
+                }
+            }
+            for (Path parte : partes) {
+                try (FileChannel entrada = FileChannel.open(parte, StandardOpenOption.READ)) {
+                    long posicion = 0;
+                    long tamanio = entrada.size();
+                    while (posicion < tamanio) {
+                        posicion += entrada.transferTo(posicion, tamanio - posicion, salida);
+                    }
+                }
+            }
+            salida.force(false);
+            return salida.size();
+        }
+    }
+
+    // Escritor de filas de una partición. Se llama a texto/numero/fechaHora una vez por columna, en orden,
+    // y después a fin(). Los errores de escritura salen como UncheckedIOException para poder usarlo en lambdas.
+    public final class Filas implements AutoCloseable {
+        private final FileChannel canal;
+        private final OutputStream comprimido;
+        private final StringBuilder linea = new StringBuilder(512);
+        private final CharsetEncoder codificador = StandardCharsets.UTF_8.newEncoder();
+        private final ByteBuffer bytes = ByteBuffer.allocate(TAMANIO_BUFFER);
+        private char[] caracteres = new char[1024];
+        private CharBuffer vista = CharBuffer.wrap(caracteres);
+        private int columna;
+        private long escritas;
+
+        private Filas(FileChannel canal) throws IOException {
+            this.canal = canal;
+            this.comprimido = gzip ? new GZIPOutputStream(Channels.newOutputStream(canal), 64 * 1024) : null;
+        }
+
+        public Filas texto(String valor) {
+            separador();
+            if (valor == null) {
+                if (formato == Formato.JSONL) linea.append("null");
+            } else if (formato == Formato.JSONL) {
+                escribirTextoJson(linea, valor);
+            } else {
+                escribirTextoCsv(linea, valor);
+            }
+            return this;
+        }
+
+        public Filas numero(long valor) {
+            separador();
+            linea.append(valor);
+            return this;
+        }
+
+        public Filas fechaHora(LocalDateTime valor) {
+            separador();
+            if (valor == null) {
+                if (formato == Formato.JSONL) linea.append("null");
+                return this;
+            }
+            if (formato == Formato.JSONL) linea.append('"');
+            FORMATO_FECHA_HORA.formatTo(valor, linea);
+            if (formato == Formato.JSONL) linea.append('"');
+            return this;
+        }
+
+        public void fin() {
+            if (columna != columnas.size()) {
+                throw new IllegalStateException("La fila tiene " + columna + " columnas y se esperaban " + columnas.size());
+            }
+            if (formato == Formato.JSONL) linea.append('}');
+            linea.append('\n');
+            try {
+                codificar();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            linea.setLength(0);
+            columna = 0;
+            escritas++;
+        }
+
+        private void separador() {
+            if (columna == columnas.size()) throw new IllegalStateException("Demasiadas columnas en la fila");
+            if (formato == Formato.JSONL) {
+                linea.append(columna == 0 ? "{" : ",").append(clavesJson[columna]);
+            } else if (columna > 0) {
+                linea.append(',');
+            }
+            columna++;
+        }
+
+        private void codificar() throws IOException {
+            int largo = linea.length();
+            if (largo > caracteres.length) {
+                caracteres = new char[Math.max(largo, caracteres.length * 2)];
+                vista = CharBuffer.wrap(caracteres);
+            }
+            linea.getChars(0, largo, caracteres, 0);
+            vista.clear().limit(largo);
+            codificador.reset();
+            while (true) {
+                CoderResult resultado = codificador.encode(vista, bytes, true);
+                if (resultado.isOverflow()) {
+                    vaciar();
+                } else if (resultado.isUnderflow()) {
+                    break;
+                } else {
+                    resultado.throwException();
+                }
+            }
+        }
+
+        private void vaciar() throws IOException {
+            bytes.flip();
+            if (comprimido != null) {
+                comprimido.write(bytes.array(), 0, bytes.limit());
+            } else {
+                while (bytes.hasRemaining()) canal.write(bytes);
+            }
+            bytes.clear();
+        }
+
+        // No cierra el canal: solo termina el miembro gzip
+        @Override
+        public void close() throws IOException {
+            vaciar();
+            if (comprimido instanceof GZIPOutputStream gz) gz.finish();
+        }
+    }
+
+    private static void escribirTextoCsv(StringBuilder destino, String valor) {
+        boolean comillas = false;
+        for (int i = 0; i < valor.length() && !comillas; i++) {
+            char c = valor.charAt(i);
+            comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!comillas) {
+            destino.append(valor);
+            return;
+        }
+        destino.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"') destino.append('"');
+            destino.append(c);
+        }
+        destino.append('"');
+    }
+
+    static void escribirTextoJson(StringBuilder destino, String valor) {
+        destino.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"' -> destino.append("\\\"");
+                case '\\' -> destino.append("\\\\");
+                case '\n' -> destino.append("\\n");
+                case '\r' -> destino.append("\\r");
+                case '\t' -> destino.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        destino.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        destino.append(c);
+                    }
+                }
+            }
+        }
+        destino.append('"');
+    }
+}
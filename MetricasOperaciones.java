@@ -0,0 +1,193 @@
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// Clase para medir cuántas veces se ejecuta cada operación (altas, modificaciones, logins, consultas a la
+// base) y cuánto tarda. Compartida por SistemaLicenciasCompleto y SistemaLicencias_ModificadoFinal.
+//
+// Cada operación se registra una sola vez (normalmente en un campo static final) y después se mide así:
+//
+//     long inicio = System.nanoTime();
+//     ...
+//     OPERACION.registrar(inicio, exito);
+//
+// Registrar no toma locks ni crea objetos: solo incrementa contadores atómicos y un casillero del
+// histograma. Las operaciones que superan el umbral (-Dlicencias.umbralLentaMs, 100 ms por defecto)
+// además generan un evento JFR "licencias.OperacionLenta". Cada operación se publica por JMX como
+// licencias:type=Operacion,name=<nombre>.
+public final class MetricasOperaciones {
+    private static final long UMBRAL_LENTA_NS =
+            Long.getLong("licencias.umbralLentaMs", 100) * 1_000_000L;
+    private static final Map<String, Operacion> OPERACIONES = new ConcurrentSkipListMap<>();
+
+    // Histograma log-lineal: valores menores a 16 ns van uno por casillero; después cada potencia de 2
+    // se parte en 8 casilleros, así que el error de un percentil es como mucho 12,5%
+    private static final int SUBDIVISIONES_BITS = 3;
+    private static final int SUBDIVISIONES = 1 << SUBDIVISIONES_BITS;
+    private static final int DIRECTOS = 2 * SUBDIVISIONES;
+    private static final int CASILLEROS = DIRECTOS + (63 - SUBDIVISIONES_BITS - 1) * SUBDIVISIONES;
+
+    private MetricasOperaciones() {
+    }
+
+    // Devuelve la operación con ese nombre, creándola y publicándola por JMX la primera vez
+    public static Operacion operacion(String nombre) {
+        return OPERACIONES.computeIfAbsent(nombre, Operacion::new);
+    }
+
+    // Tabla de texto con las operaciones que ya se ejecutaron alguna vez, ordenadas por nombre
+    public static String volcar() {
+        StringBuilder texto = new StringBuilder(String.format(Locale.ROOT, "%-32s %10s %8s %10s %10s %10s %10s%n",
+                "operacion", "cantidad", "errores", "prom_ms", "p50_ms", "p99_ms", "max_ms"));
+        for (Operacion op : OPERACIONES.values()) {
+            if (op.getCantidad() == 0) continue;
+            texto.append(String.format(Locale.ROOT, "%-32s %10d %8d %10.3f %10.3f %10.3f %10.3f%n",
+                    op.nombre, op.getCantidad(), op.getErrores(), op.getPromedioMs(),
+                    op.getP50Ms(), op.getP99Ms(), op.getMaximoMs()));
+        }
+        return texto.toString();
+    }
+
+    static int casillero(long nanos) {
+        if (nanos < DIRECTOS) return (int) Math.max(nanos, 0);
+        int exponente = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponente - SUBDIVISIONES_BITS)) & (SUBDIVISIONES - 1);
+        return DIRECTOS + (exponente - SUBDIVISIONES_BITS - 1) * SUBDIVISIONES + sub;
+    }
+
+    // Mayor valor que cae en el casillero
+    static long limiteSuperior(int casillero) {
+        if (casillero < DIRECTOS) return casillero;
+        int exponente = (casillero - DIRECTOS) / SUBDIVISIONES + SUBDIVISIONES_BITS + 1;
+        long sub = (casillero - DIRECTOS) % SUBDIVISIONES;
+        long ancho = 1L << (exponente - SUBDIVISIONES_BITS);
+        return ((SUBDIVISIONES + sub) << (exponente - SUBDIVISIONES_BITS)) + ancho - 1;
+    }
+
+    // Atributos de cada operación visibles desde JConsole o VisualVM
+    public interface OperacionMXBean {
+        long getCantidad();
+        long getErrores();
+        double getPromedioMs();
+        double getP50Ms();
+        double getP99Ms();
+        double getMaximoMs();
+    }
+
+    public static final class Operacion implements OperacionMXBean {
+        private final String nombre;
+        private final AtomicLong cantidad = new AtomicLong();
+        private final AtomicLong errores = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maximoNanos = new AtomicLong();
+        private final AtomicLongArray histograma = new AtomicLongArray(CASILLEROS);
+
+        private Operacion(String nombre) {
+            this.nombre = nombre;
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                        new ObjectName("licencias:type=Operacion,name=" + nombre));
+            } catch (JMException e) {
+                // Sin JMX las métricas siguen disponibles con volcar()
+            }
+        }
+
+        public void registrar(long inicioNanos, boolean exito) {
+            long duracion = System.nanoTime() - inicioNanos;
+            cantidad.incrementAndGet();
+            if (!exito) errores.incrementAndGet();
+            totalNanos.addAndGet(duracion);
+            histograma.incrementAndGet(casillero(duracion));
+            long maximo;
+            while (duracion > (maximo = maximoNanos.get()) && !maximoNanos.compareAndSet(maximo, duracion)) {
+                // Otro hilo actualizó el máximo; se vuelve a comparar
+            }
+            if (duracion >= UMBRAL_LENTA_NS) {
+                informarLenta(duracion, exito);
+            }
+        }
+
+        private void informarLenta(long duracion, boolean exito) {
+            EventoOperacionLenta evento = new EventoOperacionLenta();
+            if (!evento.shouldCommit()) return;
+            evento.operacion = nombre;
+            evento.duracion = duracion;
+            evento.exitosa = exito;
+            evento.commit();
+        }
+
+        @Override
+        public long getCantidad() {
+            return cantidad.get();
+        }
+
+        @Override
+        public long getErrores() {
+            return errores.get();
+        }
+
+        @Override
+        public double getPromedioMs() {
+            long n = cantidad.get();
+            return n == 0 ? 0 : totalNanos.get() / 1e6 / n;
+        }
+
+        @Override
+        public double getP50Ms() {
+            return percentil(0.50) / 1e6;
+        }
+
+        @Override
+        public double getP99Ms() {
+            return percentil(0.99) / 1e6;
+        }
+
+        @Override
+        public double getMaximoMs() {
+            return maximoNanos.get() / 1e6;
+        }
+
+        // Lectura aproximada: los casilleros se leen de a uno mientras otros hilos siguen registrando
+        private long percentil(double fraccion) {
+            long[] conteos = new long[CASILLEROS];
+            long total = 0;
+            for (int i = 0; i < CASILLEROS; i++) {
+                conteos[i] = histograma.get(i);
+                total += conteos[i];
+            }
+            if (total == 0) return 0;
+            long objetivo = (long) Math.ceil(total * fraccion);
+            long acumulado = 0;
+            for (int i = 0; i < CASILLEROS; i++) {
+                acumulado += conteos[i];
+                if (acumulado >= objetivo) return Math.min(limiteSuperior(i), maximoNanos.get());
+            }
+            return maximoNanos.get();
+        }
+    }
+
+    @Name("licencias.OperacionLenta")
+    @Label("Operación lenta")
+    @Category("Licencias")
+    static final class EventoOperacionLenta extends Event {
+        @Label("Operación")
+        String operacion;
+
+        @Label("Duración")
+        @Timespan(Timespan.NANOSECONDS)
+        long duracion;
+
+        @Label("Exitosa")
+        boolean exitosa;
+    }
+}
@@ -0,0 +1,243 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Clase para simular usuarios concurrentes contra el sistema de licencias sin pasar por los menús.
+// Compartida por SistemaLicenciasCompleto (sobre StorageManager) y SistemaLicencias_ModificadoFinal
+// (sobre LicenciaDAO); cada programa aporta su DestinoCarga.
+//
+// El guion es un archivo de propiedades (ver carga-ejemplo.properties):
+//   datos=100000          licencias sintéticas que se cargan antes de empezar (0 = ninguna)
+//   legajos=5000          cantidad de empleados distintos
+//   usuarios=50           usuarios simulados en paralelo
+//   segundos=30           duración de la corrida
+//   pensarMs=10           pausa media entre operaciones de un usuario (0 = sin pausa)
+//   tamanioPagina=20
+//   mezcla=solicitar:20, listar:50, modificar:10, validar:10, estadisticas:10
+//   tipos=Servicio/Vacaciones:40, Médica/Enfermedad:60      (opcional; por defecto todo el catálogo por igual)
+public final class SimuladorCarga {
+    static final List<String> OPERACIONES = List.of("solicitar", "listar", "modificar", "validar", "estadisticas");
+    static final List<String> ESTADOS_VALIDACION = List.of("Otorgada", "Rechazada", "Anulada", "Suspendida");
+
+    // Pedido de licencia generado por el simulador
+    public record Solicitud(int legajo, String categoria, String tipo, LocalDate inicio, int dias) {
+        public LocalDate fin() {
+            return inicio.plusDays(dias - 1L);
+        }
+    }
+
+    // Operaciones del sistema que el simulador sabe ejecutar
+    public interface DestinoCarga {
+        // Categorías y tipos de licencia válidos, para la mezcla por defecto
+        Map<String, List<String>> catalogo();
+
+        // Carga masiva del conjunto de datos inicial, por el camino más rápido que tenga el destino
+        void cargar(Stream<Solicitud> solicitudes);
+
+        // Devuelve false si la operación falló
+        boolean solicitar(Solicitud solicitud);
+
+        int listar(int cursor, int tamanio);
+
+        // Como modificarLicencia: cambia los días y pasa la licencia de Solicitada a Pendiente
+        boolean modificar(int id, int dias);
+
+        // Como validarLicencia: toma una licencia pendiente y le asigna el estado
+        boolean validar(String estado);
+
+        long estadisticas();
+
+        int maximoId();
+    }
+
+    private record Guion(int datos, int legajos, int usuarios, int segundos, long pensarMs, int tamanioPagina,
+                         List<String> operaciones, int[] pesosOperaciones, List<String[]> tipos, int[] pesosTipos) {
+    }
+
+    private final DestinoCarga destino;
+    private final Guion guion;
+    private final Map<String, MetricasOperaciones.Operacion> metricas = new LinkedHashMap<>();
+
+    public SimuladorCarga(DestinoCarga destino, Path archivoGuion) throws IOException {
+        this.destino = destino;
+        this.guion = leerGuion(archivoGuion, destino.catalogo());
+        for (String operacion : OPERACIONES) {
+            metricas.put(operacion, MetricasOperaciones.operacion("carga." + operacion));
+        }
+    }
+
+    public void ejecutar() throws InterruptedException {
+        if (guion.datos() > 0) {
+            long inicio = System.nanoTime();
+            destino.cargar(IntStream.range(0, guion.datos()).mapToObj(i -> solicitudAleatoria()));
+            System.out.printf(Locale.ROOT, "Datos sintéticos: %d licencias en %.1f s%n",
+                    guion.datos(), (System.nanoTime() - inicio) / 1e9);
+        }
+
+        long fin = System.nanoTime() + TimeUnit.SECONDS.toNanos(guion.segundos());
+        List<Thread> usuarios = new ArrayList<>(guion.usuarios());
+        long inicio = System.nanoTime();
+        for (int i = 0; i < guion.usuarios(); i++) {
+            Thread usuario = new Thread(() -> simularUsuario(fin), "usuario-simulado-" + i);
+            usuario.start();
+            usuarios.add(usuario);
+        }
+        for (Thread usuario : usuarios) {
+            usuario.join();
+        }
+        informar((System.nanoTime() - inicio) / 1e9);
+    }
+
+    private void simularUsuario(long fin) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < fin) {
+            String operacion = guion.operaciones().get(elegir(guion.pesosOperaciones(), random));
+            long inicio = System.nanoTime();
+            boolean exito;
+            try {
+                exito = ejecutarOperacion(operacion, random);
+            } catch (RuntimeException e) {
+                exito = false;
+            }
+            metricas.get(operacion).registrar(inicio, exito);
+
+            // Pausa uniforme entre 0 y el doble de pensarMs, para que los usuarios no vayan sincronizados
+            if (guion.pensarMs() > 0) {
+                try {
+                    Thread.sleep(random.nextLong(2 * guion.pensarMs() + 1));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean ejecutarOperacion(String operacion, ThreadLocalRandom random) {
+        int maximo = Math.max(1, destino.maximoId());
+        return switch (operacion) {
+            case "solicitar" -> destino.solicitar(solicitudAleatoria());
+            case "listar" -> destino.listar(random.nextInt(maximo), guion.tamanioPagina()) >= 0;
+            case "modificar" -> destino.modificar(1 + random.nextInt(maximo), 1 + random.nextInt(15));
+            case "validar" -> destino.validar(ESTADOS_VALIDACION.get(random.nextInt(ESTADOS_VALIDACION.size())));
+            case "estadisticas" -> destino.estadisticas() >= 0;
+            default -> throw new IllegalStateException("Operación desconocida " + operacion);
+        };
+    }
+
+    private Solicitud solicitudAleatoria() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String[] tipo = guion.tipos().get(elegir(guion.pesosTipos(), random));
+        LocalDate inicio = LocalDate.of(2020, 1, 1).plusDays(random.nextInt(5 * 365));
+        return new Solicitud(1 + random.nextInt(guion.legajos()), tipo[0], tipo[1], inicio, 1 + random.nextInt(15));
+    }
+
+    // Índice elegido al azar según los pesos (acumulados)
+    private static int elegir(int[] pesosAcumulados, ThreadLocalRandom random) {
+        int valor = random.nextInt(pesosAcumulados[pesosAcumulados.length - 1]);
+        int i = 0;
+        while (pesosAcumulados[i] <= valor) i++;
+        return i;
+    }
+
+    private void informar(double segundos) {
+        System.out.printf(Locale.ROOT, "usuarios=%d segundos=%.1f%n", guion.usuarios(), segundos);
+        System.out.printf(Locale.ROOT, "%-14s %10s %10s %8s %10s %10s %10s%n",
+                "operacion", "cantidad", "ops_seg", "errores", "p50_ms", "p99_ms", "max_ms");
+        long total = 0;
+        for (Map.Entry<String, MetricasOperaciones.Operacion> entrada : metricas.entrySet()) {
+            MetricasOperaciones.Operacion op = entrada.getValue();
+            if (op.getCantidad() == 0) continue;
+            total += op.getCantidad();
+            System.out.printf(Locale.ROOT, "%-14s %10d %10.1f %8d %10.3f %10.3f %10.3f%n",
+                    entrada.getKey(), op.getCantidad(), op.getCantidad() / segundos, op.getErrores(),
+                    op.getP50Ms(), op.getP99Ms(), op.getMaximoMs());
+        }
+        System.out.printf(Locale.ROOT, "%-14s %10d %10.1f%n", "total", total, total / segundos);
+    }
+
+    // --- Guion ---
+
+    private static Guion leerGuion(Path archivo, Map<String, List<String>> catalogo) throws IOException {
+        Properties propiedades = new Properties();
+        try (Reader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            propiedades.load(lector);
+        }
+
+        List<String> operaciones = new ArrayList<>();
+        List<Integer> pesosOperaciones = new ArrayList<>();
+        for (String[] par : pares(propiedades.getProperty("mezcla",
+                "solicitar:20, listar:50, modificar:10, validar:10, estadisticas:10"))) {
+            if (!OPERACIONES.contains(par[0])) {
+                throw new IllegalArgumentException("Operación desconocida en la mezcla: " + par[0]);
+            }
+            operaciones.add(par[0]);
+            pesosOperaciones.add(Integer.parseInt(par[1]));
+        }
+
+        List<String[]> tipos = new ArrayList<>();
+        List<Integer> pesosTipos = new ArrayList<>();
+        String mezclaTipos = propiedades.getProperty("tipos");
+        if (mezclaTipos == null) {
+            catalogo.forEach((categoria, lista) -> lista.forEach(tipo -> {
+                tipos.add(new String[]{categoria, tipo});
+                pesosTipos.add(1);
+            }));
+        } else {
+            for (String[] par : pares(mezclaTipos)) {
+                String[] categoriaTipo = par[0].split("/", 2);
+                if (categoriaTipo.length != 2 || !catalogo.getOrDefault(categoriaTipo[0], List.of()).contains(categoriaTipo[1])) {
+                    throw new IllegalArgumentException("Tipo de licencia desconocido: " + par[0]);
+                }
+                tipos.add(categoriaTipo);
+                pesosTipos.add(Integer.parseInt(par[1]));
+            }
+        }
+
+        return new Guion(
+                Integer.parseInt(propiedades.getProperty("datos", "0")),
+                Integer.parseInt(propiedades.getProperty("legajos", "1000")),
+                Integer.parseInt(propiedades.getProperty("usuarios", "10")),
+                Integer.parseInt(propiedades.getProperty("segundos", "30")),
+                Long.parseLong(propiedades.getProperty("pensarMs", "0")),
+                Integer.parseInt(propiedades.getProperty("tamanioPagina", "20")),
+                operaciones, acumular(pesosOperaciones), tipos, acumular(pesosTipos));
+    }
+
+    // "a:1, b:2" -> [["a", "1"], ["b", "2"]]
+    private static List<String[]> pares(String texto) {
+        List<String[]> pares = new ArrayList<>();
+        for (String parte : texto.split(",")) {
+            if (parte.isBlank()) continue;
+            int separador = parte.lastIndexOf(':');
+            if (separador < 0) throw new IllegalArgumentException("Falta el peso en '" + parte.trim() + "'");
+            pares.add(new String[]{parte.substring(0, separador).trim(), parte.substring(separador + 1).trim()});
+        }
+        return pares;
+    }
+
+    private static int[] acumular(List<Integer> pesos) {
+        if (pesos.isEmpty()) throw new IllegalArgumentException("La mezcla no puede estar vacía");
+        int[] acumulados = new int[pesos.size()];
+        int suma = 0;
+        for (int i = 0; i < acumulados.length; i++) {
+            if (pesos.get(i) < 0) throw new IllegalArgumentException("Los pesos no pueden ser negativos");
+            suma += pesos.get(i);
+            acumulados[i] = suma;
+        }
+        if (suma == 0) throw new IllegalArgumentException("La suma de los pesos debe ser positiva");
+        return acumulados;
+    }
+}
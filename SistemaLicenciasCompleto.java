@@ -1,21 +1,103 @@
 import java.util.*;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.text.Normalizer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 
 // Clase para representar una licencia
 class Licencia {
+    private static final DateTimeFormatter FORMATO_CREADA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
     private int id;
     private int legajoEmpleado;
     private String categoria;
-    private String tipo;
-    private String estado;
-    private int dias;
-    private String documentoAdjunto;
+    private volatile String tipo;
+    private volatile String estado;
+    private volatile int dias;
+    private volatile String documentoAdjunto;
+    // Contenido del documento en el AlmacenAdjuntos; null si solo se registró el nombre
+    private volatile Adjunto contenidoAdjunto;
     private String empleado;
     private String fechaInicio;
     private String fechaFin;
+    // Fechas ya interpretadas; null si el texto no tiene formato yyyy-MM-dd
+    private LocalDate inicio;
+    private LocalDate fin;
     private LocalDateTime createdAt;
+    // Aumenta con cada cambio, siempre bajo el lock de la licencia (volatile solo para las lecturas sin lock).
+    // Se guarda en el log y en los snapshots, así que sobrevive a un reinicio
+    private volatile long version;
 
     public Licencia(int id, int legajoEmpleado, String categoria, String tipo, int dias, 
                    String empleado, String fechaInicio, String fechaFin) {
@@ -27,11 +109,22 @@ class Licencia {
         this.empleado = empleado;
         this.fechaInicio = fechaInicio;
         this.fechaFin = fechaFin;
+        this.inicio = parsearFecha(fechaInicio);
+        this.fin = parsearFecha(fechaFin);
         this.estado = "Solicitada";
         this.documentoAdjunto = "";
         this.createdAt = LocalDateTime.now();
     }
 
+    // Reconstruye una licencia ya existente (recuperación desde disco)
+    Licencia(int id, int legajoEmpleado, String categoria, String tipo, int dias, String empleado,
+             String fechaInicio, String fechaFin, String estado, String documentoAdjunto, LocalDateTime createdAt) {
+        this(id, legajoEmpleado, categoria, tipo, dias, empleado, fechaInicio, fechaFin);
+        this.estado = estado;
+        this.documentoAdjunto = documentoAdjunto;
+        this.createdAt = createdAt;
+    }
+
     // Getters y Setters
     public int getId() { return id; }
     public int getLegajoEmpleado() { return legajoEmpleado; }
@@ -40,165 +133,4699 @@ class Licencia {
     public String getEstado() { return estado; }
     public int getDias() { return dias; }
     public String getDocumentoAdjunto() { return documentoAdjunto; }
+    public Adjunto getContenidoAdjunto() { return contenidoAdjunto; }
     public String getEmpleado() { return empleado; }
     public String getFechaInicio() { return fechaInicio; }
     public String getFechaFin() { return fechaFin; }
+    public LocalDate getInicio() { return inicio; }
+    public LocalDate getFin() { return fin; }
     public LocalDateTime getCreatedAt() { return createdAt; }
+    public long getVersion() { return version; }
+
+    // Copia de todos los campos; quien la pide debe tener el lock de la licencia para que no mezcle
+    // campos de una modificación en curso
+    Licencia copia() {
+        Licencia copia = new Licencia(id, legajoEmpleado, categoria, tipo, dias, empleado, fechaInicio, fechaFin,
+                estado, documentoAdjunto, createdAt);
+        copia.contenidoAdjunto = contenidoAdjunto;
+        copia.version = version;
+        return copia;
+    }
+
+    // Solo bajo el lock de la licencia: el incremento no es atómico
+    void incrementarVersion() {
+        version++;
+    }
+
+    // Recuperación: la versión que tenía la licencia antes del reinicio
+    void restaurarVersion(long version) {
+        this.version = version;
+    }
+
+    private static LocalDate parsearFecha(String fecha) {
+        try {
+            return LocalDate.parse(fecha);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
 
     public void setEstado(String estado) { this.estado = estado; }
     public void setTipo(String tipo) { this.tipo = tipo; }
     public void setDias(int dias) { this.dias = dias; }
     public void setDocumentoAdjunto(String documento) { this.documentoAdjunto = documento; }
+    public void setContenidoAdjunto(Adjunto contenido) { this.contenidoAdjunto = contenido; }
+
+    // Concatenación en lugar de String.format: se arma una por fila al listar
+    public String getResumen() {
+        String estadoActual = estado;
+        return "ID: " + id + " | " + categoria + " | " + tipo + " - " + estadoActual + " | " + dias
+                + " días | Estado: " + estadoActual + " | Empleado: " + empleado;
+    }
+
+    private String descripcionContenido() {
+        Adjunto contenido = contenidoAdjunto;
+        return contenido == null ? "" : " (" + contenido.tamanio() + " bytes, SHA-256 " + contenido.hash().substring(0, 12) + "…)";
+    }
+
+    public String getDetalle() {
+        return String.format("""
+            ═══════════════════════════════════════
+            LICENCIA ID: %d
+            ═══════════════════════════════════════
+            Empleado: %s (Legajo: %d)
+            Categoría: %s
+            Tipo: %s
+            Estado: %s
+            Días: %d
+            Fecha Inicio: %s
+            Fecha Fin: %s
+            Documento Adjunto: %s
+            Creada: %s
+            ═══════════════════════════════════════
+            """, id, empleado, legajoEmpleado, categoria, tipo, estado, dias, 
+                 fechaInicio, fechaFin, 
+                 documentoAdjunto.isEmpty() ? "Sin documento" : documentoAdjunto + descripcionContenido(),
+                 createdAt.format(FORMATO_CREADA));
+    }
+}
+
+// Clase para representar un usuario
+class Usuario {
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int ITERACIONES = 10_000;
+    private static final int LONGITUD_HASH = 256;
+
+    private int id;
+    private String username;
+    private byte[] salt;
+    private byte[] passwordHash;
+    private String role;
+    private int legajo;
+
+    public Usuario(int id, String username, String password, String role, int legajo) {
+        this.id = id;
+        this.username = username;
+        this.salt = new byte[16];
+        RANDOM.nextBytes(salt);
+        this.passwordHash = hashPassword(password, salt);
+        this.role = role;
+        this.legajo = legajo;
+    }
+
+    // Reconstruye un usuario a partir de su sal y hash ya calculados (recuperación desde disco)
+    Usuario(int id, String username, byte[] salt, byte[] passwordHash, String role, int legajo) {
+        this.id = id;
+        this.username = username;
+        this.salt = salt.clone();
+        this.passwordHash = passwordHash.clone();
+        this.role = role;
+        this.legajo = legajo;
+    }
+
+    // Getters
+    public int getId() { return id; }
+    public String getUsername() { return username; }
+    public String getRole() { return role; }
+    public int getLegajo() { return legajo; }
+    byte[] getSalt() { return salt.clone(); }
+    byte[] getPasswordHash() { return passwordHash.clone(); }
+
+    // Compara en tiempo constante para no filtrar información por la duración de la comparación
+    public boolean verificarPassword(String password) {
+        return MessageDigest.isEqual(passwordHash, hashPassword(password, salt));
+    }
+
+    private static byte[] hashPassword(String password, byte[] salt) {
+        try {
+            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, ITERACIONES, LONGITUD_HASH);
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new IllegalStateException("PBKDF2 no disponible", e);
+        }
+    }
+}
+
+// Foto inmutable de las estadísticas del sistema
+record EstadisticasLicencias(long total, long sumaDias, Map<String, Long> porEstado,
+                             Map<String, Long> porCategoria) {
+    public double promedioDias() {
+        return total == 0 ? 0.0 : (double) sumaDias / total;
+    }
+}
+
+// Página de un listado ordenado por ID. siguienteCursor es 0 cuando no quedan más resultados
+record PaginaLicencias(List<Licencia> licencias, int siguienteCursor) {
+    public boolean hayMas() {
+        return siguienteCursor > 0;
+    }
+}
+
+// Máquina de estados de las licencias: Solicitada -> Pendiente (administrativo) y
+// Pendiente -> Otorgada, Rechazada, Anulada o Suspendida (auditor)
+final class TransicionesLicencia {
+    static final List<String> ESTADOS_VALIDACION = List.of("Otorgada", "Rechazada", "Anulada", "Suspendida");
+    private static final Map<String, Set<String>> PERMITIDAS = Map.of(
+            "Solicitada", Set.of("Pendiente"),
+            "Pendiente", Set.copyOf(ESTADOS_VALIDACION));
+
+    private TransicionesLicencia() {
+    }
+
+    static boolean permitida(String desde, String hasta) {
+        return PERMITIDAS.getOrDefault(desde, Set.of()).contains(hasta);
+    }
+
+    // Una licencia rechazada o anulada ya no ocupa sus fechas
+    static boolean ocupaFechas(String estado) {
+        return !estado.equals("Rechazada") && !estado.equals("Anulada");
+    }
+}
+
+// Resultado de un cambio condicionado a la versión de la licencia
+enum ResultadoTransicion {
+    APLICADA, NO_ENCONTRADA, TRANSICION_INVALIDA, CONFLICTO_VERSION, ERROR_PERSISTENCIA
+}
+
+// Pedido de un lote: la licencia y la versión que vio quien la valida (StorageManager.CUALQUIER_VERSION para no exigirla)
+record PedidoTransicion(int id, long versionEsperada) {
+}
+
+// Resultado de un pedido del lote; version es la que quedó en la licencia (-1 si no existe)
+record ResultadoPedido(int id, ResultadoTransicion resultado, long version) {
+}
+
+// Resultado de solicitarLicencia: la licencia creada, o null y las licencias con las que se superpone
+record ResultadoSolicitud(Licencia licencia, List<Licencia> solapadas) {
+    boolean aceptada() {
+        return licencia != null;
+    }
+}
+
+// Par de licencias del mismo empleado con fechas superpuestas (para el reporte de auditoría)
+record ConflictoLicencias(int legajo, Licencia primera, Licencia segunda, long diasSolapados) {
+}
+
+// Fechas ocupadas por las licencias de un empleado. Los intervalos que no se superponen entre sí van
+// en un TreeMap por día de inicio: como son disjuntos, al ordenarlos por inicio también quedan ordenados
+// por fin, y alcanza con mirar el que empieza justo antes del fin pedido para saber si hay solapamiento
+// (O(log k)). Los que entraron superpuestos igual (altas sin control, recuperación desde disco) quedan
+// aparte en una lista que normalmente está vacía y se revisa entera.
+class AgendaEmpleado {
+    // Fechas en días desde epoch; licencia es null mientras la reserva de un alta está en curso
+    static final class Intervalo {
+        final long inicio;
+        final long fin;
+        volatile Licencia licencia;
+
+        Intervalo(long inicio, long fin, Licencia licencia) {
+            this.inicio = inicio;
+            this.fin = fin;
+            this.licencia = licencia;
+        }
+    }
+
+    private final TreeMap<Long, Intervalo> disjuntos = new TreeMap<>();
+    private final List<Intervalo> superpuestos = new ArrayList<>();
+
+    // Licencias que ocupan algún día de [inicio, fin]
+    synchronized List<Licencia> solapamientos(long inicio, long fin) {
+        List<Licencia> encontradas = new ArrayList<>();
+        for (Map.Entry<Long, Intervalo> entrada = disjuntos.floorEntry(fin);
+             entrada != null && entrada.getValue().fin >= inicio;
+             entrada = disjuntos.lowerEntry(entrada.getKey())) {
+            if (entrada.getValue().licencia != null) encontradas.add(entrada.getValue().licencia);
+        }
+        for (Intervalo intervalo : superpuestos) {
+            if (intervalo.inicio <= fin && intervalo.fin >= inicio && intervalo.licencia != null) {
+                encontradas.add(intervalo.licencia);
+            }
+        }
+        return encontradas;
+    }
+
+    // Reserva [inicio, fin] si está libre (también respecto de reservas en curso); null si se superpone
+    synchronized Intervalo reservar(long inicio, long fin) {
+        if (seSuperpone(inicio, fin)) return null;
+        Intervalo intervalo = new Intervalo(inicio, fin, null);
+        disjuntos.put(inicio, intervalo);
+        return intervalo;
+    }
+
+    synchronized void cancelar(Intervalo reserva) {
+        disjuntos.remove(reserva.inicio, reserva);
+    }
+
+    // Registra las fechas de una licencia ya creada, se superpongan o no
+    synchronized void ocupar(Licencia licencia, long inicio, long fin) {
+        Intervalo intervalo = new Intervalo(inicio, fin, licencia);
+        if (seSuperpone(inicio, fin)) {
+            superpuestos.add(intervalo);
+        } else {
+            disjuntos.put(inicio, intervalo);
+        }
+    }
+
+    // Libera las fechas de la licencia; alguna superpuesta puede pasar a los disjuntos
+    synchronized void liberar(Licencia licencia, long inicio) {
+        Intervalo intervalo = disjuntos.get(inicio);
+        if (intervalo != null && intervalo.licencia == licencia) {
+            disjuntos.remove(inicio);
+            Iterator<Intervalo> it = superpuestos.iterator();
+            while (it.hasNext()) {
+                Intervalo candidato = it.next();
+                if (!chocaConDisjuntos(candidato.inicio, candidato.fin)) {
+                    disjuntos.put(candidato.inicio, candidato);
+                    it.remove();
+                }
+            }
+        } else {
+            superpuestos.removeIf(otro -> otro.licencia == licencia);
+        }
+    }
+
+    private boolean seSuperpone(long inicio, long fin) {
+        if (chocaConDisjuntos(inicio, fin)) return true;
+        for (Intervalo intervalo : superpuestos) {
+            if (intervalo.inicio <= fin && intervalo.fin >= inicio) return true;
+        }
+        return false;
+    }
+
+    private boolean chocaConDisjuntos(long inicio, long fin) {
+        Map.Entry<Long, Intervalo> anterior = disjuntos.floorEntry(fin);
+        return anterior != null && anterior.getValue().fin >= inicio;
+    }
+}
+
+// Índice de licencias por fecha de inicio, para saber cuáles se superponen con un rango de fechas.
+// Cada licencia entra una sola vez (no una vez por día que cubre), en un ConcurrentSkipListMap por día de
+// inicio. Una licencia de hasta d días que se superpone con [desde, hasta] empezó entre desde - d + 1 y
+// hasta, así que alcanza con recorrer ese tramo y descartar las que terminaron antes de desde.
+//
+// Para que una sola licencia muy larga no agrande el tramo de todas las consultas, las licencias se
+// separan por clase de duración (la clase c tiene las de 2^c a 2^(c+1) - 1 días, la última todas las más
+// largas) y cada clase recuerda su duración máxima: en cada clase se recorre solo su propio tramo, y como
+// las duraciones de una clase difieren a lo sumo al doble, la mayoría de lo recorrido coincide.
+// Las fechas de una licencia no cambian, así que el índice solo recibe altas.
+class IndiceFechas {
+    private static final int CLASES_DURACION = 13; // la última empieza en 4096 días (unos 11 años)
+
+    private final List<ConcurrentNavigableMap<Long, ConcurrentNavigableMap<Integer, Licencia>>> porInicio =
+            new ArrayList<>(CLASES_DURACION);
+    private final AtomicLongArray duracionMaxima = new AtomicLongArray(CLASES_DURACION);
+
+    IndiceFechas() {
+        for (int i = 0; i < CLASES_DURACION; i++) {
+            porInicio.add(new ConcurrentSkipListMap<>());
+        }
+    }
+
+    // Las licencias con fechas inválidas o invertidas no entran al índice
+    void agregar(Licencia licencia) {
+        LocalDate inicio = licencia.getInicio();
+        LocalDate fin = licencia.getFin();
+        if (inicio == null || fin == null || fin.isBefore(inicio)) return;
+
+        long desde = inicio.toEpochDay();
+        long dias = fin.toEpochDay() - desde + 1;
+        int clase = Math.min(CLASES_DURACION - 1, 63 - Long.numberOfLeadingZeros(dias));
+        // Primero la duración: quien ya ve la licencia en el mapa recorre un tramo que la alcanza
+        duracionMaxima.accumulateAndGet(clase, dias, Math::max);
+        porInicio.get(clase).computeIfAbsent(desde, k -> new ConcurrentSkipListMap<>())
+                .put(licencia.getId(), licencia);
+    }
+
+    // Entrega cada licencia cuyo período se superpone con [desde, hasta] (días epoch) una sola vez, sin orden
+    void recorrer(long desde, long hasta, Consumer<Licencia> accion) {
+        for (int clase = 0; clase < CLASES_DURACION; clase++) {
+            long maxima = duracionMaxima.get(clase);
+            if (maxima == 0) continue;
+            for (ConcurrentNavigableMap<Integer, Licencia> delDia
+                    : porInicio.get(clase).subMap(desde - maxima + 1, true, hasta, true).values()) {
+                for (Licencia licencia : delDia.values()) {
+                    if (licencia.getFin().toEpochDay() >= desde) accion.accept(licencia);
+                }
+            }
+        }
+    }
+}
+
+// Página de una búsqueda: las licencias de la página pedida, ordenadas por relevancia (y por ID
+// descendente a igual relevancia), y cuántas coinciden en total
+record ResultadoBusqueda(List<Licencia> licencias, int total, int pagina, int tamanio) {
+    public boolean hayMas() {
+        return (long) (pagina + 1) * tamanio < total;
+    }
+}
+
+// Índice invertido para buscar licencias por nombre del empleado (y legajo), tipo y documento adjunto.
+// Los textos se normalizan (minúsculas, sin tildes: "Médica" y "medica" son lo mismo) y se parten en
+// palabras. Cada campo tiene su diccionario ordenado de términos (un ConcurrentSkipListMap), así que
+// las palabras que empiezan con un prefijo son un rango contiguo, igual que un subárbol de un trie.
+//
+// Cada término guarda los IDs de sus licencias en un arreglo ordenado. Como los IDs se asignan en
+// orden, un alta casi siempre agrega al final; las bajas (cambio de tipo o de documento) son raras.
+//
+// En una consulta, cada palabra se busca como prefijo en los tres campos, y una licencia tiene que
+// coincidir con todas. Puntaje: por palabra, el mejor peso entre los campos donde aparece (empleado 3,
+// tipo 2, documento 1), doble si la palabra es exacta y no solo un prefijo. La búsqueda es dispersa: los
+// candidatos salen de las apariciones de la palabra más rara, y cada palabra siguiente solo los filtra
+// buscándolos (con búsqueda galopante) en sus listas ordenadas. El costo depende de las apariciones de la
+// palabra más rara, no de la cantidad de licencias, y la página se arma con un conteo por puntaje (hay
+// pocos puntajes posibles) sin ordenar los candidatos.
+class IndiceBusqueda {
+    enum Campo {
+        EMPLEADO(3), TIPO(2), DOCUMENTO(1);
+
+        final int peso;
+
+        Campo(int peso) {
+            this.peso = peso;
+        }
+    }
+
+    // Más palabras no cambian el resultado en la práctica y acotan el puntaje a un byte
+    static final int MAX_PALABRAS = 8;
+
+    // IDs de las licencias que contienen un término, ordenados
+    private static final class Apariciones {
+        private int[] ids = new int[4];
+        private int cantidad;
+
+        synchronized void agregar(int id) {
+            if (cantidad > 0 && ids[cantidad - 1] >= id) {
+                int posicion = Arrays.binarySearch(ids, 0, cantidad, id);
+                if (posicion >= 0) return;
+                insertar(-posicion - 1, id);
+                return;
+            }
+            insertar(cantidad, id);
+        }
+
+        private void insertar(int posicion, int id) {
+            if (cantidad == ids.length) ids = Arrays.copyOf(ids, cantidad * 2);
+            System.arraycopy(ids, posicion, ids, posicion + 1, cantidad - posicion);
+            ids[posicion] = id;
+            cantidad++;
+        }
+
+        synchronized void quitar(int id) {
+            int posicion = Arrays.binarySearch(ids, 0, cantidad, id);
+            if (posicion < 0) return;
+            System.arraycopy(ids, posicion + 1, ids, posicion, cantidad - posicion - 1);
+            cantidad--;
+        }
+
+        synchronized int cantidad() {
+            return cantidad;
+        }
+
+        // Copia de los IDs hasta maximoId
+        synchronized int[] hasta(int maximoId) {
+            int posicion = Arrays.binarySearch(ids, 0, cantidad, maximoId);
+            return Arrays.copyOf(ids, posicion >= 0 ? posicion + 1 : -posicion - 1);
+        }
+
+        // Para cada candidatos[i] (ordenados) que contiene el término, sube pesos[i] a valor. Cada candidato
+        // se busca galopando desde donde quedó el anterior: O(c log(n / c)) para c candidatos y n IDs
+        synchronized void marcar(int[] candidatos, int cantidadCandidatos, byte valor, byte[] pesos) {
+            int desde = 0;
+            for (int i = 0; i < cantidadCandidatos && desde < cantidad; i++) {
+                int id = candidatos[i];
+                int limite = desde;
+                int paso = 1;
+                while (limite < cantidad && ids[limite] < id) {
+                    desde = limite + 1;
+                    limite += paso;
+                    paso <<= 1;
+                }
+                int posicion = Arrays.binarySearch(ids, desde, Math.min(limite + 1, cantidad), id);
+                if (posicion >= 0) {
+                    if (pesos[i] < valor) pesos[i] = valor;
+                    desde = posicion + 1;
+                } else {
+                    desde = -posicion - 1;
+                }
+            }
+        }
+    }
+
+    // Los términos que quedan sin apariciones no se borran: volver a crearlos compite con un alta concurrente
+    // y son pocos (documentos reemplazados), así que las búsquedas simplemente los saltean
+    private final Map<Campo, ConcurrentSkipListMap<String, Apariciones>> terminos = new EnumMap<>(Campo.class);
+
+    IndiceBusqueda() {
+        for (Campo campo : Campo.values()) {
+            terminos.put(campo, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    void agregar(Licencia licencia) {
+        agregar(Campo.EMPLEADO, licencia.getEmpleado() + " " + licencia.getLegajoEmpleado(), licencia.getId());
+        agregar(Campo.TIPO, licencia.getTipo(), licencia.getId());
+        agregar(Campo.DOCUMENTO, licencia.getDocumentoAdjunto(), licencia.getId());
+    }
+
+    // Reemplaza el texto indexado de un campo; las palabras que siguen estando no se tocan
+    void cambiar(Campo campo, int id, String anterior, String nuevo) {
+        if (Objects.equals(anterior, nuevo)) return;
+        Set<String> anteriores = palabras(anterior);
+        Set<String> nuevas = palabras(nuevo);
+        for (String palabra : anteriores) {
+            if (nuevas.contains(palabra)) continue;
+            Apariciones apariciones = terminos.get(campo).get(palabra);
+            if (apariciones != null) apariciones.quitar(id);
+        }
+        for (String palabra : nuevas) {
+            if (!anteriores.contains(palabra)) terminos.get(campo).computeIfAbsent(palabra, k -> new Apariciones()).agregar(id);
+        }
+    }
+
+    private void agregar(Campo campo, String texto, int id) {
+        for (String palabra : palabras(texto)) {
+            terminos.get(campo).computeIfAbsent(palabra, k -> new Apariciones()).agregar(id);
+        }
+    }
+
+    // IDs que coinciden con la consulta, de mayor a menor relevancia; solo se consideran IDs hasta maximoId
+    // (las licencias publicadas). pagina empieza en 0
+    int[] buscar(String consulta, int maximoId, int pagina, int tamanio, int[] total) {
+        List<String> palabras = new ArrayList<>(palabras(consulta));
+        total[0] = 0;
+        if (palabras.isEmpty() || maximoId <= 0) return new int[0];
+        if (palabras.size() > MAX_PALABRAS) palabras = palabras.subList(0, MAX_PALABRAS);
+
+        // Por palabra: los términos de cada campo que empiezan con ella. Las palabras más raras van
+        // primero, así las siguientes solo suman sobre licencias que ya vienen coincidiendo
+        List<List<Map.Entry<Apariciones, Integer>>> coincidencias = new ArrayList<>();
+        for (String palabra : palabras) {
+            List<Map.Entry<Apariciones, Integer>> deLaPalabra = new ArrayList<>();
+            for (Campo campo : Campo.values()) {
+                String fin = palabra + Character.MAX_VALUE;
+                terminos.get(campo).subMap(palabra, true, fin, false).forEach((termino, apariciones) -> {
+                    if (apariciones.cantidad() > 0) {
+                        deLaPalabra.add(Map.entry(apariciones, campo.peso * (termino.equals(palabra) ? 2 : 1)));
+                    }
+                });
+            }
+            if (deLaPalabra.isEmpty()) return new int[0];
+            coincidencias.add(deLaPalabra);
+        }
+        coincidencias.sort(Comparator.comparingLong(IndiceBusqueda::apariciones));
+
+        // Candidatos: los IDs de la palabra más rara con su mejor peso, codificados como (id << 8 | peso) para
+        // que al ordenarlos cada ID quede junto y con su mejor peso al final
+        List<Map.Entry<Apariciones, Integer>> masRara = coincidencias.get(0);
+        int cantidadCodificados = 0;
+        int[][] listas = new int[masRara.size()][];
+        for (int t = 0; t < listas.length; t++) {
+            listas[t] = masRara.get(t).getKey().hasta(maximoId);
+            cantidadCodificados += listas[t].length;
+        }
+        long[] codificados = new long[cantidadCodificados];
+        int llenos = 0;
+        for (int t = 0; t < listas.length; t++) {
+            long valor = masRara.get(t).getValue();
+            for (int id : listas[t]) {
+                codificados[llenos++] = ((long) id << 8) | valor;
+            }
+        }
+        Arrays.sort(codificados);
+        int[] candidatos = new int[codificados.length];
+        byte[] puntaje = new byte[codificados.length];
+        int cantidad = 0;
+        for (int i = 0; i < codificados.length; i++) {
+            if (i + 1 < codificados.length && codificados[i + 1] >> 8 == codificados[i] >> 8) continue;
+            candidatos[cantidad] = (int) (codificados[i] >> 8);
+            puntaje[cantidad] = (byte) (codificados[i] & 0xFF);
+            cantidad++;
+        }
+
+        // Cada palabra siguiente deja solo los candidatos que la contienen y les suma su mejor peso
+        byte[] peso = new byte[cantidad];
+        for (int k = 1; k < coincidencias.size() && cantidad > 0; k++) {
+            Arrays.fill(peso, 0, cantidad, (byte) 0);
+            for (Map.Entry<Apariciones, Integer> entrada : coincidencias.get(k)) {
+                entrada.getKey().marcar(candidatos, cantidad, entrada.getValue().byteValue(), peso);
+            }
+            int quedan = 0;
+            for (int i = 0; i < cantidad; i++) {
+                if (peso[i] == 0) continue;
+                candidatos[quedan] = candidatos[i];
+                puntaje[quedan] = (byte) (puntaje[i] + peso[i]);
+                quedan++;
+            }
+            cantidad = quedan;
+        }
+        total[0] = cantidad;
+
+        // Conteo por puntaje: la posición de cada candidato en el orden (puntaje descendente, ID descendente)
+        // sale del inicio de su puntaje más los de ese puntaje con ID mayor; solo se guardan los de la página
+        long desde = (long) pagina * tamanio;
+        if (desde >= cantidad) return new int[0];
+        int[] porPuntaje = new int[MAX_PALABRAS * 2 * Campo.EMPLEADO.peso + 1];
+        for (int i = 0; i < cantidad; i++) {
+            porPuntaje[puntaje[i]]++;
+        }
+        int[] siguiente = new int[porPuntaje.length];
+        int acumulado = 0;
+        for (int valor = porPuntaje.length - 1; valor >= 0; valor--) {
+            siguiente[valor] = acumulado;
+            acumulado += porPuntaje[valor];
+        }
+        int[] resultado = new int[(int) Math.min(tamanio, cantidad - desde)];
+        for (int i = cantidad - 1; i >= 0; i--) {
+            long posicion = siguiente[puntaje[i]]++ - desde;
+            if (posicion >= 0 && posicion < resultado.length) resultado[(int) posicion] = candidatos[i];
+        }
+        return resultado;
+    }
+
+    private static long apariciones(List<Map.Entry<Apariciones, Integer>> deLaPalabra) {
+        long total = 0;
+        for (Map.Entry<Apariciones, Integer> entrada : deLaPalabra) {
+            total += entrada.getKey().cantidad();
+        }
+        return total;
+    }
+
+    // Palabras normalizadas de un texto, sin repetir: "Licencia_Médica-2024.pdf" -> licencia, medica, 2024, pdf
+    static Set<String> palabras(String texto) {
+        if (texto == null || texto.isEmpty()) return Set.of();
+        String normalizado = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        Set<String> palabras = new LinkedHashSet<>();
+        StringBuilder palabra = new StringBuilder();
+        for (int i = 0; i < normalizado.length(); i++) {
+            char c = normalizado.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(c)) {
+                palabra.append(Character.toLowerCase(c));
+            } else if (palabra.length() > 0) {
+                palabras.add(palabra.toString());
+                palabra.setLength(0);
+            }
+        }
+        if (palabra.length() > 0) palabras.add(palabra.toString());
+        return palabras;
+    }
+}
+
+// Clase para gestionar el almacenamiento en memoria.
+// Es segura para varios hilos: los IDs se asignan con contadores atómicos, los mapas son concurrentes
+// y las modificaciones de una misma licencia se serializan con un lock por franja (striping).
+class StorageManager {
+    private static final int FRANJAS_LOCK = 64; // potencia de 2
+    // Licencias que recorrerRango copia por vez antes de entregarlas
+    private static final int TAMANIO_TRAMO_RECORRIDO = 1024;
+    private static final MetricasOperaciones.Operacion OP_AUTENTICAR = MetricasOperaciones.operacion("storage.authenticateUser");
+    private static final MetricasOperaciones.Operacion OP_CREAR = MetricasOperaciones.operacion("storage.createLicense");
+    private static final MetricasOperaciones.Operacion OP_MODIFICAR = MetricasOperaciones.operacion("storage.updateLicense");
+    private static final MetricasOperaciones.Operacion OP_ADJUNTAR = MetricasOperaciones.operacion("storage.attachDocument");
+    private static final MetricasOperaciones.Operacion OP_TRANSICIONAR = MetricasOperaciones.operacion("storage.transicionar");
+    private static final MetricasOperaciones.Operacion OP_LOTE = MetricasOperaciones.operacion("storage.transicionarLote");
+    private static final MetricasOperaciones.Operacion OP_BUSCAR = MetricasOperaciones.operacion("storage.buscarLicencias");
+    static final long CUALQUIER_VERSION = -1;
+
+    private final Map<Integer, Usuario> usuarios;
+    private final Map<String, Usuario> usuariosPorNombre;
+    private final ConcurrentNavigableMap<Integer, Licencia> licencias;
+    // Índices secundarios por legajo, estado y categoría (ordenados por ID)
+    private final Map<Integer, ConcurrentNavigableMap<Integer, Licencia>> licenciasPorEmpleado;
+    private final Map<String, ConcurrentNavigableMap<Integer, Licencia>> licenciasPorEstado;
+    private final Map<String, ConcurrentNavigableMap<Integer, Licencia>> licenciasPorCategoria;
+    // Índice de intervalos por fecha de inicio, para las consultas por día o por rango de fechas
+    private final IndiceFechas licenciasPorFecha;
+    // Fechas ocupadas por cada empleado, para detectar superposiciones al solicitar
+    private final Map<Integer, AgendaEmpleado> agendas;
+    private final Object[] locks;
+    private final AtomicInteger currentUserId;
+    private final AtomicInteger currentLicenseId;
+    // Mayor ID tal que todas las licencias con ID menor o igual ya están publicadas
+    private final AtomicInteger ultimoPublicado;
+    // Contadores de estadísticas mantenidos en cada alta/modificación
+    private final Map<String, LongAdder> contadorPorEstado;
+    private final Map<String, LongAdder> contadorPorCategoria;
+    private final LongAdder totalLicencias;
+    private final LongAdder sumaDias;
+    // Días de licencia por mes, tipo y empleado, mantenidos en cada alta/modificación
+    private final AnaliticaLicencias analitica;
+    // Búsqueda por empleado, tipo y documento, mantenida en cada alta/modificación
+    private final IndiceBusqueda indiceBusqueda;
+    // Log de escritura anticipada y snapshots; null si el almacenamiento es solo en memoria
+    private final PersistenciaLicencias persistencia;
+    // Copia en la base de datos (tabla LicenciaSistema, aparte de la de LicenciaDAO) escrita en segundo plano;
+    // null si no hay base configurada
+    private final EscrituraDiferidaLicencias escrituraDiferida;
+    // Quién cambió qué licencia y cuándo (en auditoria.jsonl si hay directorio de datos); null si no hay
+    // directorio ni se pidió el diario en memoria con -Dlicencias.auditoria.enMemoria=true
+    private final DiarioAuditoria auditoria;
+    // Si ya se avisó que el diario descarta eventos (se avisa una sola vez; el total está en el diario)
+    private volatile boolean descarteAuditoriaAvisado;
+    // Contenido de los documentos adjuntos, direccionado por hash
+    private final AlmacenAdjuntos adjuntos;
+
+    public StorageManager() {
+        this(null);
+    }
+
+    // Con un directorio de datos, recupera el estado guardado y registra cada cambio en disco
+    public StorageManager(Path directorioDatos) {
+        this(directorioDatos, null);
+    }
+
+    // Con una base de datos, las licencias se cargan de ella al arrancar y los cambios se le envían
+    // en lotes desde un hilo aparte; las lecturas siempre se resuelven en memoria
+    public StorageManager(Path directorioDatos, ConexionesBD baseDatos) {
+        this.usuarios = new ConcurrentHashMap<>();
+        this.usuariosPorNombre = new ConcurrentHashMap<>();
+        this.licencias = new ConcurrentSkipListMap<>();
+        this.licenciasPorEmpleado = new ConcurrentHashMap<>();
+        this.licenciasPorEstado = new ConcurrentHashMap<>();
+        this.licenciasPorCategoria = new ConcurrentHashMap<>();
+        this.licenciasPorFecha = new IndiceFechas();
+        this.agendas = new ConcurrentHashMap<>();
+        this.locks = new Object[FRANJAS_LOCK];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        this.currentUserId = new AtomicInteger(1);
+        this.currentLicenseId = new AtomicInteger(1);
+        this.ultimoPublicado = new AtomicInteger(0);
+        this.contadorPorEstado = new ConcurrentHashMap<>();
+        this.contadorPorCategoria = new ConcurrentHashMap<>();
+        this.totalLicencias = new LongAdder();
+        this.sumaDias = new LongAdder();
+        this.analitica = new AnaliticaLicencias();
+        this.indiceBusqueda = new IndiceBusqueda();
+        this.auditoria = DiarioAuditoria.abrir(directorioDatos);
+        this.adjuntos = AlmacenAdjuntos.abrir(directorioDatos);
+        this.persistencia = directorioDatos == null ? null : PersistenciaLicencias.abrir(directorioDatos, this);
+        this.escrituraDiferida = baseDatos == null ? null : EscrituraDiferidaLicencias.abrir(baseDatos, this);
+        if (usuarios.isEmpty()) {
+            initializeDefaultUsers();
+        }
+    }
+
+    // Vacía los cambios pendientes hacia la base y detiene el log; lo confirmado ya está en disco
+    public void close() {
+        if (escrituraDiferida != null) escrituraDiferida.close();
+        if (persistencia != null) persistencia.close();
+        if (auditoria != null) auditoria.close();
+    }
+
+    private void initializeDefaultUsers() {
+        createUser("camila", "1234", "empleado", 100);
+        createUser("admin", "adminpass", "administrativo", 101);
+        createUser("auditor", "auditpass", "auditor", 102);
+    }
+
+    public Usuario createUser(String username, String password, String role, int legajo) {
+        Usuario user = new Usuario(currentUserId.getAndIncrement(), username, password, role, legajo);
+        usuarios.put(user.getId(), user);
+        // Si el nombre ya existía, el nuevo usuario lo reemplaza
+        usuariosPorNombre.put(username, user);
+        esperarPersistencia(persistencia == null ? null : persistencia.registrarUsuario(user));
+        return user;
+    }
+
+    // Un login rechazado cuenta como error en las métricas
+    public Usuario authenticateUser(String username, String password) {
+        long inicio = System.nanoTime();
+        Usuario user = autenticar(username, password);
+        OP_AUTENTICAR.registrar(inicio, user != null);
+        return user;
+    }
+
+    // Siempre verifica con PBKDF2: lo que se reutiliza es la sesión ya autenticada (el usuario logueado en
+    // el menú, el token de la API), nunca un hash rápido de la contraseña que se pudiera atacar por fuerza bruta
+    private Usuario autenticar(String username, String password) {
+        Usuario user = usuariosPorNombre.get(username);
+        if (user == null) return null;
+        return user.verificarPassword(password) ? user : null;
+    }
+
+    public Licencia createLicense(int legajoEmpleado, String categoria, String tipo, int dias,
+                                String empleado, String fechaInicio, String fechaFin) {
+        long inicio = System.nanoTime();
+        boolean exito = false;
+        try {
+            Licencia license = crear(legajoEmpleado, categoria, tipo, dias, empleado, fechaInicio, fechaFin);
+            exito = true;
+            return license;
+        } finally {
+            OP_CREAR.registrar(inicio, exito);
+        }
+    }
+
+    // Alta con control de superposición: si el empleado ya tiene una licencia que ocupa alguno de los días
+    // pedidos (cualquier estado salvo Rechazada o Anulada), no se crea y se devuelven las que chocan.
+    // El control y la reserva de las fechas son atómicos, así que dos pedidos simultáneos no pasan los dos.
+    public ResultadoSolicitud solicitarLicencia(int legajoEmpleado, String categoria, String tipo, int dias,
+                                                String empleado, String fechaInicio, String fechaFin) {
+        LocalDate desde;
+        LocalDate hasta;
+        try {
+            desde = LocalDate.parse(fechaInicio);
+            hasta = LocalDate.parse(fechaFin);
+        } catch (DateTimeParseException e) {
+            // Sin fechas válidas no hay nada que comparar (tampoco entran al índice de fechas)
+            return new ResultadoSolicitud(createLicense(legajoEmpleado, categoria, tipo, dias, empleado, fechaInicio, fechaFin), List.of());
+        }
+
+        AgendaEmpleado agenda = agendas.computeIfAbsent(legajoEmpleado, k -> new AgendaEmpleado());
+        AgendaEmpleado.Intervalo reserva = agenda.reservar(desde.toEpochDay(), hasta.toEpochDay());
+        if (reserva == null) {
+            return new ResultadoSolicitud(null, agenda.solapamientos(desde.toEpochDay(), hasta.toEpochDay()));
+        }
+
+        long inicio = System.nanoTime();
+        boolean exito = false;
+        try {
+            Licencia license;
+            try {
+                license = crear(legajoEmpleado, categoria, tipo, dias, empleado, fechaInicio, fechaFin, reserva);
+            } catch (RuntimeException | Error e) {
+                // Un alta que no llegó a quedar en memoria dejaría esas fechas apartadas para siempre. Si la
+                // licencia sí quedó (solo falló el log), la reserva sigue siendo suya, como en cualquier alta
+                Licencia creada = reserva.licencia;
+                if (creada == null || licencias.get(creada.getId()) != creada) agenda.cancelar(reserva);
+                throw e;
+            }
+            exito = true;
+            return new ResultadoSolicitud(license, List.of());
+        } finally {
+            OP_CREAR.registrar(inicio, exito);
+        }
+    }
+
+    // Licencias del empleado que ocupan algún día entre desde y hasta, en O(log k) sobre sus k licencias
+    public List<Licencia> getLicensesSolapadas(int legajo, LocalDate desde, LocalDate hasta) {
+        AgendaEmpleado agenda = agendas.get(legajo);
+        if (agenda == null) return List.of();
+        return agenda.solapamientos(desde.toEpochDay(), hasta.toEpochDay());
+    }
+
+    // Reporte para auditoría: todos los pares de licencias superpuestas de un mismo empleado.
+    // Cada empleado se revisa por separado (en paralelo) con un barrido ordenado por fecha de inicio
+    public List<ConflictoLicencias> buscarConflictos() {
+        List<ConflictoLicencias> conflictos = licenciasPorEmpleado.entrySet().parallelStream()
+                .flatMap(entrada -> conflictosDe(entrada.getKey(), entrada.getValue().values()).stream())
+                .collect(Collectors.toCollection(ArrayList::new));
+        conflictos.sort(Comparator.comparingInt(ConflictoLicencias::legajo)
+                .thenComparingInt(c -> c.primera().getId())
+                .thenComparingInt(c -> c.segunda().getId()));
+        return conflictos;
+    }
+
+    private static List<ConflictoLicencias> conflictosDe(int legajo, Collection<Licencia> licenciasEmpleado) {
+        List<Licencia> vigentes = new ArrayList<>();
+        for (Licencia licencia : licenciasEmpleado) {
+            if (licencia.getInicio() != null && licencia.getFin() != null && !licencia.getFin().isBefore(licencia.getInicio())
+                    && TransicionesLicencia.ocupaFechas(licencia.getEstado())) {
+                vigentes.add(licencia);
+            }
+        }
+        if (vigentes.size() < 2) return List.of();
+        vigentes.sort(Comparator.comparing(Licencia::getInicio).thenComparingInt(Licencia::getId));
+
+        // Abiertas: las ya vistas que todavía no terminaron, ordenadas por fecha de fin
+        List<ConflictoLicencias> conflictos = new ArrayList<>();
+        PriorityQueue<Licencia> abiertas = new PriorityQueue<>(Comparator.comparing(Licencia::getFin));
+        for (Licencia licencia : vigentes) {
+            while (!abiertas.isEmpty() && abiertas.peek().getFin().isBefore(licencia.getInicio())) {
+                abiertas.poll();
+            }
+            for (Licencia abierta : abiertas) {
+                LocalDate finComun = abierta.getFin().isBefore(licencia.getFin()) ? abierta.getFin() : licencia.getFin();
+                conflictos.add(new ConflictoLicencias(legajo, abierta, licencia,
+                        ChronoUnit.DAYS.between(licencia.getInicio(), finComun) + 1));
+            }
+            abiertas.add(licencia);
+        }
+        return conflictos;
+    }
+
+    private Licencia crear(int legajoEmpleado, String categoria, String tipo, int dias,
+                           String empleado, String fechaInicio, String fechaFin) {
+        return crear(legajoEmpleado, categoria, tipo, dias, empleado, fechaInicio, fechaFin, null);
+    }
+
+    // reserva: las fechas ya apartadas por solicitarLicencia (null en un alta sin control)
+    private Licencia crear(int legajoEmpleado, String categoria, String tipo, int dias, String empleado,
+                           String fechaInicio, String fechaFin, AgendaEmpleado.Intervalo reserva) {
+        Licencia license = new Licencia(currentLicenseId.getAndIncrement(), legajoEmpleado, categoria, tipo, 
+                                      dias, empleado, fechaInicio, fechaFin);
+        // Se indexa bajo el lock de la licencia para no cruzarse con un updateLicense temprano.
+        // El registro se encola dentro del lock para que el log respete el orden de los cambios
+        CompletableFuture<Void> confirmacion;
+        EventoAuditoria evento;
+        synchronized (lockFor(license.getId())) {
+            if (reserva != null) {
+                reserva.licencia = license;
+                aplicarAlta(license, false);
+            } else {
+                aplicarAlta(license, true);
+            }
+            evento = eventoAuditoria(DiarioAuditoria.usuarioActual(), DiarioAuditoria.Accion.ALTA, license, null, 0, null);
+            confirmacion = persistencia == null ? null : persistencia.registrarAlta(license);
+            if (escrituraDiferida != null) escrituraDiferida.marcar(license);
+        }
+        publicarAuditoria(evento);
+        publicar();
+        esperarPersistencia(confirmacion);
+        return license;
+    }
+
+    // Acumulados de días por mes, tipo y empleado, siempre al día: los reportes no recorren las licencias
+    public AnaliticaLicencias getAnalitica() {
+        return analitica;
+    }
+
+    // Recalcula los acumulados desde cero sobre un snapshot, en paralelo (fork-join por tramos de licencias).
+    // Sirve para comparar con getAnalitica() o para reportes sobre una foto fija
+    public AnaliticaLicencias calcularAnalitica() {
+        return AnaliticaLicencias.calcular(getAllLicenses(), this::sumarLicencia);
+    }
+
+    // Bajo el lock de la licencia, para no leer el tipo de antes y el estado de después
+    private void sumarLicencia(Licencia license, AnaliticaLicencias destino) {
+        synchronized (lockFor(license.getId())) {
+            sumarAnalitica(destino, license);
+        }
+    }
+
+    // Snapshot consistente: el prefijo de licencias ya publicadas, sin huecos de altas en curso
+    public List<Licencia> getAllLicenses() {
+        return new ArrayList<>(licencias.headMap(ultimoPublicado.get(), true).values());
+    }
+
+    // Página de licencias con ID mayor al cursor (0 para empezar), sin copiar el mapa completo
+    public PaginaLicencias getLicensesPage(int cursor, int tamanio) {
+        return paginar(licencias, cursor, tamanio);
+    }
+
+    // Mayor ID visible para lecturas (sin huecos de altas en curso)
+    public int getUltimoIdPublicado() {
+        return ultimoPublicado.get();
+    }
+
+    // Recorre las licencias publicadas con ID entre desde y hasta (inclusive), en orden de ID.
+    // Cada licencia se copia bajo su lock (así la fila no mezcla campos de una modificación en curso) y la
+    // acción recibe la copia ya sin el lock: si la acción escribe a disco, un disco lento no frena a quienes
+    // modifican otras licencias del mismo lock. Se copia de a tramos para no duplicar todo el rango en memoria
+    void recorrerRango(int desde, int hasta, Consumer<Licencia> accion) {
+        int limite = Math.min(hasta, ultimoPublicado.get());
+        if (desde > limite) return;
+        List<Licencia> tramo = new ArrayList<>(TAMANIO_TRAMO_RECORRIDO);
+        for (Licencia licencia : licencias.subMap(desde, true, limite, true).values()) {
+            synchronized (lockFor(licencia.getId())) {
+                tramo.add(licencia.copia());
+            }
+            if (tramo.size() == TAMANIO_TRAMO_RECORRIDO) {
+                tramo.forEach(accion);
+                tramo.clear();
+            }
+        }
+        tramo.forEach(accion);
+    }
+
+    public PaginaLicencias getLicensesPageByEstado(String estado, int cursor, int tamanio) {
+        ConcurrentNavigableMap<Integer, Licencia> entradas = licenciasPorEstado.get(estado);
+        if (entradas == null) return new PaginaLicencias(List.of(), 0);
+        return paginar(entradas, cursor, tamanio);
+    }
+
+    public PaginaLicencias getLicensesPageByEmployee(int legajo, int cursor, int tamanio) {
+        ConcurrentNavigableMap<Integer, Licencia> entradas = licenciasPorEmpleado.get(legajo);
+        if (entradas == null) return new PaginaLicencias(List.of(), 0);
+        return paginar(entradas, cursor, tamanio);
+    }
+
+    public List<Licencia> getLicensesByEmployee(int legajo) {
+        return consultarIndice(licenciasPorEmpleado, legajo);
+    }
+
+    public List<Licencia> getLicensesByEstado(String estado) {
+        return consultarIndice(licenciasPorEstado, estado);
+    }
+
+    public List<Licencia> getLicensesByCategoria(String categoria) {
+        return consultarIndice(licenciasPorCategoria, categoria);
+    }
+
+    // Quiénes están de licencia un día dado; estado null incluye todos los estados
+    public List<Licencia> getLicensesOnDate(LocalDate dia, String estado) {
+        return getLicensesOverlapping(dia, dia, estado);
+    }
+
+    // Licencias cuyo período [inicio, fin] se superpone con [desde, hasta], ordenadas por ID
+    public List<Licencia> getLicensesOverlapping(LocalDate desde, LocalDate hasta, String estado) {
+        if (hasta.isBefore(desde)) throw new IllegalArgumentException("El rango termina antes de empezar");
+
+        List<Licencia> encontradas = new ArrayList<>();
+        licenciasPorFecha.recorrer(desde.toEpochDay(), hasta.toEpochDay(), license -> {
+            if (estado == null || estado.equals(license.getEstado())) encontradas.add(license);
+        });
+        encontradas.sort(Comparator.comparingInt(Licencia::getId));
+        return Collections.unmodifiableList(encontradas);
+    }
+
+    public long countLicensesByEstado(String estado) {
+        LongAdder contador = contadorPorEstado.get(estado);
+        return contador == null ? 0 : contador.sum();
+    }
+
+    public long countLicensesByCategoria(String categoria) {
+        LongAdder contador = contadorPorCategoria.get(categoria);
+        return contador == null ? 0 : contador.sum();
+    }
+
+    // Foto de las estadísticas en O(cantidad de estados + categorías), sin recorrer las licencias
+    public EstadisticasLicencias getEstadisticas() {
+        return new EstadisticasLicencias(
+                totalLicencias.sum(),
+                sumaDias.sum(),
+                leerContadores(contadorPorEstado),
+                leerContadores(contadorPorCategoria));
+    }
+
+    public Licencia getLicenseById(int id) {
+        return licencias.get(id);
+    }
+
+    // Búsqueda por palabras (o comienzos de palabras) del nombre o legajo del empleado, el tipo y el
+    // documento adjunto, sin distinguir tildes ni mayúsculas. pagina empieza en 0
+    public ResultadoBusqueda buscarLicencias(String consulta, int pagina, int tamanio) {
+        long inicio = System.nanoTime();
+        boolean exito = false;
+        try {
+            int[] total = new int[1];
+            int[] ids = indiceBusqueda.buscar(consulta, ultimoPublicado.get(), pagina, tamanio, total);
+            List<Licencia> encontradas = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                Licencia license = licencias.get(id);
+                if (license != null) encontradas.add(license);
+            }
+            exito = true;
+            return new ResultadoBusqueda(encontradas, total[0], pagina, tamanio);
+        } finally {
+            OP_BUSCAR.registrar(inicio, exito);
+        }
+    }
+
+    public boolean updateLicense(int id, String tipo, int dias, String estado) {
+        long inicio = System.nanoTime();
+        boolean exito = false;
+        try {
+            exito = modificar(id, tipo, dias, estado);
+            return exito;
+        } finally {
+            OP_MODIFICAR.registrar(inicio, exito);
+        }
+    }
+
+    private boolean modificar(int id, String tipo, int dias, String estado) {
+        Licencia license = licencias.get(id);
+        if (license == null) return false;
+
+        CompletableFuture<Void> confirmacion;
+        EventoAuditoria evento;
+        synchronized (lockFor(id)) {
+            String tipoAntes = license.getTipo();
+            int diasAntes = license.getDias();
+            String estadoAntes = license.getEstado();
+            license.incrementarVersion();
+            aplicarModificacion(license, tipo, dias, estado);
+            evento = eventoAuditoria(DiarioAuditoria.usuarioActual(), DiarioAuditoria.Accion.MODIFICACION, license,
+                    tipoAntes, diasAntes, estadoAntes);
+            confirmacion = persistencia == null ? null : persistencia.registrarModificacion(license);
+            if (escrituraDiferida != null) escrituraDiferida.marcar(license);
+        }
+        publicarAuditoria(evento);
+        esperarPersistencia(confirmacion);
+        
+        return true;
+    }
+
+    // Modificación optimista: se aplica solo si la licencia sigue en versionEsperada (la que vio el usuario)
+    // y, si cambia el estado, solo si TransicionesLicencia lo permite. Dos auditores que validan la misma
+    // licencia a la vez no se pisan: el segundo recibe CONFLICTO_VERSION.
+    public ResultadoTransicion updateLicense(int id, long versionEsperada, String tipo, int dias, String estado) {
+        long inicio = System.nanoTime();
+        ResultadoTransicion resultado = ResultadoTransicion.ERROR_PERSISTENCIA;
+        try {
+            Aplicacion aplicacion = aplicarVersionada(id, versionEsperada, tipo, dias, estado, DiarioAuditoria.usuarioActual());
+            resultado = aplicacion.resultado();
+            if (resultado == ResultadoTransicion.APLICADA) esperarPersistencia(aplicacion.confirmacion());
+            return resultado;
+        } finally {
+            OP_TRANSICIONAR.registrar(inicio, resultado == ResultadoTransicion.APLICADA);
+        }
+    }
+
+    public ResultadoTransicion transicionar(int id, long versionEsperada, String estado) {
+        return updateLicense(id, versionEsperada, null, 0, estado);
+    }
+
+    // Aplica la misma transición a muchas licencias en paralelo. Cada pedido se resuelve por separado
+    // (un conflicto no frena al resto) y la espera del log se hace una sola vez al final, así todas
+    // las escrituras del lote entran en los mismos fsync. Los resultados vuelven en el orden de los pedidos.
+    public List<ResultadoPedido> transicionarLote(List<PedidoTransicion> pedidos, String estado) {
+        long inicio = System.nanoTime();
+        boolean exito = false;
+        try {
+            Aplicacion[] aplicaciones = new Aplicacion[pedidos.size()];
+            // Los hilos del stream paralelo no tienen el usuario de este hilo: se pasa explícito
+            String usuario = DiarioAuditoria.usuarioActual();
+            IntStream.range(0, pedidos.size()).parallel().forEach(i -> {
+                PedidoTransicion pedido = pedidos.get(i);
+                aplicaciones[i] = aplicarVersionada(pedido.id(), pedido.versionEsperada(), null, 0, estado, usuario);
+            });
+
+            List<ResultadoPedido> resultados = new ArrayList<>(pedidos.size());
+            for (int i = 0; i < aplicaciones.length; i++) {
+                ResultadoTransicion resultado = aplicaciones[i].resultado();
+                if (resultado == ResultadoTransicion.APLICADA && aplicaciones[i].confirmacion() != null) {
+                    try {
+                        aplicaciones[i].confirmacion().join();
+                    } catch (CompletionException e) {
+                        resultado = ResultadoTransicion.ERROR_PERSISTENCIA;
+                    }
+                }
+                resultados.add(new ResultadoPedido(pedidos.get(i).id(), resultado, aplicaciones[i].version()));
+            }
+            exito = true;
+            return resultados;
+        } finally {
+            OP_LOTE.registrar(inicio, exito);
+        }
+    }
+
+    private record Aplicacion(ResultadoTransicion resultado, long version, CompletableFuture<Void> confirmacion) {
+    }
+
+    // Modificación versionada bajo el lock de la franja de la licencia (no hay lock global): la versión se
+    // compara y avanza con el mismo lock que serializa todos los cambios de la licencia, así que los índices,
+    // los contadores y el orden del log quedan igual que en memoria
+    private Aplicacion aplicarVersionada(int id, long versionEsperada, String tipo, int dias, String estado, String usuario) {
+        Licencia license = licencias.get(id);
+        if (license == null) return new Aplicacion(ResultadoTransicion.NO_ENCONTRADA, -1, null);
+
+        long actual;
+        CompletableFuture<Void> confirmacion;
+        EventoAuditoria evento;
+        synchronized (lockFor(id)) {
+            actual = license.getVersion();
+            if (versionEsperada != CUALQUIER_VERSION && versionEsperada != actual) {
+                return new Aplicacion(ResultadoTransicion.CONFLICTO_VERSION, actual, null);
+            }
+            if (estado != null && !estado.equals(license.getEstado())
+                    && !TransicionesLicencia.permitida(license.getEstado(), estado)) {
+                return new Aplicacion(ResultadoTransicion.TRANSICION_INVALIDA, actual, null);
+            }
+            license.incrementarVersion();
+            String tipoAntes = license.getTipo();
+            int diasAntes = license.getDias();
+            String estadoAntes = license.getEstado();
+            aplicarModificacion(license, tipo, dias, estado);
+            evento = eventoAuditoria(usuario, DiarioAuditoria.Accion.MODIFICACION, license, tipoAntes, diasAntes, estadoAntes);
+            confirmacion = persistencia == null ? null : persistencia.registrarModificacion(license);
+            if (escrituraDiferida != null) escrituraDiferida.marcar(license);
+        }
+        publicarAuditoria(evento);
+        return new Aplicacion(ResultadoTransicion.APLICADA, actual + 1, confirmacion);
+    }
+
+    // Sin diario no se arma ningún evento
+    private EventoAuditoria eventoAuditoria(String usuario, DiarioAuditoria.Accion accion, Licencia license,
+                                            String tipoAntes, int diasAntes, String estadoAntes) {
+        return auditoria == null ? null : auditoria.evento(usuario, accion, license, tipoAntes, diasAntes, estadoAntes);
+    }
+
+    // Se llama después de soltar el lock de la licencia. El cambio ya está aplicado, así que un evento
+    // descartado no hace fallar la operación: se avisa la primera vez y queda en auditoriaDescartados()
+    private void publicarAuditoria(EventoAuditoria evento) {
+        if (evento == null || auditoria.publicar(evento)) return;
+        if (!descarteAuditoriaAvisado) {
+            descarteAuditoriaAvisado = true;
+            System.err.println("El diario de auditoría está lleno o cerrado: se descartan eventos");
+        }
+    }
+
+    // Eventos de auditoría perdidos (buffer lleno con la política descartar, diario cerrado o error de escritura)
+    public long auditoriaDescartados() {
+        return auditoria == null ? 0 : auditoria.descartados();
+    }
+
+    public boolean auditoriaActiva() {
+        return auditoria != null;
+    }
+
+    // Historial de auditoría de una licencia, del cambio más viejo al más nuevo
+    public List<EventoAuditoria> getHistorialLicencia(int id) {
+        return auditoria == null ? List.of() : auditoria.historialLicencia(id);
+    }
+
+    public List<EventoAuditoria> getHistorialUsuario(String username) {
+        return auditoria == null ? List.of() : auditoria.historialUsuario(username);
+    }
+
+    public boolean attachDocument(int id, String documento) {
+        long inicio = System.nanoTime();
+        boolean exito = false;
+        try {
+            exito = adjuntar(id, documento);
+            return exito;
+        } finally {
+            OP_ADJUNTAR.registrar(inicio, exito);
+        }
+    }
+
+    // Guarda el contenido en el almacén (por streaming) y lo asocia a la licencia con el nombre dado.
+    // Devuelve null si la licencia no existe; el contenido se guarda antes de tomar el lock
+    public Adjunto adjuntarContenido(int id, String documento, ReadableByteChannel contenido) throws IOException {
+        if (licencias.get(id) == null) return null;
+        return adjuntarGuardado(id, documento, adjuntos.guardar(contenido));
+    }
+
+    // Igual que adjuntarContenido, para un archivo local (hash sobre el archivo mapeado y copia con transferTo)
+    public Adjunto adjuntarArchivo(int id, String documento, Path archivo) throws IOException {
+        if (licencias.get(id) == null) return null;
+        return adjuntarGuardado(id, documento, adjuntos.guardar(archivo));
+    }
+
+    private Adjunto adjuntarGuardado(int id, String documento, Adjunto contenido) {
+        long inicio = System.nanoTime();
+        boolean exito = false;
+        try {
+            exito = adjuntar(id, documento, contenido);
+            return exito ? contenido : null;
+        } finally {
+            OP_ADJUNTAR.registrar(inicio, exito);
+        }
+    }
+
+    // Envía el contenido adjunto de la licencia al destino; -1 si la licencia no tiene contenido guardado
+    public long descargarAdjunto(int id, WritableByteChannel destino) throws IOException {
+        Licencia license = licencias.get(id);
+        Adjunto contenido = license == null ? null : license.getContenidoAdjunto();
+        if (contenido == null) return -1;
+        return adjuntos.transferir(contenido.hash(), destino);
+    }
+
+    public AlmacenAdjuntos getAlmacenAdjuntos() {
+        return adjuntos;
+    }
+
+    private boolean adjuntar(int id, String documento) {
+        return adjuntar(id, documento, null);
+    }
+
+    // contenido null: solo se registra el nombre y deja de haber contenido asociado
+    private boolean adjuntar(int id, String documento, Adjunto contenido) {
+        Licencia license = licencias.get(id);
+        if (license == null) return false;
+
+        CompletableFuture<Void> confirmacion;
+        EventoAuditoria evento;
+        synchronized (lockFor(id)) {
+            license.incrementarVersion();
+            cambiarDocumento(license, documento);
+            license.setContenidoAdjunto(contenido);
+            evento = eventoAuditoria(DiarioAuditoria.usuarioActual(), DiarioAuditoria.Accion.DOCUMENTO, license,
+                    license.getTipo(), license.getDias(), license.getEstado());
+            confirmacion = persistencia == null ? null : persistencia.registrarModificacion(license);
+            if (escrituraDiferida != null) escrituraDiferida.marcar(license);
+        }
+        publicarAuditoria(evento);
+        esperarPersistencia(confirmacion);
+        return true;
+    }
+
+    // --- Recuperación desde disco: no vuelven a escribir en el log ---
+
+    void restaurarUsuario(Usuario user) {
+        usuarios.put(user.getId(), user);
+        usuariosPorNombre.put(user.getUsername(), user);
+        currentUserId.accumulateAndGet(user.getId() + 1, Math::max);
+    }
+
+    // Idempotente: el tramo de log posterior a un snapshot puede repetir altas ya incluidas en él
+    void restaurarLicencia(Licencia license) {
+        if (licencias.containsKey(license.getId())) return;
+        aplicarAlta(license, true);
+        currentLicenseId.accumulateAndGet(license.getId() + 1, Math::max);
+    }
+
+    // version: la que quedó después del cambio, o CUALQUIER_VERSION en registros de logs viejos que no la
+    // guardaban; en ese caso se cuenta el cambio, como hizo la licencia al aplicarlo
+    void restaurarModificacion(int id, String tipo, int dias, String estado, String documento, Adjunto contenido,
+                               long version) {
+        Licencia license = licencias.get(id);
+        if (license == null) return;
+        aplicarModificacion(license, tipo, dias, estado);
+        cambiarDocumento(license, documento);
+        license.setContenidoAdjunto(contenido);
+        if (version == CUALQUIER_VERSION) license.incrementarVersion();
+        else license.restaurarVersion(version);
+    }
+
+    // Al terminar la recuperación puede haber IDs asignados que nunca llegaron al log
+    void finalizarRecuperacion() {
+        ultimoPublicado.set(currentLicenseId.get() - 1);
+    }
+
+    Collection<Usuario> vistaUsuarios() {
+        return Collections.unmodifiableCollection(usuarios.values());
+    }
+
+    Collection<Licencia> vistaLicencias() {
+        return Collections.unmodifiableCollection(licencias.values());
+    }
+
+    private void aplicarAlta(Licencia license, boolean ocupar) {
+        indexar(licenciasPorEmpleado, license.getLegajoEmpleado(), license);
+        if (ocupar && TransicionesLicencia.ocupaFechas(license.getEstado())) ocuparFechas(license);
+        indexar(licenciasPorEstado, license.getEstado(), license);
+        indexar(licenciasPorCategoria, license.getCategoria(), license);
+        licenciasPorFecha.agregar(license);
+        licencias.put(license.getId(), license);
+        contar(contadorPorEstado, license.getEstado(), 1);
+        contar(contadorPorCategoria, license.getCategoria(), 1);
+        totalLicencias.increment();
+        sumaDias.add(license.getDias());
+        sumarAnalitica(analitica, license);
+        indiceBusqueda.agregar(license);
+    }
+
+    private void aplicarModificacion(Licencia license, String tipo, int dias, String estado) {
+        boolean cambiaAnalitica = (tipo != null && !tipo.equals(license.getTipo()))
+                || (estado != null && !estado.equals(license.getEstado()));
+        if (cambiaAnalitica) {
+            analitica.restar(license.getLegajoEmpleado(), license.getTipo(), license.getEstado(),
+                    license.getInicio(), license.getFin());
+        }
+        if (tipo != null) {
+            indiceBusqueda.cambiar(IndiceBusqueda.Campo.TIPO, license.getId(), license.getTipo(), tipo);
+            license.setTipo(tipo);
+        }
+        if (dias > 0) {
+            sumaDias.add(dias - license.getDias());
+            license.setDias(dias);
+        }
+        if (estado != null && !estado.equals(license.getEstado())) {
+            boolean ocupaba = TransicionesLicencia.ocupaFechas(license.getEstado());
+            desindexar(licenciasPorEstado, license.getEstado(), license);
+            contar(contadorPorEstado, license.getEstado(), -1);
+            license.setEstado(estado);
+            indexar(licenciasPorEstado, estado, license);
+            contar(contadorPorEstado, estado, 1);
+            if (ocupaba != TransicionesLicencia.ocupaFechas(estado)) {
+                if (ocupaba) liberarFechas(license);
+                else ocuparFechas(license);
+            }
+        }
+        if (cambiaAnalitica) sumarAnalitica(analitica, license);
+    }
+
+    private void cambiarDocumento(Licencia license, String documento) {
+        indiceBusqueda.cambiar(IndiceBusqueda.Campo.DOCUMENTO, license.getId(), license.getDocumentoAdjunto(), documento);
+        license.setDocumentoAdjunto(documento);
+    }
+
+    // Los días se toman de las fechas (no del campo días) para poder repartirlos entre meses
+    private static void sumarAnalitica(AnaliticaLicencias destino, Licencia license) {
+        destino.sumar(license.getLegajoEmpleado(), license.getTipo(), license.getEstado(),
+                license.getInicio(), license.getFin());
+    }
+
+    // Las altas sin control igual se registran: si se superponen quedan en la agenda como superpuestas
+    private void ocuparFechas(Licencia license) {
+        if (license.getInicio() == null || license.getFin() == null || license.getFin().isBefore(license.getInicio())) return;
+        agendas.computeIfAbsent(license.getLegajoEmpleado(), k -> new AgendaEmpleado())
+                .ocupar(license, license.getInicio().toEpochDay(), license.getFin().toEpochDay());
+    }
+
+    private void liberarFechas(Licencia license) {
+        AgendaEmpleado agenda = agendas.get(license.getLegajoEmpleado());
+        if (agenda == null || license.getInicio() == null) return;
+        agenda.liberar(license, license.getInicio().toEpochDay());
+    }
+
+    // La operación recién vuelve cuando su registro está sincronizado en disco
+    private void esperarPersistencia(CompletableFuture<Void> confirmacion) {
+        if (confirmacion == null) return;
+        try {
+            confirmacion.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("No se pudo persistir la operación", e.getCause());
+        }
+    }
+
+    private Object lockFor(int id) {
+        return locks[id & (FRANJAS_LOCK - 1)];
+    }
+
+    private void contar(Map<String, LongAdder> contadores, String clave, int delta) {
+        contadores.computeIfAbsent(clave, k -> new LongAdder()).add(delta);
+    }
+
+    // Omite las claves que quedaron en cero (por ejemplo, un estado que ya no tiene licencias)
+    private Map<String, Long> leerContadores(Map<String, LongAdder> contadores) {
+        Map<String, Long> foto = new TreeMap<>();
+        contadores.forEach((clave, contador) -> {
+            long valor = contador.sum();
+            if (valor > 0) foto.put(clave, valor);
+        });
+        return Collections.unmodifiableMap(foto);
+    }
+
+    // Avanza la marca de publicación mientras el siguiente ID ya esté cargado
+    private void publicar() {
+        int actual;
+        while (licencias.containsKey((actual = ultimoPublicado.get()) + 1)) {
+            ultimoPublicado.compareAndSet(actual, actual + 1);
+        }
+    }
+
+    // Recorre solo la vista del rango pedido, hasta la marca de publicación
+    private PaginaLicencias paginar(ConcurrentNavigableMap<Integer, Licencia> origen, int cursor, int tamanio) {
+        if (tamanio <= 0) throw new IllegalArgumentException("El tamaño de página debe ser positivo");
+
+        int limite = ultimoPublicado.get();
+        if (cursor >= limite) return new PaginaLicencias(List.of(), 0);
+
+        List<Licencia> pagina = new ArrayList<>(tamanio);
+        int ultimoId = cursor;
+        boolean hayMas = false;
+        for (Licencia licencia : origen.subMap(cursor, false, limite, true).values()) {
+            if (pagina.size() == tamanio) {
+                hayMas = true;
+                break;
+            }
+            pagina.add(licencia);
+            ultimoId = licencia.getId();
+        }
+        return new PaginaLicencias(Collections.unmodifiableList(pagina), hayMas ? ultimoId : 0);
+    }
+
+    // Devuelve las licencias del índice ordenadas por ID descendente
+    private <K> List<Licencia> consultarIndice(Map<K, ConcurrentNavigableMap<Integer, Licencia>> indice, K clave) {
+        ConcurrentNavigableMap<Integer, Licencia> entradas = indice.get(clave);
+        if (entradas == null) return List.of();
+        return List.copyOf(entradas.descendingMap().values());
+    }
+
+    // Los buckets vacíos no se eliminan: así un alta concurrente nunca escribe en un bucket huérfano
+    private <K> void indexar(Map<K, ConcurrentNavigableMap<Integer, Licencia>> indice, K clave, Licencia license) {
+        indice.computeIfAbsent(clave, k -> new ConcurrentSkipListMap<>()).put(license.getId(), license);
+    }
+
+    private <K> void desindexar(Map<K, ConcurrentNavigableMap<Integer, Licencia>> indice, K clave, Licencia license) {
+        ConcurrentNavigableMap<Integer, Licencia> entradas = indice.get(clave);
+        if (entradas != null) entradas.remove(license.getId());
+    }
+}
+
+// Clase para persistir el StorageManager: log de escritura anticipada (WAL) con commit agrupado
+// y snapshots binarios periódicos.
+//
+// Archivos en el directorio de datos:
+//   wal-<n>.log       segmentos del log; cada registro es [largo int][crc32 int][contenido]
+//   snapshot-<n>.bin  estado completo tomado al abrir el segmento n; se recupera cargándolo
+//                     y reproduciendo solo los segmentos >= n
+//
+// Los registros guardan el estado resultante (no el cambio), así que reproducir de más es inofensivo.
+class PersistenciaLicencias implements AutoCloseable {
+    private static final byte REG_USUARIO = 1;
+    private static final byte REG_LICENCIA = 2;
+    private static final byte REG_MODIFICACION = 3;
+    // Como REG_MODIFICACION más el contenido del adjunto; los logs viejos pueden tener cualquiera de los dos
+    private static final byte REG_MODIFICACION_CONTENIDO = 4;
+    // Como REG_MODIFICACION_CONTENIDO más la versión que quedó en la licencia
+    private static final byte REG_MODIFICACION_VERSIONADA = 5;
+
+    private static final int MAGIC_SNAPSHOT = 0x4C494353; // "LICS"
+    // La versión 2 agrega el contenido del adjunto después de cada licencia y la 3 su versión;
+    // las anteriores se siguen leyendo
+    private static final int VERSION_SNAPSHOT = 3;
+    private static final int MAX_LOTE = 1024;
+    private static final int REGISTROS_POR_SNAPSHOT = 100_000;
+
+    private final Path directorio;
+    private final StorageManager storage;
+    private final int registrosPorSnapshot;
+    private final BlockingQueue<Pendiente> cola = new LinkedBlockingQueue<>();
+    private final ExecutorService snapshots;
+    private final Thread escritor;
+    private final Pendiente cierre = new Pendiente(new byte[0]);
+
+    private FileChannel segmentoActual;
+    private long numeroSegmento;
+    private long registrosEnSegmento;
+    // Bytes del segmento actual que terminaron en un fsync exitoso
+    private long confirmadoEnSegmento;
+    private volatile boolean cerrado;
+    // El escritor ya no toma registros de la cola
+    private volatile boolean terminado;
+
+    // Registro encolado a la espera de su fsync
+    private static final class Pendiente {
+        final byte[] contenido;
+        final CompletableFuture<Void> confirmacion = new CompletableFuture<>();
+
+        Pendiente(byte[] contenido) {
+            this.contenido = contenido;
+        }
+    }
+
+    private PersistenciaLicencias(Path directorio, StorageManager storage, int registrosPorSnapshot) {
+        this.directorio = directorio;
+        this.storage = storage;
+        this.registrosPorSnapshot = registrosPorSnapshot;
+        this.snapshots = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "licencias-snapshot");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        this.escritor = new Thread(this::escribirLotes, "licencias-wal");
+        this.escritor.setDaemon(true);
+    }
+
+    // Recupera el estado en el storage y deja el log listo para recibir escrituras
+    static PersistenciaLicencias abrir(Path directorio, StorageManager storage) {
+        return abrir(directorio, storage, REGISTROS_POR_SNAPSHOT);
+    }
+
+    static PersistenciaLicencias abrir(Path directorio, StorageManager storage, int registrosPorSnapshot) {
+        PersistenciaLicencias persistencia = new PersistenciaLicencias(directorio, storage, registrosPorSnapshot);
+        try {
+            Files.createDirectories(directorio);
+            long siguiente = persistencia.recuperar();
+            persistencia.abrirSegmento(siguiente);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el directorio de datos " + directorio, e);
+        }
+        persistencia.escritor.start();
+        return persistencia;
+    }
+
+    CompletableFuture<Void> registrarUsuario(Usuario user) {
+        return encolar(salida -> {
+            salida.writeByte(REG_USUARIO);
+            escribirUsuario(salida, user);
+        });
+    }
+
+    CompletableFuture<Void> registrarAlta(Licencia license) {
+        return encolar(salida -> {
+            salida.writeByte(REG_LICENCIA);
+            escribirLicencia(salida, license);
+        });
+    }
+
+    // Guarda los campos modificables tal como quedaron (tipo, días, estado, documento y su contenido) y la
+    // versión, para que un cliente que vio una versión anterior al reinicio no la encuentre repetida
+    CompletableFuture<Void> registrarModificacion(Licencia license) {
+        return encolar(salida -> {
+            salida.writeByte(REG_MODIFICACION_VERSIONADA);
+            salida.writeInt(license.getId());
+            escribirTexto(salida, license.getTipo());
+            salida.writeInt(license.getDias());
+            escribirTexto(salida, license.getEstado());
+            escribirTexto(salida, license.getDocumentoAdjunto());
+            escribirContenido(salida, license.getContenidoAdjunto());
+            salida.writeLong(license.getVersion());
+        });
+    }
+
+    @Override
+    public void close() {
+        if (cerrado) return;
+        cerrado = true;
+        cola.add(cierre);
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshots.shutdown();
+        try {
+            snapshots.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --- Escritura ---
+
+    private interface Codificador {
+        void escribir(DataOutputStream salida) throws IOException;
+    }
+
+    private CompletableFuture<Void> encolar(Codificador codificador) {
+        if (cerrado) {
+            return CompletableFuture.failedFuture(new IllegalStateException("El log ya está cerrado"));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream salida = new DataOutputStream(bytes)) {
+            codificador.escribir(salida);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        Pendiente pendiente = new Pendiente(bytes.toByteArray());
+        cola.add(pendiente);
+        // Carrera con close(): si se encoló después de que el escritor vació la cola por última vez, nadie
+        // lo va a escribir. El escritor marca terminado antes de ese vaciado, así que uno de los dos lo ve
+        if (terminado) rechazarPendientes();
+        return pendiente.confirmacion;
+    }
+
+    private void rechazarPendientes() {
+        Pendiente resto;
+        while ((resto = cola.poll()) != null) {
+            resto.confirmacion.completeExceptionally(new IllegalStateException("El log ya está cerrado"));
+        }
+    }
+
+    // Commit agrupado: todo lo que se acumuló mientras se hacía el fsync anterior va en un solo fsync
+    private void escribirLotes() {
+        List<Pendiente> lote = new ArrayList<>(MAX_LOTE);
+        CRC32 crc = new CRC32();
+        boolean terminar = false;
+        while (!terminar) {
+            try {
+                lote.add(cola.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            cola.drainTo(lote, MAX_LOTE - 1);
+
+            try {
+                int total = 0;
+                for (Pendiente pendiente : lote) {
+                    total += pendiente.contenido.length + 8;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(total);
+                int registros = 0;
+                for (Pendiente pendiente : lote) {
+                    if (pendiente == cierre) {
+                        terminar = true;
+                        continue;
+                    }
+                    crc.reset();
+                    crc.update(pendiente.contenido);
+                    buffer.putInt(pendiente.contenido.length);
+                    buffer.putInt((int) crc.getValue());
+                    buffer.put(pendiente.contenido);
+                    registros++;
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    segmentoActual.write(buffer);
+                }
+                segmentoActual.force(false);
+                confirmadoEnSegmento += buffer.limit();
+                lote.forEach(p -> p.confirmacion.complete(null));
+
+                registrosEnSegmento += registros;
+                if (registrosEnSegmento >= registrosPorSnapshot && !terminar) {
+                    rotarYProgramarSnapshot();
+                }
+            } catch (IOException e) {
+                lote.forEach(p -> p.confirmacion.completeExceptionally(e));
+                descartarEscrituraParcial();
+            }
+            lote.clear();
+        }
+
+        try {
+            segmentoActual.close();
+        } catch (IOException e) {
+            System.err.println("Error al cerrar el log: " + e.getMessage());
+        }
+        // Lo que haya quedado en cola después del cierre se rechaza
+        terminado = true;
+        rechazarPendientes();
+    }
+
+    private void abrirSegmento(long numero) throws IOException {
+        segmentoActual = FileChannel.open(directorio.resolve(nombreSegmento(numero)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        numeroSegmento = numero;
+        registrosEnSegmento = 0;
+        confirmadoEnSegmento = segmentoActual.size();
+    }
+
+    // Después de un error el segmento puede terminar en un registro a medias. Si se siguiera escribiendo
+    // detrás, la recuperación se detendría en ese registro y perdería todo lo confirmado después. Se recorta
+    // el segmento a lo último confirmado; si no se puede, se sigue en un segmento nuevo (la recuperación lee
+    // cada segmento hasta su primer registro dañado y después pasa al siguiente)
+    private void descartarEscrituraParcial() {
+        try {
+            segmentoActual.truncate(confirmadoEnSegmento);
+            segmentoActual.force(true);
+            return;
+        } catch (IOException e) {
+            System.err.println("No se pudo recortar el log, se pasa a un segmento nuevo: " + e.getMessage());
+        }
+        try {
+            segmentoActual.close();
+        } catch (IOException e) {
+            // El segmento se abandona igual
+        }
+        try {
+            abrirSegmento(numeroSegmento + 1);
+        } catch (IOException e) {
+            // El próximo lote falla con el canal cerrado y vuelve a intentar desde acá
+            System.err.println("No se pudo abrir un segmento nuevo del log: " + e.getMessage());
+        }
+    }
+
+    // Los cambios ya escritos en el segmento viejo fueron aplicados en memoria antes de encolarse,
+    // así que el snapshot tomado después de rotar los incluye
+    private void rotarYProgramarSnapshot() throws IOException {
+        segmentoActual.close();
+        long nuevo = numeroSegmento + 1;
+        abrirSegmento(nuevo);
+        snapshots.execute(() -> {
+            try {
+                escribirSnapshot(nuevo);
+            } catch (IOException e) {
+                System.err.println("Error al escribir snapshot: " + e.getMessage());
+            }
+        });
+    }
+
+    private void escribirSnapshot(long numero) throws IOException {
+        Path temporal = directorio.resolve(nombreSnapshot(numero) + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BufferedOutputStream buffer = new BufferedOutputStream(Channels.newOutputStream(canal), 1 << 16);
+            CheckedOutputStream conCrc = new CheckedOutputStream(buffer, new CRC32());
+            DataOutputStream salida = new DataOutputStream(conCrc);
+            salida.writeInt(MAGIC_SNAPSHOT);
+            salida.writeInt(VERSION_SNAPSHOT);
+
+            List<Usuario> usuarios = new ArrayList<>(storage.vistaUsuarios());
+            salida.writeInt(usuarios.size());
+            for (Usuario user : usuarios) {
+                escribirUsuario(salida, user);
+            }
+
+            // La vista es débilmente consistente; lo que cambie mientras se recorre vuelve a estar en el log
+            long cantidad = 0;
+            for (Licencia license : storage.vistaLicencias()) {
+                salida.writeByte(REG_LICENCIA);
+                escribirLicencia(salida, license);
+                escribirContenido(salida, license.getContenidoAdjunto());
+                salida.writeLong(license.getVersion());
+                cantidad++;
+            }
+            salida.writeByte(0);
+            salida.flush();
+
+            // Pie fuera del CRC: cantidad de licencias y CRC del cuerpo
+            DataOutputStream pie = new DataOutputStream(buffer);
+            pie.writeLong(cantidad);
+            pie.writeLong(conCrc.getChecksum().getValue());
+            pie.flush();
+            canal.force(true);
+        }
+        Files.move(temporal, directorio.resolve(nombreSnapshot(numero)),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        // Con el snapshot nuevo en su lugar, lo anterior ya no hace falta para recuperar
+        for (Path archivo : listar("wal-", ".log")) {
+            if (numeroDe(archivo) < numero) Files.deleteIfExists(archivo);
+        }
+        for (Path archivo : listar("snapshot-", ".bin")) {
+            if (numeroDe(archivo) < numero) Files.deleteIfExists(archivo);
+        }
+    }
+
+    // --- Recuperación ---
+
+    // Devuelve el número del próximo segmento a abrir
+    private long recuperar() throws IOException {
+        long desde = 0;
+        List<Path> snapshotsGuardados = listar("snapshot-", ".bin");
+        if (!snapshotsGuardados.isEmpty()) {
+            Path ultimo = snapshotsGuardados.get(snapshotsGuardados.size() - 1);
+            cargarSnapshot(ultimo);
+            desde = numeroDe(ultimo);
+        }
+
+        long siguiente = desde;
+        for (Path segmento : listar("wal-", ".log")) {
+            long numero = numeroDe(segmento);
+            if (numero < desde) continue;
+            reproducirSegmento(segmento);
+            siguiente = Math.max(siguiente, numero + 1);
+        }
+        storage.finalizarRecuperacion();
+        return siguiente;
+    }
+
+    private void cargarSnapshot(Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            MappedByteBuffer datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            if (datos.limit() < 24) throw new IOException("Snapshot truncado: " + archivo);
+
+            int finCuerpo = datos.limit() - 16;
+            CRC32 crc = new CRC32();
+            crc.update(datos.duplicate().limit(finCuerpo));
+            if (crc.getValue() != datos.getLong(finCuerpo + 8)) {
+                throw new IOException("Snapshot corrupto: " + archivo);
+            }
+
+            ByteBuffer cuerpo = datos.duplicate().limit(finCuerpo);
+            int magic = cuerpo.getInt();
+            int version = cuerpo.getInt();
+            if (magic != MAGIC_SNAPSHOT || version < 1 || version > VERSION_SNAPSHOT) {
+                throw new IOException("Formato de snapshot desconocido: " + archivo);
+            }
+            int cantidadUsuarios = cuerpo.getInt();
+            for (int i = 0; i < cantidadUsuarios; i++) {
+                storage.restaurarUsuario(leerUsuario(cuerpo));
+            }
+            while (cuerpo.get() == REG_LICENCIA) {
+                Licencia license = leerLicencia(cuerpo);
+                if (version >= 2) license.setContenidoAdjunto(leerContenido(cuerpo));
+                if (version >= 3) license.restaurarVersion(cuerpo.getLong());
+                storage.restaurarLicencia(license);
+            }
+        }
+    }
+
+    // Reproduce hasta el primer registro incompleto o con CRC inválido (cola de una caída)
+    private void reproducirSegmento(Path segmento) throws IOException {
+        try (FileChannel canal = FileChannel.open(segmento, StandardOpenOption.READ)) {
+            if (canal.size() == 0) return;
+            MappedByteBuffer datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            CRC32 crc = new CRC32();
+            while (datos.remaining() >= 8) {
+                int largo = datos.getInt();
+                int esperado = datos.getInt();
+                if (largo <= 0 || largo > datos.remaining()) break;
+
+                ByteBuffer registro = datos.slice().limit(largo);
+                crc.reset();
+                crc.update(registro.duplicate());
+                if ((int) crc.getValue() != esperado) break;
+
+                aplicarRegistro(registro);
+                datos.position(datos.position() + largo);
+            }
+        }
+    }
+
+    private void aplicarRegistro(ByteBuffer registro) {
+        byte tipo = registro.get();
+        switch (tipo) {
+            case REG_USUARIO -> storage.restaurarUsuario(leerUsuario(registro));
+            case REG_LICENCIA -> storage.restaurarLicencia(leerLicencia(registro));
+            case REG_MODIFICACION, REG_MODIFICACION_CONTENIDO, REG_MODIFICACION_VERSIONADA -> {
+                int id = registro.getInt();
+                String tipoLicencia = leerTexto(registro);
+                int dias = registro.getInt();
+                String estado = leerTexto(registro);
+                String documento = leerTexto(registro);
+                Adjunto contenido = tipo != REG_MODIFICACION ? leerContenido(registro) : null;
+                long version = tipo == REG_MODIFICACION_VERSIONADA ? registro.getLong() : StorageManager.CUALQUIER_VERSION;
+                storage.restaurarModificacion(id, tipoLicencia, dias, estado, documento, contenido, version);
+            }
+            default -> throw new IllegalStateException("Tipo de registro desconocido: " + tipo);
+        }
+    }
+
+    // --- Codificación ---
+
+    private static void escribirUsuario(DataOutputStream salida, Usuario user) throws IOException {
+        salida.writeInt(user.getId());
+        escribirTexto(salida, user.getUsername());
+        escribirBytes(salida, user.getSalt());
+        escribirBytes(salida, user.getPasswordHash());
+        escribirTexto(salida, user.getRole());
+        salida.writeInt(user.getLegajo());
+    }
+
+    private static Usuario leerUsuario(ByteBuffer entrada) {
+        int id = entrada.getInt();
+        String username = leerTexto(entrada);
+        byte[] salt = leerBytes(entrada);
+        byte[] hash = leerBytes(entrada);
+        String role = leerTexto(entrada);
+        int legajo = entrada.getInt();
+        return new Usuario(id, username, salt, hash, role, legajo);
+    }
+
+    private static void escribirLicencia(DataOutputStream salida, Licencia license) throws IOException {
+        salida.writeInt(license.getId());
+        salida.writeInt(license.getLegajoEmpleado());
+        escribirTexto(salida, license.getCategoria());
+        escribirTexto(salida, license.getTipo());
+        salida.writeInt(license.getDias());
+        escribirTexto(salida, license.getEmpleado());
+        escribirTexto(salida, license.getFechaInicio());
+        escribirTexto(salida, license.getFechaFin());
+        escribirTexto(salida, license.getEstado());
+        escribirTexto(salida, license.getDocumentoAdjunto());
+        salida.writeLong(license.getCreatedAt().toEpochSecond(ZoneOffset.UTC));
+        salida.writeInt(license.getCreatedAt().getNano());
+    }
+
+    private static Licencia leerLicencia(ByteBuffer entrada) {
+        int id = entrada.getInt();
+        int legajo = entrada.getInt();
+        String categoria = leerTexto(entrada);
+        String tipo = leerTexto(entrada);
+        int dias = entrada.getInt();
+        String empleado = leerTexto(entrada);
+        String fechaInicio = leerTexto(entrada);
+        String fechaFin = leerTexto(entrada);
+        String estado = leerTexto(entrada);
+        String documento = leerTexto(entrada);
+        LocalDateTime createdAt = LocalDateTime.ofEpochSecond(entrada.getLong(), entrada.getInt(), ZoneOffset.UTC);
+        return new Licencia(id, legajo, categoria, tipo, dias, empleado, fechaInicio, fechaFin,
+                estado, documento, createdAt);
+    }
+
+    // Hash vacío = sin contenido
+    private static void escribirContenido(DataOutputStream salida, Adjunto contenido) throws IOException {
+        escribirTexto(salida, contenido == null ? "" : contenido.hash());
+        salida.writeLong(contenido == null ? 0 : contenido.tamanio());
+    }
+
+    private static Adjunto leerContenido(ByteBuffer entrada) {
+        String hash = leerTexto(entrada);
+        long tamanio = entrada.getLong();
+        return hash.isEmpty() ? null : new Adjunto(hash, tamanio);
+    }
+
+    private static void escribirTexto(DataOutputStream salida, String texto) throws IOException {
+        escribirBytes(salida, texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String leerTexto(ByteBuffer entrada) {
+        return new String(leerBytes(entrada), StandardCharsets.UTF_8);
+    }
+
+    private static void escribirBytes(DataOutputStream salida, byte[] bytes) throws IOException {
+        salida.writeInt(bytes.length);
+        salida.write(bytes);
+    }
+
+    private static byte[] leerBytes(ByteBuffer entrada) {
+        byte[] bytes = new byte[entrada.getInt()];
+        entrada.get(bytes);
+        return bytes;
+    }
+
+    // --- Archivos ---
+
+    private static String nombreSegmento(long numero) {
+        return String.format("wal-%012d.log", numero);
+    }
+
+    private static String nombreSnapshot(long numero) {
+        return String.format("snapshot-%012d.bin", numero);
+    }
+
+    private static long numeroDe(Path archivo) {
+        String nombre = archivo.getFileName().toString();
+        return Long.parseLong(nombre.substring(nombre.indexOf('-') + 1, nombre.lastIndexOf('.')));
+    }
+
+    // Ordenados por número gracias al relleno con ceros
+    private List<Path> listar(String prefijo, String sufijo) throws IOException {
+        List<Path> archivos = new ArrayList<>();
+        try (DirectoryStream<Path> entradas = Files.newDirectoryStream(directorio, prefijo + "*" + sufijo)) {
+            entradas.forEach(archivos::add);
+        }
+        Collections.sort(archivos);
+        return archivos;
+    }
+}
+
+// Conexión a la base de datos donde se guarda la copia de las licencias
+interface ConexionesBD {
+    Connection conectar() throws SQLException;
+}
+
+// Clase para mantener las licencias del StorageManager en la base de datos con escritura diferida.
+// Cada alta o modificación solo marca la licencia como sucia; un hilo aparte las escribe en lotes
+// cada INTERVALO_MS (o antes si se juntan MAX_LOTE). Varias modificaciones de la misma licencia
+// entre dos vaciados se escriben una sola vez, con el estado que tenga al momento de escribirla.
+//
+// Si la base no responde, las licencias quedan marcadas y se reintentan en el siguiente ciclo;
+// para no perder cambios ante una caída del proceso hay que usarla junto con el log en disco.
+//
+// Es una copia propia del StorageManager, no el repositorio de LicenciaDAO: escribe en LicenciaSistema
+// (categoría, tipo y estado por nombre, más el documento y la fecha de alta) y no en la tabla Licencia
+// normalizada, que no tiene dónde guardar esos datos. Las licencias cargadas con SistemaLicencias_ModificadoFinal
+// no se ven acá, ni las de acá allá.
+class EscrituraDiferidaLicencias implements AutoCloseable {
+    static final long INTERVALO_MS = 500;
+    static final int MAX_LOTE = 500;
+    private static final int REINTENTOS_AL_CERRAR = 3;
+
+    private static final String SQL_CREAR_TABLA = """
+            CREATE TABLE IF NOT EXISTS LicenciaSistema (
+              idLicencia INT PRIMARY KEY,
+              Legajo INT,
+              Categoria VARCHAR(50),
+              Tipo VARCHAR(100),
+              Dias INT,
+              Empleado VARCHAR(200),
+              FechaInicio VARCHAR(10),
+              FechaFin VARCHAR(10),
+              Estado VARCHAR(50),
+              DocumentoAdjunto VARCHAR(500),
+              Creada TIMESTAMP
+            )""";
+    private static final String SQL_LEER = "SELECT idLicencia, Legajo, Categoria, Tipo, Dias, Empleado, " +
+            "FechaInicio, FechaFin, Estado, DocumentoAdjunto, Creada FROM LicenciaSistema";
+    private static final String SQL_GUARDAR = "INSERT INTO LicenciaSistema (idLicencia, Legajo, Categoria, Tipo, " +
+            "Dias, Empleado, FechaInicio, FechaFin, Estado, DocumentoAdjunto, Creada) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE Tipo = VALUES(Tipo), Dias = VALUES(Dias), Estado = VALUES(Estado), " +
+            "DocumentoAdjunto = VALUES(DocumentoAdjunto)";
+
+    private final ConexionesBD baseDatos;
+    private final long intervaloMs;
+    private final int maxLote;
+    // Licencias con cambios todavía no escritos, por ID (marcar dos veces no duplica el trabajo)
+    private final Map<Integer, Licencia> sucias = new ConcurrentHashMap<>();
+    private final Object aviso = new Object();
+    private final Thread vaciador;
+    private final LongAdder escritas = new LongAdder();
+    private final LongAdder lotes = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+
+    private Connection conexion;
+    private volatile boolean cerrado;
+
+    private EscrituraDiferidaLicencias(ConexionesBD baseDatos, long intervaloMs, int maxLote) {
+        this.baseDatos = baseDatos;
+        this.intervaloMs = intervaloMs;
+        this.maxLote = maxLote;
+        this.vaciador = new Thread(this::vaciarPeriodicamente, "licencias-bd");
+        this.vaciador.setDaemon(true);
+    }
+
+    // Carga en el storage las licencias guardadas y arranca el hilo de escritura
+    static EscrituraDiferidaLicencias abrir(ConexionesBD baseDatos, StorageManager storage) {
+        return abrir(baseDatos, storage, INTERVALO_MS, MAX_LOTE);
+    }
+
+    static EscrituraDiferidaLicencias abrir(ConexionesBD baseDatos, StorageManager storage,
+                                            long intervaloMs, int maxLote) {
+        EscrituraDiferidaLicencias escritura = new EscrituraDiferidaLicencias(baseDatos, intervaloMs, maxLote);
+        try {
+            escritura.cargar(storage);
+        } catch (SQLException e) {
+            escritura.cerrarConexion();
+            throw new IllegalStateException("No se pudieron cargar las licencias de la base de datos", e);
+        }
+        escritura.vaciador.start();
+        return escritura;
+    }
+
+    void marcar(Licencia license) {
+        if (sucias.put(license.getId(), license) == null && sucias.size() >= maxLote) {
+            synchronized (aviso) {
+                aviso.notify();
+            }
+        }
+    }
+
+    int pendientes() {
+        return sucias.size();
+    }
+
+    long escritas() {
+        return escritas.sum();
+    }
+
+    long lotes() {
+        return lotes.sum();
+    }
+
+    long fallos() {
+        return fallos.sum();
+    }
+
+    // Detiene el hilo y escribe lo que quede pendiente antes de volver
+    @Override
+    public void close() {
+        if (cerrado) return;
+        cerrado = true;
+        synchronized (aviso) {
+            aviso.notify();
+        }
+        try {
+            vaciador.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (int intento = 0; intento < REINTENTOS_AL_CERRAR && !sucias.isEmpty(); intento++) {
+            vaciar();
+        }
+        if (!sucias.isEmpty()) {
+            System.err.println("No se pudieron guardar " + sucias.size() + " licencias en la base de datos");
+        }
+        cerrarConexion();
+    }
+
+    // Las licencias que ya están en memoria (recuperadas del log) se comparan con la fila guardada:
+    // si la fila está desactualizada o no existe, se marcan para volver a escribirlas
+    private void cargar(StorageManager storage) throws SQLException {
+        Connection conn = conexion();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(SQL_CREAR_TABLA);
+        }
+        Set<Integer> guardadas = new HashSet<>();
+        // La tabla no guarda la versión: las licencias que solo vienen de la base arrancan en el instante
+        // de la carga (en ms), mayor que cualquier versión que un cliente pudo ver antes del reinicio
+        long versionInicial = System.currentTimeMillis();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(SQL_LEER)) {
+            while (rs.next()) {
+                Timestamp creada = rs.getTimestamp(11);
+                Licencia fila = new Licencia(rs.getInt(1), rs.getInt(2), rs.getString(3), rs.getString(4),
+                        rs.getInt(5), rs.getString(6), rs.getString(7), rs.getString(8), rs.getString(9),
+                        rs.getString(10), creada == null ? LocalDateTime.now() : creada.toLocalDateTime());
+                guardadas.add(fila.getId());
+                Licencia enMemoria = storage.getLicenseById(fila.getId());
+                if (enMemoria == null) {
+                    fila.restaurarVersion(versionInicial);
+                    storage.restaurarLicencia(fila);
+                } else if (!mismoEstado(enMemoria, fila)) {
+                    sucias.put(enMemoria.getId(), enMemoria);
+                }
+            }
+        }
+        // La conexión no es autocommit: sin esto el CREATE TABLE y la lectura quedarían en una transacción
+        // abierta (con sus locks) hasta el primer lote, que podría tardar o no llegar nunca
+        conn.commit();
+        storage.finalizarRecuperacion();
+        for (Licencia license : storage.vistaLicencias()) {
+            if (!guardadas.contains(license.getId())) sucias.put(license.getId(), license);
+        }
+    }
+
+    private static boolean mismoEstado(Licencia a, Licencia b) {
+        return a.getDias() == b.getDias()
+                && Objects.equals(a.getTipo(), b.getTipo())
+                && Objects.equals(a.getEstado(), b.getEstado())
+                && Objects.equals(a.getDocumentoAdjunto(), b.getDocumentoAdjunto());
+    }
+
+    // Espera hasta INTERVALO_MS o hasta que se junte un lote completo, lo que ocurra primero
+    private void vaciarPeriodicamente() {
+        while (!cerrado) {
+            synchronized (aviso) {
+                if (!cerrado && sucias.size() < maxLote) {
+                    try {
+                        aviso.wait(intervaloMs);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            vaciar();
+        }
+    }
+
+    // Se quita la marca antes de leer la licencia: si otro hilo la modifica mientras tanto, la vuelve
+    // a marcar y el cambio sale en el próximo vaciado
+    private void vaciar() {
+        List<Licencia> lote = new ArrayList<>(maxLote);
+        for (Integer id : sucias.keySet()) {
+            Licencia license = sucias.remove(id);
+            if (license != null) lote.add(license);
+            if (lote.size() == maxLote) {
+                if (!escribir(lote)) return;
+                lote.clear();
+            }
+        }
+        if (!lote.isEmpty()) escribir(lote);
+    }
+
+    // Si el lote falla se devuelven las marcas (sin pisar una más nueva) y se reintenta en el próximo ciclo
+    private boolean escribir(List<Licencia> lote) {
+        try {
+            Connection conn = conexion();
+            try (PreparedStatement ps = conn.prepareStatement(SQL_GUARDAR)) {
+                for (Licencia license : lote) {
+                    ps.setInt(1, license.getId());
+                    ps.setInt(2, license.getLegajoEmpleado());
+                    ps.setString(3, license.getCategoria());
+                    ps.setString(4, license.getTipo());
+                    ps.setInt(5, license.getDias());
+                    ps.setString(6, license.getEmpleado());
+                    ps.setString(7, license.getFechaInicio());
+                    ps.setString(8, license.getFechaFin());
+                    ps.setString(9, license.getEstado());
+                    ps.setString(10, license.getDocumentoAdjunto());
+                    ps.setTimestamp(11, Timestamp.valueOf(license.getCreatedAt()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            }
+            escritas.add(lote.size());
+            lotes.increment();
+            return true;
+        } catch (SQLException e) {
+            fallos.increment();
+            for (Licencia license : lote) {
+                sucias.putIfAbsent(license.getId(), license);
+            }
+            cerrarConexion();
+            return false;
+        }
+    }
+
+    private Connection conexion() throws SQLException {
+        if (conexion == null) {
+            Connection nueva = baseDatos.conectar();
+            nueva.setAutoCommit(false);
+            conexion = nueva;
+        }
+        return conexion;
+    }
+
+    // Se deshace explícitamente lo que haya quedado sin confirmar: qué pasa con una transacción abierta al
+    // cerrar depende del driver, y algunos la confirman
+    private void cerrarConexion() {
+        if (conexion == null) return;
+        try {
+            conexion.rollback();
+        } catch (SQLException ignorada) {
+            // Si ya no responde, tampoco tiene nada que confirmar
+        }
+        try {
+            conexion.close();
+        } catch (SQLException ignorada) {
+            // La conexión ya no sirve; se abre otra en el próximo intento
+        }
+        conexion = null;
+    }
+}
+
+// Evento del diario de auditoría. Los campos "Antes" quedan en null/0 en un alta
+// numero: orden del cambio entre todos los eventos (se asigna bajo el lock de la licencia); 0 en los
+// eventos escritos antes de que existiera el campo
+record EventoAuditoria(long numero, long instante, String usuario, DiarioAuditoria.Accion accion, int licencia,
+                       String tipoAntes, String tipo, int diasAntes, int dias,
+                       String estadoAntes, String estado, String documento) {
+}
+
+// Diario de auditoría: quién cambió cada licencia (alta, tipo, días, estado, documento) y cuándo.
+//
+// Bajo el lock de la licencia solo se arma el evento con evento() (y se le asigna su número de orden);
+// después de soltar el lock, publicar() lo deja en un casillero de un buffer circular prealocado (cola
+// acotada de varios productores y un consumidor, con un número de secuencia por casillero, sin locks).
+// Un único hilo "licencias-auditoria" vacía el buffer en lotes: agrega cada evento al final de
+// auditoria.jsonl (una línea JSON por evento, con force por lote) y a los índices por licencia y por
+// usuario que usan las consultas. Como dos hilos pueden publicar en otro orden que el de sus cambios,
+// los historiales se ordenan por número.
+//
+// Memoria acotada: con archivo, los índices guardan solo la posición de cada línea en auditoria.jsonl
+// (8 bytes por evento y por índice) y las consultas leen los eventos del disco; al arrancar se recorre
+// el archivo una vez para rearmar esas posiciones. Sin directorio de datos el diario solo existe si se
+// pide con -Dlicencias.auditoria.enMemoria=true, y entonces guarda los últimos MAX_EVENTOS_EN_MEMORIA.
+//
+// Buffer lleno (el disco no da abasto): con la política ESPERAR (por defecto) el productor espera
+// a que el consumidor libere un casillero, así que no se pierde ningún evento pero la operación se
+// frena al ritmo del disco (sin frenar a otras licencias de su franja, porque ya soltó el lock); con
+// DESCARTAR el evento se pierde, la operación sigue sin demora y se cuenta en descartados().
+// Se elige con -Dlicencias.auditoria.alLlenarse=esperar|descartar.
+class DiarioAuditoria implements AutoCloseable {
+    enum Accion { ALTA, MODIFICACION, DOCUMENTO }
+
+    enum PoliticaLleno { ESPERAR, DESCARTAR }
+
+    static final int CAPACIDAD_POR_DEFECTO = 1 << 16; // potencia de 2
+    static final int MAX_EVENTOS_EN_MEMORIA = 100_000;
+    private static final int MAX_LOTE = 4096;
+    private static final long ESPERA_CONSUMIDOR_NS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long ESPERA_PRODUCTOR_NS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long ESPERA_CONSULTA_MINIMA_NS = TimeUnit.MICROSECONDS.toNanos(10);
+    private static final ThreadLocal<String> USUARIO_ACTUAL = new ThreadLocal<>();
+    // Valor de siguienteEscritura una vez que el consumidor terminó: ningún productor puede tomar casillero
+    private static final long SELLADO = -1;
+
+    // Lo escribe un productor y lo lee el consumidor, ordenados por la secuencia del casillero
+    private final EventoAuditoria[] casilleros;
+    // secuencias[i] == posición: libre para esa posición; == posición + 1: escrito y listo para leer
+    private final AtomicLongArray secuencias;
+    private final int mascara;
+    private final AtomicLong siguienteEscritura = new AtomicLong();
+    private final AtomicLong numerador = new AtomicLong();
+    private final PoliticaLleno politica;
+    private final FileChannel archivo;
+    // Canal aparte para las lecturas posicionales de las consultas
+    private final FileChannel lectura;
+    private final Thread consumidor;
+    private final LongAdder esperas = new LongAdder();
+    private final LongAdder descartados = new LongAdder();
+    // Con archivo: posiciones de las líneas de cada licencia y de cada usuario
+    private final Map<Integer, Posiciones> posicionesLicencia = new ConcurrentHashMap<>();
+    private final Map<String, Posiciones> posicionesUsuario = new ConcurrentHashMap<>();
+    // Sin archivo: los eventos más recientes, y todos juntos en orden para descartar los más viejos
+    private final Map<Integer, Queue<EventoAuditoria>> porLicencia = new ConcurrentHashMap<>();
+    private final Map<String, Queue<EventoAuditoria>> porUsuario = new ConcurrentHashMap<>();
+    private final ArrayDeque<EventoAuditoria> recientes = new ArrayDeque<>();
+    // Fin de la última línea completa del archivo y si hace falta un salto de línea antes del próximo
+    // lote (quedó una escritura a medias que no se pudo recortar); solo los usa el consumidor
+    private long tamanio;
+    private boolean separar;
+    private long siguienteLectura;
+    // Eventos ya indexados (y escritos); las consultas esperan a que alcance lo publicado
+    private volatile long procesados;
+    private volatile boolean cerrado;
+
+    // archivo: null para llevar el diario solo en memoria
+    DiarioAuditoria(Path archivo, int capacidad, PoliticaLleno politica) {
+        if (Integer.bitCount(capacidad) != 1) throw new IllegalArgumentException("La capacidad debe ser potencia de 2");
+        this.casilleros = new EventoAuditoria[capacidad];
+        this.secuencias = new AtomicLongArray(capacidad);
+        for (int i = 0; i < capacidad; i++) {
+            secuencias.set(i, i);
+        }
+        this.mascara = capacidad - 1;
+        this.politica = politica;
+        try {
+            if (archivo != null) {
+                if (Files.exists(archivo)) tamanio = cargar(archivo);
+                else Files.createDirectories(archivo.toAbsolutePath().getParent());
+                this.archivo = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+                // Una última línea cortada se recorta para que el próximo evento no quede pegado a ella
+                if (this.archivo.size() > tamanio) this.archivo.truncate(tamanio);
+                this.lectura = FileChannel.open(archivo, StandardOpenOption.READ);
+            } else {
+                this.archivo = null;
+                this.lectura = null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el diario de auditoría " + archivo, e);
+        }
+        this.consumidor = new Thread(this::consumir, "licencias-auditoria");
+        consumidor.setDaemon(true);
+        consumidor.start();
+    }
+
+    // null si no hay directorio de datos ni se pidió el diario en memoria
+    static DiarioAuditoria abrir(Path directorioDatos) {
+        if (directorioDatos == null && !Boolean.getBoolean("licencias.auditoria.enMemoria")) return null;
+        Path archivo = directorioDatos == null ? null : directorioDatos.resolve("auditoria.jsonl");
+        PoliticaLleno politica = PoliticaLleno.valueOf(
+                System.getProperty("licencias.auditoria.alLlenarse", "esperar").toUpperCase(Locale.ROOT));
+        return new DiarioAuditoria(archivo, CAPACIDAD_POR_DEFECTO, politica);
+    }
+
+    // Usuario al que se atribuyen los cambios hechos desde este hilo (el menú al hacer login, la API por pedido)
+    static void usuarioActual(String usuario) {
+        if (usuario == null) USUARIO_ACTUAL.remove();
+        else USUARIO_ACTUAL.set(usuario);
+    }
+
+    static String usuarioActual() {
+        String usuario = USUARIO_ACTUAL.get();
+        return usuario == null ? "sistema" : usuario;
+    }
+
+    // Se llama bajo el lock de la licencia, con los valores anteriores al cambio; los nuevos se leen de la licencia.
+    // No espera nunca: el evento se publica con publicar() después de soltar el lock
+    EventoAuditoria evento(String usuario, Accion accion, Licencia licencia, String tipoAntes, int diasAntes,
+                           String estadoAntes) {
+        return new EventoAuditoria(numerador.incrementAndGet(), System.currentTimeMillis(), usuario, accion,
+                licencia.getId(), tipoAntes, licencia.getTipo(), diasAntes, licencia.getDias(), estadoAntes,
+                licencia.getEstado(), licencia.getDocumentoAdjunto());
+    }
+
+    // Se llama sin locks tomados: con ESPERAR puede quedarse esperando lugar en el buffer.
+    // Devuelve false si el evento se descartó (buffer lleno con DESCARTAR, o diario cerrado); se cuenta en descartados()
+    boolean publicar(EventoAuditoria evento) {
+        long posicion;
+        int indice;
+        while (true) {
+            // Un casillero tomado después de que el consumidor terminó no lo leería nadie
+            posicion = siguienteEscritura.get();
+            if (posicion == SELLADO || cerrado) {
+                descartados.increment();
+                return false;
+            }
+            indice = (int) (posicion & mascara);
+            long secuencia = secuencias.get(indice);
+            if (secuencia == posicion) {
+                if (siguienteEscritura.compareAndSet(posicion, posicion + 1)) break;
+            } else if (secuencia < posicion) {
+                // El casillero todavía tiene un evento de la vuelta anterior: buffer lleno
+                if (politica == PoliticaLleno.DESCARTAR) {
+                    descartados.increment();
+                    return false;
+                }
+                esperas.increment();
+                LockSupport.parkNanos(ESPERA_PRODUCTOR_NS);
+            }
+            // secuencia > posicion: otro productor ganó esta posición; se reintenta con la siguiente
+        }
+
+        casilleros[indice] = evento;
+        secuencias.set(indice, posicion + 1);
+        return true;
+    }
+
+    // Historial de una licencia, del evento más viejo al más nuevo
+    List<EventoAuditoria> historialLicencia(int id) {
+        esperarProcesados();
+        return archivo == null ? ordenados(porLicencia.get(id)) : ordenados(leer(posicionesLicencia.get(id)));
+    }
+
+    List<EventoAuditoria> historialUsuario(String usuario) {
+        esperarProcesados();
+        return archivo == null ? ordenados(porUsuario.get(usuario)) : ordenados(leer(posicionesUsuario.get(usuario)));
+    }
+
+    // Orden en que se hicieron los cambios; el sort es estable, así que los eventos sin número quedan como se leyeron
+    private static List<EventoAuditoria> ordenados(Collection<EventoAuditoria> eventos) {
+        if (eventos == null) return List.of();
+        List<EventoAuditoria> lista = new ArrayList<>(eventos);
+        lista.sort(Comparator.comparingLong(EventoAuditoria::numero));
+        return lista;
+    }
+
+    // Lee del archivo las líneas en esas posiciones (las posiciones de una clave van en orden creciente)
+    private List<EventoAuditoria> leer(Posiciones posiciones) {
+        if (posiciones == null) return null;
+        long[] lista = posiciones.copia();
+        List<EventoAuditoria> eventos = new ArrayList<>(lista.length);
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        ByteArrayOutputStream linea = new ByteArrayOutputStream(512);
+        try {
+            for (long posicion : lista) {
+                EventoAuditoria evento = evento(leerLinea(posicion, buffer, linea));
+                if (evento != null) eventos.add(evento);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el diario de auditoría", e);
+        }
+        return eventos;
+    }
+
+    private String leerLinea(long posicion, ByteBuffer buffer, ByteArrayOutputStream linea) throws IOException {
+        linea.reset();
+        while (true) {
+            buffer.clear();
+            int leidos = lectura.read(buffer, posicion);
+            if (leidos <= 0) break;
+            byte[] datos = buffer.array();
+            for (int i = 0; i < leidos; i++) {
+                if (datos[i] == '\n') {
+                    linea.write(datos, 0, i);
+                    return linea.toString(StandardCharsets.UTF_8);
+                }
+            }
+            linea.write(datos, 0, leidos);
+            posicion += leidos;
+        }
+        return linea.toString(StandardCharsets.UTF_8);
+    }
+
+    long esperas() {
+        return esperas.sum();
+    }
+
+    long descartados() {
+        return descartados.sum();
+    }
+
+    // Espera a que el consumidor vacíe lo que ya estaba en el buffer y lo deja escrito
+    @Override
+    public void close() {
+        cerrado = true;
+        LockSupport.unpark(consumidor);
+        try {
+            consumidor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (archivo != null) archivo.close();
+            if (lectura != null) lectura.close();
+        } catch (IOException e) {
+            System.err.println("Error al cerrar el diario de auditoría: " + e.getMessage());
+        }
+    }
+
+    // Las consultas ven todo lo registrado antes de llamarlas. Despierta al consumidor y duerme con
+    // espera creciente (hasta lo que duerme el consumidor) en vez de girar ocupando un núcleo
+    private void esperarProcesados() {
+        long objetivo = siguienteEscritura.get();
+        if (objetivo == SELLADO) return;
+        long espera = ESPERA_CONSULTA_MINIMA_NS;
+        while (procesados < objetivo && consumidor.isAlive()) {
+            LockSupport.unpark(consumidor);
+            LockSupport.parkNanos(espera);
+            espera = Math.min(espera * 2, ESPERA_CONSUMIDOR_NS);
+        }
+    }
+
+    private void consumir() {
+        List<EventoAuditoria> lote = new ArrayList<>(MAX_LOTE);
+        long[] posiciones = new long[MAX_LOTE];
+        StringBuilder linea = new StringBuilder(256);
+        ByteArrayOutputStream lineas = new ByteArrayOutputStream(MAX_LOTE * 200);
+        while (true) {
+            long posicion = siguienteLectura;
+            while (lote.size() < MAX_LOTE) {
+                int indice = (int) (posicion & mascara);
+                if (secuencias.get(indice) != posicion + 1) break;
+                lote.add(casilleros[indice]);
+                casilleros[indice] = null;
+                // Libera el casillero para la próxima vuelta del buffer
+                secuencias.set(indice, posicion + casilleros.length);
+                posicion++;
+            }
+            siguienteLectura = posicion;
+
+            if (lote.isEmpty()) {
+                // Al cerrar se termina recién cuando ningún productor tiene un casillero tomado sin escribir.
+                // El sello es un CAS sobre la misma posición: si un productor llegó a tomarla antes, falla
+                // y el evento se vacía en la próxima vuelta
+                if (cerrado && siguienteEscritura.compareAndSet(posicion, SELLADO)) {
+                    procesados = posicion;
+                    return;
+                }
+                procesados = posicion;
+                LockSupport.parkNanos(ESPERA_CONSUMIDOR_NS);
+                continue;
+            }
+
+            if (archivo == null) {
+                for (EventoAuditoria evento : lote) {
+                    indexarEnMemoria(evento);
+                }
+            } else if (escribir(lote, posiciones, linea, lineas)) {
+                for (int i = 0; i < lote.size(); i++) {
+                    indexar(lote.get(i), posiciones[i]);
+                }
+            } else {
+                // Lo que no llegó al archivo no se puede consultar: se cuenta como descartado
+                descartados.add(lote.size());
+            }
+            lote.clear();
+            procesados = posicion;
+        }
+    }
+
+    // Agrega el lote al final del archivo y deja en posiciones dónde empieza la línea de cada evento.
+    // Si falla, recorta el archivo al final del lote anterior para no dejar una línea a medias
+    private boolean escribir(List<EventoAuditoria> lote, long[] posiciones, StringBuilder linea,
+                             ByteArrayOutputStream lineas) {
+        lineas.reset();
+        if (separar) lineas.write('\n');
+        for (int i = 0; i < lote.size(); i++) {
+            EventoAuditoria evento = lote.get(i);
+            linea.setLength(0);
+            linea.append("{\"numero\":").append(evento.numero())
+                 .append(",\"instante\":").append(evento.instante())
+                 .append(",\"usuario\":").append(Json.texto(evento.usuario()))
+                 .append(",\"accion\":\"").append(evento.accion()).append('"')
+                 .append(",\"licencia\":").append(evento.licencia())
+                 .append(",\"tipoAntes\":").append(Json.texto(evento.tipoAntes()))
+                 .append(",\"tipo\":").append(Json.texto(evento.tipo()))
+                 .append(",\"diasAntes\":").append(evento.diasAntes())
+                 .append(",\"dias\":").append(evento.dias())
+                 .append(",\"estadoAntes\":").append(Json.texto(evento.estadoAntes()))
+                 .append(",\"estado\":").append(Json.texto(evento.estado()))
+                 .append(",\"documento\":").append(Json.texto(evento.documento()))
+                 .append("}\n");
+            posiciones[i] = tamanio + lineas.size();
+            lineas.writeBytes(linea.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(lineas.toByteArray());
+        try {
+            while (bytes.hasRemaining()) archivo.write(bytes);
+            archivo.force(false);
+            tamanio += bytes.limit();
+            separar = false;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error al escribir el diario de auditoría: " + e.getMessage());
+            try {
+                archivo.truncate(tamanio);
+            } catch (IOException errorRecorte) {
+                // No se pudo volver atrás: lo que haya quedado a medias se aísla con un salto de línea
+                try {
+                    tamanio = archivo.size();
+                } catch (IOException ignorada) {
+                    // Se sigue con la última posición conocida
+                }
+                separar = true;
+            }
+            return false;
+        }
+    }
+
+    private void indexar(EventoAuditoria evento, long posicion) {
+        posicionesLicencia.computeIfAbsent(evento.licencia(), k -> new Posiciones()).agregar(posicion);
+        posicionesUsuario.computeIfAbsent(evento.usuario(), k -> new Posiciones()).agregar(posicion);
+    }
+
+    // El evento más viejo de recientes es siempre el primero de su licencia y de su usuario
+    private void indexarEnMemoria(EventoAuditoria evento) {
+        porLicencia.computeIfAbsent(evento.licencia(), k -> new ConcurrentLinkedQueue<>()).add(evento);
+        porUsuario.computeIfAbsent(evento.usuario(), k -> new ConcurrentLinkedQueue<>()).add(evento);
+        recientes.addLast(evento);
+        if (recientes.size() > MAX_EVENTOS_EN_MEMORIA) {
+            EventoAuditoria viejo = recientes.removeFirst();
+            porLicencia.computeIfPresent(viejo.licencia(), (clave, eventos) -> {
+                eventos.poll();
+                return eventos.isEmpty() ? null : eventos;
+            });
+            porUsuario.computeIfPresent(viejo.usuario(), (clave, eventos) -> {
+                eventos.poll();
+                return eventos.isEmpty() ? null : eventos;
+            });
+        }
+    }
+
+    // Rearma las posiciones con el historial de corridas anteriores y devuelve el fin de la última línea
+    // completa. Una línea dañada (por ejemplo la última, cortada por un corte de luz a mitad de un lote)
+    // se ignora
+    private long cargar(Path archivo) throws IOException {
+        long posicion = 0;
+        long inicioLinea = 0;
+        byte[] bloque = new byte[1 << 16];
+        ByteArrayOutputStream linea = new ByteArrayOutputStream(512);
+        try (InputStream entrada = Files.newInputStream(archivo)) {
+            int leidos;
+            while ((leidos = entrada.read(bloque)) != -1) {
+                int desde = 0;
+                for (int i = 0; i < leidos; i++) {
+                    if (bloque[i] != '\n') continue;
+                    linea.write(bloque, desde, i - desde);
+                    EventoAuditoria evento = evento(linea.toString(StandardCharsets.UTF_8));
+                    if (evento != null) {
+                        indexar(evento, inicioLinea);
+                        if (evento.numero() > numerador.get()) numerador.set(evento.numero());
+                    }
+                    linea.reset();
+                    desde = i + 1;
+                    inicioLinea = posicion + desde;
+                }
+                linea.write(bloque, desde, leidos - desde);
+                posicion += leidos;
+            }
+        }
+        return inicioLinea;
+    }
+
+    // null si la línea está vacía o dañada: JSON inválido, un campo que falta o un número/acción que no se
+    // puede leer (incluye NumberFormatException)
+    private static EventoAuditoria evento(String linea) {
+        if (linea.isBlank()) return null;
+        try {
+            Map<String, String> campos = Json.leerObjeto(linea);
+            String numero = campos.get("numero");
+            return new EventoAuditoria(numero == null ? 0 : Long.parseLong(numero),
+                    Long.parseLong(campos.get("instante")),
+                    Objects.requireNonNull(campos.get("usuario")),
+                    Accion.valueOf(campos.get("accion")), Integer.parseInt(campos.get("licencia")),
+                    campos.get("tipoAntes"), campos.get("tipo"),
+                    Integer.parseInt(campos.get("diasAntes")), Integer.parseInt(campos.get("dias")),
+                    campos.get("estadoAntes"), campos.get("estado"), campos.get("documento"));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    // Posiciones en el archivo de los eventos de una licencia o de un usuario, en orden creciente
+    private static final class Posiciones {
+        private long[] valores = new long[2];
+        private int cantidad;
+
+        synchronized void agregar(long posicion) {
+            if (cantidad == valores.length) valores = Arrays.copyOf(valores, cantidad * 2);
+            valores[cantidad++] = posicion;
+        }
+
+        synchronized long[] copia() {
+            return Arrays.copyOf(valores, cantidad);
+        }
+    }
+}
+
+// Contenido de un documento adjunto: su SHA-256 en hexadecimal (la clave en el almacén) y su tamaño en bytes
+record Adjunto(String hash, long tamanio) {
+}
+
+// Clase para guardar el contenido de los documentos adjuntos, direccionado por contenido: cada archivo se
+// guarda una sola vez con su SHA-256 como nombre (adjuntos/ab/abcd...), así que subir el mismo certificado
+// para varias licencias no ocupa más espacio. Los archivos nunca se modifican ni se borran, y una licencia
+// que cambia de documento solo pasa a apuntar a otro hash.
+//
+// La subida se escribe por streaming con FileChannel a un archivo temporal, calculando el hash sobre el
+// mismo buffer a medida que llegan los bytes; al terminar se renombra atómicamente a su nombre
+// definitivo (o se descarta si ese contenido ya estaba). Las descargas van con transferTo, del archivo al
+// canal de destino sin pasar por el heap, y mapear() da una vista de solo lectura para uso en el proceso.
+class AlmacenAdjuntos {
+    private static final int TAMANIO_BUFFER = 1 << 20;
+    static final long MAXIMO_POR_DEFECTO = 64L << 20;
+    // Buffers directos reutilizables, para que el FileChannel escriba sin una copia intermedia (el digest
+    // sí copia cada tramo a un arreglo propio, y un origen basado en InputStream también pasa por uno).
+    // El pool es acotado: con muchas subidas a la vez los buffers de más se crean y se sueltan, en lugar
+    // de quedar retenidos uno por hilo
+    private static final BlockingQueue<ByteBuffer> BUFFERS_LIBRES =
+            new ArrayBlockingQueue<>(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    // La subida superó el tamaño máximo permitido
+    static final class DemasiadoGrande extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        DemasiadoGrande(long maximo) {
+            super("El documento supera el máximo de " + maximo + " bytes");
+        }
+    }
+
+    private final Path directorio;
+    private final long maximo;
+    private final LongAdder guardados = new LongAdder();
+    private final LongAdder repetidos = new LongAdder();
+    private final LongAdder bytesRecibidos = new LongAdder();
+
+    AlmacenAdjuntos(Path directorio, long maximo) {
+        this.directorio = directorio;
+        this.maximo = maximo;
+    }
+
+    static AlmacenAdjuntos abrir(Path directorioDatos) {
+        Path directorio = directorioDatos != null ? directorioDatos.resolve("adjuntos")
+                : Path.of(System.getProperty("licencias.adjuntos", "adjuntos"));
+        long maximoMb = Long.getLong("licencias.adjuntos.maximoMb", MAXIMO_POR_DEFECTO >> 20);
+        return new AlmacenAdjuntos(directorio, maximoMb << 20);
+    }
+
+    // Lee el origen hasta el final. Si el contenido ya estaba guardado, no se escribe una segunda copia
+    Adjunto guardar(ReadableByteChannel origen) throws IOException {
+        Files.createDirectories(directorio);
+        Path temporal = Files.createTempFile(directorio, "subida-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            ByteBuffer buffer = tomarBuffer();
+            long tamanio = 0;
+            try (FileChannel salida = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+                buffer.clear();
+                while (origen.read(buffer) >= 0) {
+                    if (buffer.position() == 0) continue;
+                    buffer.flip();
+                    tamanio += buffer.remaining();
+                    if (tamanio > maximo) throw new DemasiadoGrande(maximo);
+                    digest.update(buffer);
+                    buffer.rewind();
+                    while (buffer.hasRemaining()) salida.write(buffer);
+                    buffer.clear();
+                }
+                salida.force(false);
+            } finally {
+                devolverBuffer(buffer);
+            }
+            return publicar(temporal, new Adjunto(hex(digest.digest()), tamanio));
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    private static ByteBuffer tomarBuffer() {
+        ByteBuffer buffer = BUFFERS_LIBRES.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(TAMANIO_BUFFER);
+    }
+
+    // Si el pool está lleno el buffer se descarta y su memoria se libera con el GC
+    private static void devolverBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        BUFFERS_LIBRES.offer(buffer);
+    }
+
+    // Camino rápido para un archivo local: el hash se calcula sobre el archivo mapeado y la copia la hace
+    // el sistema operativo con transferTo
+    Adjunto guardar(Path archivo) throws IOException {
+        Files.createDirectories(directorio);
+        try (FileChannel entrada = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamanio = entrada.size();
+            if (tamanio > maximo) throw new DemasiadoGrande(maximo);
+            MessageDigest digest = sha256();
+            for (long posicion = 0; posicion < tamanio; ) {
+                long largo = Math.min(Integer.MAX_VALUE, tamanio - posicion);
+                digest.update(entrada.map(FileChannel.MapMode.READ_ONLY, posicion, largo));
+                posicion += largo;
+            }
+            Adjunto adjunto = new Adjunto(hex(digest.digest()), tamanio);
+            if (Files.exists(ruta(adjunto.hash()))) {
+                return publicar(null, adjunto);
+            }
+            Path temporal = Files.createTempFile(directorio, "subida-", ".tmp");
+            try {
+                try (FileChannel salida = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+                    for (long posicion = 0; posicion < tamanio; ) {
+                        posicion += entrada.transferTo(posicion, tamanio - posicion, salida);
+                    }
+                    salida.force(false);
+                }
+                return publicar(temporal, adjunto);
+            } finally {
+                Files.deleteIfExists(temporal);
+            }
+        }
+    }
+
+    // Deja el temporal en su lugar definitivo; si dos subidas iguales llegan juntas, el contenido es el mismo
+    private Adjunto publicar(Path temporal, Adjunto adjunto) throws IOException {
+        bytesRecibidos.add(adjunto.tamanio());
+        Path destino = ruta(adjunto.hash());
+        if (temporal == null || Files.exists(destino)) {
+            repetidos.increment();
+            return adjunto;
+        }
+        Files.createDirectories(destino.getParent());
+        try {
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            repetidos.increment();
+            return adjunto;
+        }
+        guardados.increment();
+        return adjunto;
+    }
+
+    // Copia el contenido al destino sin pasar por el heap (sendfile cuando el destino es un socket o archivo)
+    long transferir(String hash, WritableByteChannel destino) throws IOException {
+        try (FileChannel entrada = FileChannel.open(ruta(hash), StandardOpenOption.READ)) {
+            long tamanio = entrada.size();
+            long posicion = 0;
+            while (posicion < tamanio) {
+                posicion += entrada.transferTo(posicion, tamanio - posicion, destino);
+            }
+            return tamanio;
+        }
+    }
+
+    // Vista de solo lectura del contenido; el mapeo sigue siendo válido después de cerrar el canal
+    MappedByteBuffer mapear(String hash) throws IOException {
+        try (FileChannel entrada = FileChannel.open(ruta(hash), StandardOpenOption.READ)) {
+            return entrada.map(FileChannel.MapMode.READ_ONLY, 0, entrada.size());
+        }
+    }
+
+    boolean existe(String hash) {
+        return Files.exists(ruta(hash));
+    }
+
+    long guardados() {
+        return guardados.sum();
+    }
+
+    long repetidos() {
+        return repetidos.sum();
+    }
+
+    long bytesRecibidos() {
+        return bytesRecibidos.sum();
+    }
+
+    // El hash se valida antes de armar la ruta: viene de la API y no puede escaparse del directorio
+    Path ruta(String hash) {
+        if (hash == null || hash.length() != 64 || !hash.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+            throw new IllegalArgumentException("Hash de adjunto inválido: " + hash);
+        }
+        return directorio.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder texto = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            texto.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return texto.toString();
+    }
+}
+
+// Diccionario de textos repetidos: cada valor distinto se guarda una sola vez y se referencia por código
+class DiccionarioTextos {
+    private final Map<String, Integer> codigos = new HashMap<>();
+    private final List<String> valores = new ArrayList<>();
+
+    int codificar(String valor) {
+        Integer codigo = codigos.get(valor);
+        if (codigo != null) return codigo;
+        int nuevo = valores.size();
+        valores.add(valor);
+        codigos.put(valor, nuevo);
+        return nuevo;
+    }
+
+    String decodificar(int codigo) {
+        return valores.get(codigo);
+    }
+
+    int size() {
+        return valores.size();
+    }
+}
+
+// Clase para guardar licencias en columnas de primitivos en lugar de un objeto por licencia.
+// Fechas como día epoch, categoría/tipo/estado como códigos chicos y empleado/documento por diccionario.
+// Los IDs son consecutivos desde 1, así que la fila de una licencia es id - 1.
+//
+// Es un almacén aparte (lo usa BenchmarkMemoria), no un modo del StorageManager: ahí cada Licencia lleva su
+// versión y es el mismo objeto que referencian los índices, el log y la auditoría.
+class LicenciasColumnares {
+    private static final int CAPACIDAD_INICIAL = 1024;
+    private static final int SIN_DOCUMENTO = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final DiccionarioTextos categorias = new DiccionarioTextos();
+    private final DiccionarioTextos tipos = new DiccionarioTextos();
+    private final DiccionarioTextos estados = new DiccionarioTextos();
+    private final DiccionarioTextos empleados = new DiccionarioTextos();
+    private final DiccionarioTextos documentos = new DiccionarioTextos();
+
+    private int cantidad;
+    private int[] legajo = new int[CAPACIDAD_INICIAL];
+    private int[] dias = new int[CAPACIDAD_INICIAL];
+    private int[] inicio = new int[CAPACIDAD_INICIAL];
+    private int[] fin = new int[CAPACIDAD_INICIAL];
+    private byte[] categoria = new byte[CAPACIDAD_INICIAL];
+    private short[] tipo = new short[CAPACIDAD_INICIAL];
+    private byte[] estado = new byte[CAPACIDAD_INICIAL];
+    private int[] empleado = new int[CAPACIDAD_INICIAL];
+    private int[] documento = new int[CAPACIDAD_INICIAL];
+    private long[] creada = new long[CAPACIDAD_INICIAL];
+
+    // Mismos parámetros que StorageManager.createLicense; devuelve el ID asignado
+    public int createLicense(int legajoEmpleado, String categoriaLicencia, String tipoLicencia, int diasLicencia,
+                             String nombreEmpleado, String fechaInicio, String fechaFin) {
+        int diaInicio = aDiaEpoch(fechaInicio);
+        int diaFin = aDiaEpoch(fechaFin);
+        lock.writeLock().lock();
+        try {
+            if (cantidad == legajo.length) crecer();
+            int fila = cantidad;
+            legajo[fila] = legajoEmpleado;
+            dias[fila] = diasLicencia;
+            inicio[fila] = diaInicio;
+            fin[fila] = diaFin;
+            categoria[fila] = codigoByte(categorias, categoriaLicencia);
+            tipo[fila] = codigoShort(tipos, tipoLicencia);
+            estado[fila] = codigoByte(estados, "Solicitada");
+            empleado[fila] = empleados.codificar(nombreEmpleado);
+            documento[fila] = SIN_DOCUMENTO;
+            creada[fila] = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+            cantidad++;
+            return fila + 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean updateLicense(int id, String tipoLicencia, int diasLicencia, String estadoLicencia) {
+        lock.writeLock().lock();
+        try {
+            int fila = id - 1;
+            if (fila < 0 || fila >= cantidad) return false;
+            if (tipoLicencia != null) tipo[fila] = codigoShort(tipos, tipoLicencia);
+            if (diasLicencia > 0) dias[fila] = diasLicencia;
+            if (estadoLicencia != null) estado[fila] = codigoByte(estados, estadoLicencia);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean attachDocument(int id, String nombreDocumento) {
+        lock.writeLock().lock();
+        try {
+            int fila = id - 1;
+            if (fila < 0 || fila >= cantidad) return false;
+            documento[fila] = documentos.codificar(nombreDocumento);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Vista liviana de una fila: solo guarda el número de fila y lee las columnas en cada getter, así que
+    // siempre muestra los valores actuales. Crearla no decodifica nada
+    public Vista vista(int id) {
+        lock.readLock().lock();
+        try {
+            int fila = id - 1;
+            if (fila < 0 || fila >= cantidad) return null;
+            return new Vista(fila);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Copia completa en un Licencia nuevo, para quien necesite el objeto; para leer campos sueltos usar vista()
+    public Licencia getLicenseById(int id) {
+        lock.readLock().lock();
+        try {
+            int fila = id - 1;
+            if (fila < 0 || fila >= cantidad) return null;
+            return new Licencia(id, legajo[fila], categorias.decodificar(categoria[fila]),
+                    tipos.decodificar(tipo[fila]), dias[fila], empleados.decodificar(empleado[fila]),
+                    LocalDate.ofEpochDay(inicio[fila]).toString(), LocalDate.ofEpochDay(fin[fila]).toString(),
+                    estados.decodificar(estado[fila]),
+                    documento[fila] == SIN_DOCUMENTO ? "" : documentos.decodificar(documento[fila]),
+                    LocalDateTime.ofEpochSecond(creada[fila], 0, ZoneOffset.UTC));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Acceso directo a columnas, para recorridos que no necesitan armar la licencia completa
+    public int getLegajo(int id) {
+        lock.readLock().lock();
+        try {
+            return legajo[fila(id)];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public String getEstado(int id) {
+        lock.readLock().lock();
+        try {
+            return estados.decodificar(estado[fila(id)]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public LocalDate getFechaInicio(int id) {
+        lock.readLock().lock();
+        try {
+            return LocalDate.ofEpochDay(inicio[fila(id)]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public LocalDate getFechaFin(int id) {
+        lock.readLock().lock();
+        try {
+            return LocalDate.ofEpochDay(fin[fila(id)]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return cantidad;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int fila(int id) {
+        int fila = id - 1;
+        if (fila < 0 || fila >= cantidad) throw new NoSuchElementException("Licencia inexistente: " + id);
+        return fila;
+    }
+
+    // Mismos getters que Licencia, leídos de las columnas por fila. Toman el lock en cada lectura porque
+    // las columnas se reemplazan al crecer
+    final class Vista {
+        private final int fila;
+
+        private Vista(int fila) {
+            this.fila = fila;
+        }
+
+        public int getId() {
+            return fila + 1;
+        }
+
+        public int getLegajoEmpleado() {
+            lock.readLock().lock();
+            try {
+                return legajo[fila];
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public String getCategoria() {
+            lock.readLock().lock();
+            try {
+                return categorias.decodificar(categoria[fila]);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public String getTipo() {
+            lock.readLock().lock();
+            try {
+                return tipos.decodificar(tipo[fila]);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public int getDias() {
+            lock.readLock().lock();
+            try {
+                return dias[fila];
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public String getEmpleado() {
+            lock.readLock().lock();
+            try {
+                return empleados.decodificar(empleado[fila]);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public String getFechaInicio() {
+            lock.readLock().lock();
+            try {
+                return LocalDate.ofEpochDay(inicio[fila]).toString();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public String getFechaFin() {
+            lock.readLock().lock();
+            try {
+                return LocalDate.ofEpochDay(fin[fila]).toString();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public String getEstado() {
+            lock.readLock().lock();
+            try {
+                return estados.decodificar(estado[fila]);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public String getDocumentoAdjunto() {
+            lock.readLock().lock();
+            try {
+                return documento[fila] == SIN_DOCUMENTO ? "" : documentos.decodificar(documento[fila]);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public LocalDateTime getCreatedAt() {
+            lock.readLock().lock();
+            try {
+                return LocalDateTime.ofEpochSecond(creada[fila], 0, ZoneOffset.UTC);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    private void crecer() {
+        int nueva = legajo.length * 2;
+        legajo = Arrays.copyOf(legajo, nueva);
+        dias = Arrays.copyOf(dias, nueva);
+        inicio = Arrays.copyOf(inicio, nueva);
+        fin = Arrays.copyOf(fin, nueva);
+        categoria = Arrays.copyOf(categoria, nueva);
+        tipo = Arrays.copyOf(tipo, nueva);
+        estado = Arrays.copyOf(estado, nueva);
+        empleado = Arrays.copyOf(empleado, nueva);
+        documento = Arrays.copyOf(documento, nueva);
+        creada = Arrays.copyOf(creada, nueva);
+    }
+
+    private static byte codigoByte(DiccionarioTextos diccionario, String valor) {
+        int codigo = diccionario.codificar(valor);
+        if (codigo > Byte.MAX_VALUE) throw new IllegalStateException("Demasiados valores distintos: " + valor);
+        return (byte) codigo;
+    }
+
+    private static short codigoShort(DiccionarioTextos diccionario, String valor) {
+        int codigo = diccionario.codificar(valor);
+        if (codigo > Short.MAX_VALUE) throw new IllegalStateException("Demasiados valores distintos: " + valor);
+        return (short) codigo;
+    }
+
+    private static int aDiaEpoch(String fecha) {
+        try {
+            return Math.toIntExact(LocalDate.parse(fecha).toEpochDay());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha inválida (se espera yyyy-MM-dd): " + fecha, e);
+        }
+    }
+}
+
+// Compara el heap ocupado por el mapa de objetos Licencia contra el almacenamiento columnar
+class BenchmarkMemoria {
+    private static final String[][] TIPOS = {
+        {"Servicio", "Vacaciones"}, {"Servicio", "Maternidad"}, {"Médica", "Enfermedad"}, {"Médica", "Prevención"}
+    };
+
+    static void ejecutar(int cantidad) {
+        System.out.printf("Licencias: %,d%n", cantidad);
+
+        long base = heapUsado();
+        Map<Integer, Licencia> mapa = new HashMap<>();
+        for (int i = 1; i <= cantidad; i++) {
+            String[] tipo = TIPOS[i % TIPOS.length];
+            LocalDate inicio = LocalDate.of(2020, 1, 1).plusDays(i % 1500);
+            // Strings nuevos por registro, como los que llegan desde la consola o la base
+            mapa.put(i, new Licencia(i, 1000 + i % 5000, tipo[0], tipo[1], 3, "empleado" + (i % 5000),
+                    inicio.toString(), inicio.plusDays(2).toString()));
+        }
+        long bytesMapa = heapUsado() - base;
+        System.out.printf("HashMap<Integer, Licencia>: %,d bytes (%.1f por licencia)%n",
+                bytesMapa, (double) bytesMapa / cantidad);
+        mapa = null;
+
+        base = heapUsado();
+        LicenciasColumnares columnas = new LicenciasColumnares();
+        for (int i = 1; i <= cantidad; i++) {
+            String[] tipo = TIPOS[i % TIPOS.length];
+            LocalDate inicio = LocalDate.of(2020, 1, 1).plusDays(i % 1500);
+            columnas.createLicense(1000 + i % 5000, tipo[0], tipo[1], 3, "empleado" + (i % 5000),
+                    inicio.toString(), inicio.plusDays(2).toString());
+        }
+        long bytesColumnas = heapUsado() - base;
+        System.out.printf("LicenciasColumnares:        %,d bytes (%.1f por licencia)%n",
+                bytesColumnas, (double) bytesColumnas / cantidad);
+        System.out.printf("Reducción: %.1fx (%d filas)%n", (double) bytesMapa / bytesColumnas, columnas.size());
+    }
+
+    private static long heapUsado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
+
+// Benchmark del AlmacenAdjuntos en un directorio temporal: subida por streaming (contenido nuevo y
+// repetido), alta desde archivo local, descarga con transferTo y lectura mapeada. Informa MB/s por tamaño
+class BenchmarkAdjuntos {
+    private static final int ARCHIVOS = 20;
+    // Acumula lo leído del mapeo para que el JIT no elimine la lectura
+    private static volatile long sumidero;
+
+    static void ejecutar(int[] megabytes) throws IOException {
+        Path directorio = Files.createTempDirectory("bench-adjuntos");
+        try {
+            AlmacenAdjuntos almacen = new AlmacenAdjuntos(directorio.resolve("almacen"), Long.MAX_VALUE);
+            System.out.println("mb,operacion,mb_por_seg");
+            for (int mb : megabytes) {
+                byte[] contenido = new byte[mb << 20];
+                ThreadLocalRandom.current().nextBytes(contenido);
+                Path origen = directorio.resolve("origen-" + mb + ".bin");
+                Files.write(origen, contenido);
+
+                // Cada subida cambia los primeros bytes para que el contenido sea nuevo
+                String[] hashes = new String[ARCHIVOS];
+                medir(mb, "subir_stream_nuevo", i -> {
+                    contenido[0] = (byte) i;
+                    contenido[1] = (byte) (i >> 8);
+                    contenido[2] = (byte) mb;
+                    hashes[i] = almacen.guardar(Channels.newChannel(new ByteArrayInputStream(contenido))).hash();
+                });
+                medir(mb, "subir_stream_repetido", i ->
+                        almacen.guardar(Channels.newChannel(new ByteArrayInputStream(contenido))));
+                medir(mb, "subir_archivo_local", i -> {
+                    try (FileChannel canal = FileChannel.open(origen, StandardOpenOption.WRITE)) {
+                        canal.write(ByteBuffer.wrap(new byte[]{(byte) i, (byte) (i >> 8), (byte) (mb + 1)}), 0);
+                    }
+                    almacen.guardar(origen);
+                });
+
+                Path destino = directorio.resolve("descarga.bin");
+                medir(mb, "descargar_transferTo", i -> {
+                    try (FileChannel salida = FileChannel.open(destino, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                        almacen.transferir(hashes[i], salida);
+                    }
+                });
+                long[] suma = new long[1];
+                medir(mb, "leer_mapeado", i -> {
+                    MappedByteBuffer mapeado = almacen.mapear(hashes[i]);
+                    while (mapeado.remaining() >= Long.BYTES) {
+                        suma[0] += mapeado.getLong();
+                    }
+                });
+                Files.deleteIfExists(origen);
+                Files.deleteIfExists(destino);
+                sumidero += suma[0];
+            }
+            System.out.printf("guardados=%d repetidos=%d%n", almacen.guardados(), almacen.repetidos());
+        } finally {
+            try (Stream<Path> archivos = Files.walk(directorio)) {
+                for (Path archivo : archivos.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(archivo);
+                }
+            }
+        }
+    }
+
+    private interface Operacion {
+        void ejecutar(int i) throws IOException;
+    }
+
+    // Una pasada de calentamiento y después ARCHIVOS operaciones medidas
+    private static void medir(int mb, String operacion, Operacion accion) throws IOException {
+        accion.ejecutar(0);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < ARCHIVOS; i++) {
+            accion.ejecutar(i);
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf(Locale.ROOT, "%d,%s,%.1f%n", mb, operacion, (double) mb * ARCHIVOS / segundos);
+    }
+}
+
+// Clase para medir las operaciones más usadas del StorageManager y el formateo de licencias.
+// Escribe una línea CSV por tamaño y operación (ns por operación, mediana y mínimo de las rondas)
+// para poder comparar corridas entre commits.
+//
+// No es un módulo JMH porque JMH rechaza los benchmarks del paquete por defecto ("Benchmark class should
+// have package other than default") y, desde un paquete con nombre, Java no deja usar las clases del
+// paquete por defecto, que es donde está todo el sistema. Hasta que el código pase a un paquete, se imita
+// lo esencial de JMH: calentamiento, rondas medidas y un sumidero para que el JIT no descarte el trabajo.
+class BenchmarkOperaciones {
+    private static final String[][] TIPOS = {
+        {"Servicio", "Vacaciones"}, {"Servicio", "Maternidad"}, {"Médica", "Enfermedad"}, {"Médica", "Prevención"}
+    };
+    // Estados reales que ocupan fechas: cada cambio mueve los contadores y la analítica de un estado al otro
+    private static final String[] ESTADOS = {"Pendiente", "Otorgada"};
+    private static final int EMPLEADOS = 5000;
+    // Cada login medido usa un usuario distinto que nunca se autenticó antes
+    private static final int USUARIOS_LOGIN = 64;
+    private static final int RONDAS = 15;
+    private static final long CALENTAMIENTO_NS = 300_000_000L;
+    private static final long RONDA_NS = 20_000_000L;
+    // Acumula los resultados para que el JIT no elimine las operaciones medidas
+    private static volatile long sumidero;
+
+    static void ejecutar(int[] tamanios) {
+        StorageManager storage = new StorageManager();
+
+        System.out.println("filas,operacion,ns_por_op_mediana,ns_por_op_min");
+        for (int tamanio : tamanios) {
+            for (long i = storage.getEstadisticas().total(); i < tamanio; i++) {
+                crear(storage, (int) i);
+            }
+            Licencia muestra = storage.getLicenseById(tamanio / 2);
+
+            medir(tamanio, "getLicensesByEmployee", Long.MAX_VALUE,
+                    i -> storage.getLicensesByEmployee(1000 + i % EMPLEADOS).size());
+            // Login en frío: PBKDF2 completo con un usuario nuevo en cada operación
+            String prefijo = "bench" + tamanio + "-";
+            for (int i = 0; i < USUARIOS_LOGIN; i++) {
+                storage.createUser(prefijo + i, "benchpass", "empleado", 1);
+            }
+            medir(tamanio, "authenticateUser", USUARIOS_LOGIN,
+                    i -> storage.authenticateUser(prefijo + i, "benchpass").getId());
+            medir(tamanio, "getAllLicenses", Long.MAX_VALUE, i -> storage.getAllLicenses().size());
+            medir(tamanio, "getEstadisticas", Long.MAX_VALUE, i -> storage.getEstadisticas().sumaDias());
+            medir(tamanio, "getDetalle", Long.MAX_VALUE, i -> muestra.getDetalle().length());
+            medir(tamanio, "getResumen", Long.MAX_VALUE, i -> muestra.getResumen().length());
+            // Al final y con tope de altas, para que el tamaño medido no crezca más de un 10%
+            medir(tamanio, "createLicense", Math.max(RONDAS * 10, tamanio / 10), i -> crear(storage, tamanio + i));
+            medir(tamanio, "updateLicense", Long.MAX_VALUE,
+                    i -> storage.updateLicense(1 + i % tamanio, null, 0, ESTADOS[i & 1]) ? 1 : 0);
+        }
+    }
+
+    private static long crear(StorageManager storage, int i) {
+        String[] tipo = TIPOS[i % TIPOS.length];
+        LocalDate inicio = LocalDate.of(2020, 1, 1).plusDays(i % 1500);
+        return storage.createLicense(1000 + i % EMPLEADOS, tipo[0], tipo[1], 3, "empleado" + (i % EMPLEADOS),
+                inicio.toString(), inicio.plusDays(2).toString()).getId();
+    }
+
+    // El calentamiento también estima cuántas operaciones entran en una ronda de RONDA_NS
+    private static void medir(int filas, String operacion, long maxOperaciones, IntToLongFunction accion) {
+        long acumulado = 0;
+        int realizadas = 0;
+        long inicio = System.nanoTime();
+        long transcurrido;
+        do {
+            acumulado += accion.applyAsLong(realizadas++);
+            transcurrido = System.nanoTime() - inicio;
+        } while (transcurrido < CALENTAMIENTO_NS && realizadas < maxOperaciones / 2);
+
+        long porRonda = Math.max(1, Math.min(realizadas * RONDA_NS / transcurrido,
+                (maxOperaciones - realizadas) / RONDAS));
+        double[] nsPorOperacion = new double[RONDAS];
+        for (int ronda = 0; ronda < RONDAS; ronda++) {
+            long comienzo = System.nanoTime();
+            for (long k = 0; k < porRonda; k++) {
+                acumulado += accion.applyAsLong(realizadas++);
+            }
+            nsPorOperacion[ronda] = (double) (System.nanoTime() - comienzo) / porRonda;
+        }
+        sumidero += acumulado;
+        Arrays.sort(nsPorOperacion);
+        System.out.printf(Locale.ROOT, "%d,%s,%.1f,%.1f%n", filas, operacion, nsPorOperacion[RONDAS / 2], nsPorOperacion[0]);
+    }
+}
+
+// Prueba de estrés del StorageManager: varios hilos crean, modifican, validan (transición con versión) y
+// adjuntan documentos sobre las mismas licencias a la vez. Al terminar comprueba que no haya IDs repetidos
+// ni cambios perdidos (la versión de cada licencia es la cantidad de cambios que se le aplicaron) y que
+// los índices, los contadores, la agenda de fechas, la analítica y la búsqueda coincidan con un recorrido
+// completo de las licencias.
+class PruebaEstres {
+    private static final String[] CATEGORIAS = {"Servicio", "Médica"};
+    private static final String[] TIPOS = {"Vacaciones", "Maternidad", "Enfermedad", "Prevención"};
+    private static final int EMPLEADOS = 200;
+    private static final LocalDate PRIMER_DIA = LocalDate.of(2024, 1, 1);
+    private static final int DIAS_CALENDARIO = 730;
+
+    private final StorageManager storage = new StorageManager();
+    // ID -> cambios aplicados con éxito (modificación, transición o documento)
+    private final Map<Integer, AtomicInteger> cambios = new ConcurrentHashMap<>();
+    private final Queue<Integer> creadas = new ConcurrentLinkedQueue<>();
+    private final LongAdder conflictos = new LongAdder();
+    private final List<String> fallas = new ArrayList<>();
+
+    // Devuelve true si todas las comprobaciones dieron bien
+    static boolean ejecutar(int hilos, int operacionesPorHilo) throws InterruptedException, ExecutionException {
+        PruebaEstres prueba = new PruebaEstres();
+        long inicio = System.nanoTime();
+        prueba.martillar(hilos, operacionesPorHilo);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf(Locale.ROOT, " %d hilos x %d operaciones en %.2f s (%.0f op/s), %d licencias, %d conflictos de versión%n",
+                hilos, operacionesPorHilo, segundos, hilos * (double) operacionesPorHilo / segundos,
+                prueba.creadas.size(), prueba.conflictos.sum());
+        prueba.comprobar();
+        if (prueba.fallas.isEmpty()) {
+            System.out.println(" Todas las comprobaciones coinciden.");
+            return true;
+        }
+        prueba.fallas.forEach(falla -> System.out.println(" FALLA: " + falla));
+        return false;
+    }
+
+    private void martillar(int hilos, int operacionesPorHilo) throws InterruptedException, ExecutionException {
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            tareas.add(ejecutor.submit(() -> {
+                largada.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int k = 0; k < operacionesPorHilo; k++) {
+                    operar(random, k);
+                }
+                return null;
+            }));
+        }
+        largada.countDown();
+        try {
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        } finally {
+            ejecutor.shutdown();
+        }
+    }
+
+    private void operar(ThreadLocalRandom random, int k) {
+        int ultimo = storage.getUltimoIdPublicado();
+        int operacion = random.nextInt(10);
+        if (operacion < 3 || ultimo == 0) {
+            int legajo = 1000 + random.nextInt(EMPLEADOS);
+            LocalDate desde = PRIMER_DIA.plusDays(random.nextInt(DIAS_CALENDARIO));
+            int dias = 1 + random.nextInt(random.nextInt(20) == 0 ? 400 : 15);
+            Licencia license = storage.createLicense(legajo, CATEGORIAS[random.nextInt(CATEGORIAS.length)],
+                    TIPOS[random.nextInt(TIPOS.length)], dias, "empleado" + legajo,
+                    desde.toString(), desde.plusDays(dias - 1).toString());
+            creadas.add(license.getId());
+            return;
+        }
+        int id = 1 + random.nextInt(ultimo);
+        if (operacion < 6) {
+            // Sin versión: vuelve la licencia a Solicitada o Pendiente para que las validaciones sigan teniendo trabajo
+            String tipo = random.nextBoolean() ? TIPOS[random.nextInt(TIPOS.length)] : null;
+            String estado = switch (random.nextInt(3)) {
+                case 0 -> "Solicitada";
+                case 1 -> "Pendiente";
+                default -> null;
+            };
+            if (storage.updateLicense(id, tipo, random.nextInt(30), estado)) contarCambio(id);
+        } else if (operacion < 9) {
+            Licencia license = storage.getLicenseById(id);
+            long version = license.getVersion();
+            String destino = license.getEstado().equals("Solicitada") ? "Pendiente"
+                    : TransicionesLicencia.ESTADOS_VALIDACION.get(random.nextInt(TransicionesLicencia.ESTADOS_VALIDACION.size()));
+            ResultadoTransicion resultado = storage.transicionar(id, version, destino);
+            if (resultado == ResultadoTransicion.APLICADA) contarCambio(id);
+            else if (resultado == ResultadoTransicion.CONFLICTO_VERSION) conflictos.increment();
+        } else if (storage.attachDocument(id, "doc-" + id + "-" + k + ".pdf")) {
+            contarCambio(id);
+        }
+    }
+
+    private void contarCambio(int id) {
+        cambios.computeIfAbsent(id, clave -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private void comprobar() {
+        List<Licencia> todas = storage.getAllLicenses();
+
+        // IDs: uno por alta, sin repetir y sin huecos
+        Set<Integer> ids = new HashSet<>(creadas);
+        verificar(ids.size() == creadas.size(), "IDs repetidos: " + creadas.size() + " altas, " + ids.size() + " IDs distintos");
+        verificar(todas.size() == creadas.size(), "getAllLicenses devuelve " + todas.size() + " de " + creadas.size() + " altas");
+        verificar(todas.isEmpty() || todas.get(todas.size() - 1).getId() == todas.size(), "Hay huecos en los IDs");
+
+        // Cambios perdidos: cada cambio aplicado avanza la versión exactamente una vez
+        for (Licencia license : todas) {
+            AtomicInteger aplicados = cambios.get(license.getId());
+            int esperados = aplicados == null ? 0 : aplicados.get();
+            verificar(license.getVersion() == esperados,
+                    "Licencia " + license.getId() + ": versión " + license.getVersion() + ", cambios aplicados " + esperados);
+        }
+
+        // Índices secundarios y contadores contra un recorrido completo
+        Map<Integer, Set<Integer>> porEmpleado = agrupar(todas, Licencia::getLegajoEmpleado);
+        Map<String, Set<Integer>> porEstado = agrupar(todas, Licencia::getEstado);
+        Map<String, Set<Integer>> porCategoria = agrupar(todas, Licencia::getCategoria);
+        porEmpleado.forEach((legajo, esperadas) ->
+                verificar(idsDe(storage.getLicensesByEmployee(legajo)).equals(esperadas), "Índice por empleado " + legajo));
+        porEstado.forEach((estado, esperadas) -> {
+            verificar(idsDe(storage.getLicensesByEstado(estado)).equals(esperadas), "Índice por estado " + estado);
+            verificar(storage.countLicensesByEstado(estado) == esperadas.size(), "Contador del estado " + estado);
+        });
+        porCategoria.forEach((categoria, esperadas) -> {
+            verificar(idsDe(storage.getLicensesByCategoria(categoria)).equals(esperadas), "Índice por categoría " + categoria);
+            verificar(storage.countLicensesByCategoria(categoria) == esperadas.size(), "Contador de la categoría " + categoria);
+        });
+
+        EstadisticasLicencias estadisticas = storage.getEstadisticas();
+        long sumaDias = todas.stream().mapToLong(Licencia::getDias).sum();
+        verificar(estadisticas.total() == todas.size(), "Estadísticas: total " + estadisticas.total() + " de " + todas.size());
+        verificar(estadisticas.sumaDias() == sumaDias, "Estadísticas: suma de días " + estadisticas.sumaDias() + " de " + sumaDias);
+        verificar(estadisticas.porEstado().equals(contar(porEstado)), "Estadísticas por estado " + estadisticas.porEstado());
+        verificar(estadisticas.porCategoria().equals(contar(porCategoria)), "Estadísticas por categoría " + estadisticas.porCategoria());
+
+        // Índice de fechas y agenda de cada empleado en algunos días y ventanas al azar
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 50; i++) {
+            LocalDate dia = PRIMER_DIA.plusDays(random.nextInt(DIAS_CALENDARIO + 400));
+            Set<Integer> esperadas = new HashSet<>();
+            for (Licencia license : todas) {
+                if (!license.getInicio().isAfter(dia) && !license.getFin().isBefore(dia)) esperadas.add(license.getId());
+            }
+            verificar(idsDe(storage.getLicensesOnDate(dia, null)).equals(esperadas), "Licencias del día " + dia);
+
+            int legajo = 1000 + random.nextInt(EMPLEADOS);
+            LocalDate hasta = dia.plusDays(random.nextInt(60));
+            Set<Integer> ocupadas = new HashSet<>();
+            for (Licencia license : storage.getLicensesByEmployee(legajo)) {
+                if (TransicionesLicencia.ocupaFechas(license.getEstado())
+                        && !license.getInicio().isAfter(hasta) && !license.getFin().isBefore(dia)) {
+                    ocupadas.add(license.getId());
+                }
+            }
+            verificar(idsDe(storage.getLicensesSolapadas(legajo, dia, hasta)).equals(ocupadas),
+                    "Agenda del empleado " + legajo + " entre " + dia + " y " + hasta);
+        }
+
+        verificar(storage.getAnalitica().mismosTotales(storage.calcularAnalitica()),
+                "Los acumulados de la analítica no coinciden con un cálculo completo");
+
+        // Búsqueda: los tipos no aparecen en nombres ni documentos, así que cada uno encuentra justo sus licencias
+        Map<String, Set<Integer>> porTipo = agrupar(todas, Licencia::getTipo);
+        for (String tipo : TIPOS) {
+            int esperadas = porTipo.getOrDefault(tipo, Set.of()).size();
+            int encontradas = storage.buscarLicencias(tipo, 0, 1).total();
+            verificar(encontradas == esperadas, "Búsqueda de " + tipo + ": " + encontradas + " de " + esperadas);
+        }
+    }
+
+    private void verificar(boolean condicion, String falla) {
+        if (!condicion && fallas.size() < 20) fallas.add(falla);
+    }
+
+    private static <K> Map<K, Set<Integer>> agrupar(List<Licencia> licencias, Function<Licencia, K> clave) {
+        Map<K, Set<Integer>> grupos = new HashMap<>();
+        for (Licencia license : licencias) {
+            grupos.computeIfAbsent(clave.apply(license), k -> new HashSet<>()).add(license.getId());
+        }
+        return grupos;
+    }
+
+    private static Map<String, Long> contar(Map<String, Set<Integer>> grupos) {
+        Map<String, Long> cantidades = new HashMap<>();
+        grupos.forEach((clave, ids) -> cantidades.put(clave, (long) ids.size()));
+        return cantidades;
+    }
+
+    private static Set<Integer> idsDe(List<Licencia> licencias) {
+        Set<Integer> ids = new HashSet<>();
+        for (Licencia license : licencias) {
+            ids.add(license.getId());
+        }
+        return ids;
+    }
+}
+
+// Clase para atender las acciones del menú como API HTTP/JSON, con los mismos permisos por rol que
+// procesarMenuEmpleado, procesarMenuAdministrativo y procesarMenuAuditor.
+// Salvo el login, cada pedido lleva "Authorization: Bearer <token>".
+//
+//   POST /api/login                      {"username", "password"} -> {"token", "rol", "legajo"}
+//   POST /api/logout
+//   POST /api/licencias                  {"categoria", "tipo", "fechaInicio", "fechaFin"}  empleado, administrativo
+//   GET  /api/licencias?cursor=&tamanio=&estado=      el empleado recibe solo las suyas, sin filtro de estado
+//   GET  /api/licencias/{id}
+//   PUT  /api/licencias/{id}             {"tipo", "dias", "estado", "version"}             administrativo, auditor
+//   POST /api/licencias/{id}/validacion  {"estado", "version"}                             auditor
+//   POST /api/licencias/validacion       {"estado", "ids": "12,15@3,..."}                  auditor
+//                                        (id@version exige esa versión; responde un resultado por ID)
+//   POST /api/licencias/{id}/documento   {"documento"}                                     administrativo, auditor
+//   GET  /api/estadisticas                                                                  administrativo, auditor
+//   GET  /api/conflictos                 licencias superpuestas de un mismo empleado        auditor
+//   GET  /api/licencias/{id}/historial   cambios registrados en el diario de auditoría      administrativo, auditor
+//   GET  /api/auditoria?usuario=         cambios hechos por un usuario                      auditor
+class ServidorLicencias {
+    private static final long DURACION_SESION_MS = TimeUnit.HOURS.toMillis(8);
+    private static final long LIMPIEZA_SESIONES_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final int MAX_TAMANIO_PAGINA = 500;
+    private static final int MAX_CUERPO = 64 * 1024;
+    private static final int HILOS_PLATAFORMA = 256;
+    private static final int COLA_CONEXIONES = 4096;
+    private static final int MAX_LOTE_VALIDACION = 10_000;
+
+    private final StorageManager storage;
+    private final HttpServer servidor;
+    private final ExecutorService hilos;
+    private final Map<String, Sesion> sesiones = new ConcurrentHashMap<>();
+    // Quita las sesiones vencidas que nadie vuelve a usar (sin logout); las demás se quitan al consultarlas
+    private final ScheduledExecutorService limpiezaSesiones;
+    private final SecureRandom random = new SecureRandom();
+
+    private record Sesion(Usuario usuario, long expiraEn) {
+    }
+
+    // adjunto: contenido que se envía como cuerpo en lugar de JSON, con nombreAdjunto como nombre de archivo
+    private record Respuesta(int estado, String cuerpo, Adjunto adjunto, String nombreAdjunto) {
+        Respuesta(int estado, String cuerpo) {
+            this(estado, cuerpo, null, null);
+        }
+
+        static Respuesta ok(String cuerpo) {
+            return new Respuesta(200, cuerpo);
+        }
+    }
+
+    // Corta el manejo del pedido y se responde como {"error": mensaje}
+    private static final class ErrorHttp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int estado;
+
+        ErrorHttp(int estado, String mensaje) {
+            super(mensaje, null, false, false);
+            this.estado = estado;
+        }
+    }
+
+    ServidorLicencias(StorageManager storage, int puerto) throws IOException {
+        this.storage = storage;
+        this.hilos = crearEjecutor();
+        this.servidor = HttpServer.create(new InetSocketAddress(puerto), COLA_CONEXIONES);
+        this.servidor.createContext("/api/", this::atender);
+        this.servidor.setExecutor(hilos);
+        this.limpiezaSesiones = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "sesiones-limpieza");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        limpiezaSesiones.scheduleAtFixedRate(this::quitarSesionesVencidas,
+                LIMPIEZA_SESIONES_MS, LIMPIEZA_SESIONES_MS, TimeUnit.MILLISECONDS);
+    }
+
+    void iniciar() {
+        servidor.start();
+    }
+
+    int puerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    void detener() {
+        servidor.stop(1);
+        hilos.shutdown();
+        limpiezaSesiones.shutdownNow();
+    }
+
+    private void quitarSesionesVencidas() {
+        long ahora = System.currentTimeMillis();
+        sesiones.values().removeIf(sesion -> sesion.expiraEn() < ahora);
+    }
+
+    // Un hilo virtual por pedido cuando la JVM los tiene (Java 21+); si no, un pool acotado de hilos comunes.
+    // Los pedidos solo bloquean esperando el fsync del log, así que el pool alcanza para miles de clientes
+    private static ExecutorService crearEjecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger numero = new AtomicInteger();
+            return Executors.newFixedThreadPool(HILOS_PLATAFORMA, r -> {
+                Thread hilo = new Thread(r, "licencias-http-" + numero.incrementAndGet());
+                hilo.setDaemon(true);
+                return hilo;
+            });
+        }
+    }
+
+    // Todo pedido recibe respuesta: un error inesperado (incluso al leer el cuerpo) se informa como un 500
+    // genérico y el detalle queda solo en el log del servidor, sin exponer mensajes internos al cliente
+    private void atender(HttpExchange intercambio) {
+        Respuesta respuesta;
+        try {
+            respuesta = despachar(intercambio);
+        } catch (ErrorHttp e) {
+            respuesta = new Respuesta(e.estado, "{\"error\":" + Json.texto(e.getMessage()) + "}");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error al atender " + intercambio.getRequestMethod() + " "
+                    + intercambio.getRequestURI().getPath() + ": " + e);
+            respuesta = new Respuesta(500, "{\"error\":\"Error interno del servidor\"}");
+        } finally {
+            DiarioAuditoria.usuarioActual(null);
+        }
+        try {
+            if (respuesta.adjunto() != null) {
+                enviarAdjunto(intercambio, respuesta.adjunto(), respuesta.nombreAdjunto());
+                return;
+            }
+            byte[] bytes = respuesta.cuerpo().getBytes(StandardCharsets.UTF_8);
+            intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            intercambio.sendResponseHeaders(respuesta.estado(), bytes.length);
+            try (OutputStream salida = intercambio.getResponseBody()) {
+                salida.write(bytes);
+            }
+        } catch (IOException e) {
+            // El cliente cortó la conexión o el adjunto no se pudo leer a mitad de camino: ya no hay a quién
+            // avisarle, solo se cierra el intercambio
+            System.err.println("No se pudo enviar la respuesta de " + intercambio.getRequestURI().getPath() + ": " + e);
+        } finally {
+            intercambio.close();
+        }
+    }
+
+    // HttpServer solo da un OutputStream, así que transferTo copia por bloques hacia él; el archivo igual
+    // no se carga entero en memoria
+    private void enviarAdjunto(HttpExchange intercambio, Adjunto contenido, String documento) throws IOException {
+        // Los encabezados van en Latin-1: nombre ASCII de respaldo y el nombre real en filename* (RFC 5987)
+        String ascii = documento.replaceAll("[^\\x20-\\x7E]|[\\\\\"]", "_");
+        String codificado = URLEncoder.encode(documento, StandardCharsets.UTF_8).replace("+", "%20");
+        intercambio.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        intercambio.getResponseHeaders().set("Content-Disposition",
+                "attachment; filename=\"" + ascii + "\"; filename*=UTF-8''" + codificado);
+        intercambio.getResponseHeaders().set("ETag", "\"" + contenido.hash() + "\"");
+        intercambio.sendResponseHeaders(200, contenido.tamanio());
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            storage.getAlmacenAdjuntos().transferir(contenido.hash(), Channels.newChannel(salida));
+        }
+    }
+
+    private Respuesta despachar(HttpExchange intercambio) throws IOException {
+        String metodo = intercambio.getRequestMethod();
+        String[] partes = intercambio.getRequestURI().getPath().substring("/api/".length()).split("/");
+
+        if (partes[0].equals("login") && partes.length == 1) {
+            exigirMetodo(metodo, "POST");
+            return Respuesta.ok(login(leerCuerpo(intercambio)));
+        }
+        Usuario usuario = autenticar(intercambio);
+        DiarioAuditoria.usuarioActual(usuario.getUsername());
+        switch (partes[0]) {
+            case "logout" -> {
+                exigirMetodo(metodo, "POST");
+                sesiones.remove(token(intercambio));
+                return Respuesta.ok("{}");
+            }
+            case "estadisticas" -> {
+                exigirMetodo(metodo, "GET");
+                exigirRol(usuario, "administrativo", "auditor");
+                if (partes.length == 2 && partes[1].equals("dias")) {
+                    return Respuesta.ok(diasLicencia(parametros(intercambio.getRequestURI().getRawQuery())));
+                }
+                return Respuesta.ok(estadisticas());
+            }
+            case "conflictos" -> {
+                exigirMetodo(metodo, "GET");
+                exigirRol(usuario, "auditor");
+                return Respuesta.ok(conflictos());
+            }
+            case "auditoria" -> {
+                exigirMetodo(metodo, "GET");
+                exigirRol(usuario, "auditor");
+                String nombre = parametros(intercambio.getRequestURI().getRawQuery()).get("usuario");
+                if (nombre == null) throw new ErrorHttp(400, "Falta el parámetro usuario");
+                return Respuesta.ok(Json.historial(storage.getHistorialUsuario(nombre)));
+            }
+            case "licencias" -> {
+                if (partes.length == 1) {
+                    if (metodo.equals("POST")) return new Respuesta(201, solicitar(usuario, leerCuerpo(intercambio)));
+                    exigirMetodo(metodo, "GET");
+                    return Respuesta.ok(listar(usuario, parametros(intercambio.getRequestURI().getRawQuery())));
+                }
+                if (partes.length == 2 && partes[1].equals("validacion")) {
+                    exigirMetodo(metodo, "POST");
+                    return Respuesta.ok(validarLote(usuario, leerCuerpo(intercambio)));
+                }
+                if (partes.length == 2 && partes[1].equals("busqueda")) {
+                    exigirMetodo(metodo, "GET");
+                    exigirRol(usuario, "administrativo", "auditor");
+                    return Respuesta.ok(buscar(parametros(intercambio.getRequestURI().getRawQuery())));
+                }
+                int id = entero(partes[1], "ID de licencia inválido");
+                if (partes.length == 2) {
+                    if (metodo.equals("PUT")) return Respuesta.ok(modificar(usuario, id, leerCuerpo(intercambio)));
+                    exigirMetodo(metodo, "GET");
+                    return Respuesta.ok(Json.licencia(licenciaVisible(usuario, id)));
+                }
+                if (partes.length == 3 && partes[2].equals("validacion")) {
+                    exigirMetodo(metodo, "POST");
+                    return Respuesta.ok(validar(usuario, id, leerCuerpo(intercambio)));
+                }
+                if (partes.length == 3 && partes[2].equals("historial")) {
+                    exigirMetodo(metodo, "GET");
+                    exigirRol(usuario, "administrativo", "auditor");
+                    licenciaVisible(usuario, id);
+                    return Respuesta.ok(Json.historial(storage.getHistorialLicencia(id)));
+                }
+                if (partes.length == 3 && partes[2].equals("documento")) {
+                    exigirMetodo(metodo, "POST");
+                    return Respuesta.ok(adjuntar(usuario, id, leerCuerpo(intercambio)));
+                }
+                if (partes.length == 4 && partes[2].equals("documento") && partes[3].equals("contenido")) {
+                    if (metodo.equals("PUT")) {
+                        return Respuesta.ok(subirContenido(usuario, id, intercambio));
+                    }
+                    exigirMetodo(metodo, "GET");
+                    Licencia licencia = licenciaVisible(usuario, id);
+                    String documento = licencia.getDocumentoAdjunto();
+                    Adjunto contenido = licencia.getContenidoAdjunto();
+                    if (contenido == null) throw new ErrorHttp(404, "La licencia no tiene contenido adjunto");
+                    return new Respuesta(200, null, contenido, documento);
+                }
+            }
+            default -> {
+            }
+        }
+        throw new ErrorHttp(404, "Ruta desconocida");
+    }
+
+    // --- Acciones ---
+
+    private String login(Map<String, String> datos) {
+        Usuario usuario = storage.authenticateUser(datos.getOrDefault("username", ""), datos.getOrDefault("password", ""));
+        if (usuario == null) throw new ErrorHttp(401, "Credenciales incorrectas");
+
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sesiones.put(token, new Sesion(usuario, System.currentTimeMillis() + DURACION_SESION_MS));
+        return "{\"token\":" + Json.texto(token) + ",\"rol\":" + Json.texto(usuario.getRole())
+                + ",\"legajo\":" + usuario.getLegajo() + "}";
+    }
+
+    // Mismas validaciones que solicitarLicencia
+    private String solicitar(Usuario usuario, Map<String, String> datos) {
+        exigirRol(usuario, "empleado", "administrativo");
+        String categoria = requerido(datos, "categoria");
+        String tipo = requerido(datos, "tipo");
+        String[] tipos = SistemaLicenciasCompleto.TIPOS_LICENCIA.get(categoria);
+        if (tipos == null) throw new ErrorHttp(400, "Categoría inválida");
+        if (!Arrays.asList(tipos).contains(tipo)) throw new ErrorHttp(400, "Tipo inválido");
+
+        String fechaInicio = requerido(datos, "fechaInicio");
+        String fechaFin = requerido(datos, "fechaFin");
+        int dias = SistemaLicenciasCompleto.calcularDias(fechaInicio, fechaFin);
+        if (dias <= 0) throw new ErrorHttp(400, "La fecha de fin debe ser posterior a la de inicio");
+
+        ResultadoSolicitud resultado = storage.solicitarLicencia(usuario.getLegajo(), categoria, tipo, dias,
+                usuario.getUsername(), fechaInicio, fechaFin);
+        if (!resultado.aceptada()) {
+            StringJoiner ids = new StringJoiner(", ");
+            resultado.solapadas().forEach(licencia -> ids.add(String.valueOf(licencia.getId())));
+            throw new ErrorHttp(409, ids.length() == 0
+                    ? "Hay otra solicitud en curso para las mismas fechas"
+                    : "La licencia se superpone con las licencias " + ids);
+        }
+        return Json.licencia(resultado.licencia());
+    }
+
+    private String conflictos() {
+        List<ConflictoLicencias> conflictos = storage.buscarConflictos();
+        StringBuilder json = new StringBuilder(32 + conflictos.size() * 64).append("{\"conflictos\":[");
+        for (int i = 0; i < conflictos.size(); i++) {
+            ConflictoLicencias conflicto = conflictos.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"legajo\":").append(conflicto.legajo())
+                .append(",\"primera\":").append(conflicto.primera().getId())
+                .append(",\"segunda\":").append(conflicto.segunda().getId())
+                .append(",\"diasSolapados\":").append(conflicto.diasSolapados()).append('}');
+        }
+        return json.append("],\"total\":").append(conflictos.size()).append('}').toString();
+    }
+
+    private String listar(Usuario usuario, Map<String, String> parametros) {
+        int cursor = entero(parametros.getOrDefault("cursor", "0"), "Cursor inválido");
+        int tamanio = entero(parametros.getOrDefault("tamanio", "20"), "Tamaño inválido");
+        if (tamanio <= 0 || tamanio > MAX_TAMANIO_PAGINA) {
+            throw new ErrorHttp(400, "El tamaño debe estar entre 1 y " + MAX_TAMANIO_PAGINA);
+        }
+        if (usuario.getRole().equals("empleado")) {
+            PaginaLicencias pagina = storage.getLicensesPageByEmployee(usuario.getLegajo(), cursor, tamanio);
+            return Json.pagina(pagina.licencias(), pagina.siguienteCursor());
+        }
+        String estado = parametros.get("estado");
+        PaginaLicencias pagina = estado == null
+                ? storage.getLicensesPage(cursor, tamanio)
+                : storage.getLicensesPageByEstado(estado, cursor, tamanio);
+        return Json.pagina(pagina.licencias(), pagina.siguienteCursor());
+    }
+
+    // ?q=texto&pagina=0&tamanio=20: licencias ordenadas por relevancia y el total de coincidencias
+    private String buscar(Map<String, String> parametros) {
+        String consulta = parametros.get("q");
+        if (consulta == null || IndiceBusqueda.palabras(consulta).isEmpty()) throw new ErrorHttp(400, "Falta el parámetro q");
+        int pagina = entero(parametros.getOrDefault("pagina", "0"), "Página inválida");
+        int tamanio = entero(parametros.getOrDefault("tamanio", "20"), "Tamaño inválido");
+        if (pagina < 0) throw new ErrorHttp(400, "La página no puede ser negativa");
+        if (tamanio <= 0 || tamanio > MAX_TAMANIO_PAGINA) {
+            throw new ErrorHttp(400, "El tamaño debe estar entre 1 y " + MAX_TAMANIO_PAGINA);
+        }
+        return Json.busqueda(storage.buscarLicencias(consulta, pagina, tamanio));
+    }
+
+    // Como modificarLicencia: tipo y días libres; el estado solo pasa de 'Solicitada' a 'Pendiente'
+    // y solo lo puede hacer un administrativo
+    private String modificar(Usuario usuario, int id, Map<String, String> datos) {
+        exigirRol(usuario, "administrativo", "auditor");
+        Licencia licencia = licenciaVisible(usuario, id);
+
+        String tipo = datos.get("tipo");
+        if (tipo != null && tipo.isBlank()) throw new ErrorHttp(400, "El tipo no puede estar vacío");
+        int dias = datos.containsKey("dias") ? entero(datos.get("dias"), "Días inválidos") : 0;
+        if (datos.containsKey("dias") && dias <= 0) throw new ErrorHttp(400, "Los días deben ser positivos");
+
+        String estado = datos.get("estado");
+        if (estado != null && !estado.equals(licencia.getEstado())) {
+            if (!usuario.getRole().equals("administrativo") || !estado.equals("Pendiente")) {
+                throw new ErrorHttp(403, "Solo un administrativo puede pasar una licencia a 'Pendiente'");
+            }
+            if (!licencia.getEstado().equals("Solicitada")) {
+                throw new ErrorHttp(409, "Solo las licencias 'Solicitada' pueden pasar a 'Pendiente'");
+            }
+        }
+        comprobar(storage.updateLicense(id, version(datos), tipo, dias, estado));
+        return Json.licencia(licencia);
+    }
+
+    // Como validarLicencia: solo licencias 'Pendiente'
+    private String validar(Usuario usuario, int id, Map<String, String> datos) {
+        exigirRol(usuario, "auditor");
+        Licencia licencia = licenciaVisible(usuario, id);
+        String estado = requerido(datos, "estado");
+        if (!TransicionesLicencia.ESTADOS_VALIDACION.contains(estado)) throw new ErrorHttp(400, "Estado inválido");
+        comprobar(storage.transicionar(id, version(datos), estado));
+        return Json.licencia(licencia);
+    }
+
+    private String validarLote(Usuario usuario, Map<String, String> datos) {
+        exigirRol(usuario, "auditor");
+        String estado = requerido(datos, "estado");
+        if (!TransicionesLicencia.ESTADOS_VALIDACION.contains(estado)) throw new ErrorHttp(400, "Estado inválido");
+
+        List<PedidoTransicion> pedidos = new ArrayList<>();
+        for (String parte : requerido(datos, "ids").split(",")) {
+            if (parte.isBlank()) continue;
+            String[] idVersion = parte.trim().split("@", 2);
+            long version = idVersion.length == 2 ? entero(idVersion[1], "Versión inválida") : StorageManager.CUALQUIER_VERSION;
+            pedidos.add(new PedidoTransicion(entero(idVersion[0], "ID de licencia inválido"), version));
+        }
+        if (pedidos.isEmpty() || pedidos.size() > MAX_LOTE_VALIDACION) {
+            throw new ErrorHttp(400, "El lote debe tener entre 1 y " + MAX_LOTE_VALIDACION + " licencias");
+        }
+
+        List<ResultadoPedido> resultados = storage.transicionarLote(pedidos, estado);
+        StringBuilder json = new StringBuilder(32 + resultados.size() * 48).append("{\"resultados\":[");
+        long aplicadas = 0;
+        for (int i = 0; i < resultados.size(); i++) {
+            ResultadoPedido resultado = resultados.get(i);
+            if (resultado.resultado() == ResultadoTransicion.APLICADA) aplicadas++;
+            if (i > 0) json.append(',');
+            json.append("{\"id\":").append(resultado.id())
+                .append(",\"resultado\":\"").append(resultado.resultado()).append('"')
+                .append(",\"version\":").append(resultado.version()).append('}');
+        }
+        return json.append("],\"aplicadas\":").append(aplicadas).append('}').toString();
+    }
+
+    // La versión es opcional: sin ella el cambio no se condiciona a lo que vio el cliente
+    private long version(Map<String, String> datos) {
+        return datos.containsKey("version") ? entero(datos.get("version"), "Versión inválida") : StorageManager.CUALQUIER_VERSION;
+    }
+
+    private void comprobar(ResultadoTransicion resultado) {
+        switch (resultado) {
+            case APLICADA -> {
+            }
+            case NO_ENCONTRADA -> throw new ErrorHttp(404, "Licencia no encontrada");
+            case CONFLICTO_VERSION -> throw new ErrorHttp(409, "La licencia fue modificada por otro usuario");
+            case TRANSICION_INVALIDA -> throw new ErrorHttp(409, "Transición de estado no permitida");
+            case ERROR_PERSISTENCIA -> throw new ErrorHttp(500, "No se pudo persistir la operación");
+        }
+    }
+
+    private String adjuntar(Usuario usuario, int id, Map<String, String> datos) {
+        exigirRol(usuario, "administrativo", "auditor");
+        licenciaVisible(usuario, id);
+        String documento = requerido(datos, "documento");
+        storage.attachDocument(id, documento);
+        return Json.licencia(storage.getLicenseById(id));
+    }
+
+    // PUT .../documento/contenido?nombre=certificado.pdf con los bytes del archivo como cuerpo (sin límite
+    // de MAX_CUERPO: se escriben al almacén a medida que llegan, hasta el máximo del almacén)
+    private String subirContenido(Usuario usuario, int id, HttpExchange intercambio) throws IOException {
+        exigirRol(usuario, "administrativo", "auditor");
+        licenciaVisible(usuario, id);
+        String nombre = parametros(intercambio.getRequestURI().getRawQuery()).get("nombre");
+        if (nombre == null || nombre.isBlank()) throw new ErrorHttp(400, "Falta el parámetro nombre");
+        Adjunto contenido;
+        try (InputStream entrada = intercambio.getRequestBody()) {
+            contenido = storage.adjuntarContenido(id, nombre.trim(), Channels.newChannel(entrada));
+        } catch (AlmacenAdjuntos.DemasiadoGrande e) {
+            throw new ErrorHttp(413, e.getMessage());
+        }
+        if (contenido == null) throw new ErrorHttp(404, "Licencia no encontrada");
+        return Json.licencia(storage.getLicenseById(id));
+    }
+
+    private String estadisticas() {
+        EstadisticasLicencias estadisticas = storage.getEstadisticas();
+        return "{\"total\":" + estadisticas.total()
+                + ",\"promedioDias\":" + String.format(Locale.ROOT, "%.2f", estadisticas.promedioDias())
+                + ",\"porEstado\":" + Json.conteos(estadisticas.porEstado())
+                + ",\"porCategoria\":" + Json.conteos(estadisticas.porCategoria()) + "}";
+    }
+
+    // ?desde=2023-01&hasta=2024-12&top=10&estados=Otorgada,Suspendida&legajo=7 (todos opcionales).
+    // Sin estados cuenta las licencias que ocupan fechas (todas menos rechazadas y anuladas)
+    private String diasLicencia(Map<String, String> parametros) {
+        YearMonth hasta = mes(parametros.get("hasta"), YearMonth.now());
+        YearMonth desde = mes(parametros.get("desde"), hasta.minusMonths(11));
+        if (desde.isAfter(hasta)) throw new ErrorHttp(400, "El rango de meses está invertido");
+        int top = parametros.containsKey("top") ? entero(parametros.get("top"), "top inválido") : 10;
+        if (top < 1 || top > MAX_TAMANIO_PAGINA) throw new ErrorHttp(400, "top debe estar entre 1 y " + MAX_TAMANIO_PAGINA);
+        Predicate<String> estados = AnaliticaLicencias.filtroEstados(parametros.get("estados"));
+
+        AnaliticaLicencias analitica = storage.getAnalitica();
+        StringBuilder json = new StringBuilder(1024).append("{\"desde\":").append(Json.texto(desde.toString()))
+                .append(",\"hasta\":").append(Json.texto(hasta.toString()))
+                .append(",\"porMes\":{");
+        analitica.diasPorMes(estados, desde, hasta).forEach((mes, dias) -> {
+            if (json.charAt(json.length() - 1) != '{') json.append(',');
+            json.append(Json.texto(mes.toString())).append(':').append(dias);
+        });
+        Map<String, Long> porTipo = new LinkedHashMap<>();
+        analitica.diasPorTipo(estados, desde, hasta).forEach(entrada -> porTipo.put(entrada.getKey(), entrada.getValue()));
+        json.append("},\"porTipo\":").append(Json.conteos(porTipo)).append(",\"topAusentes\":[");
+        List<AnaliticaLicencias.DiasEmpleado> ausentes = analitica.topAusentes(estados, desde.getYear(), hasta.getYear(), top);
+        for (int i = 0; i < ausentes.size(); i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"legajo\":").append(ausentes.get(i).legajo())
+                .append(",\"dias\":").append(ausentes.get(i).dias()).append('}');
+        }
+        json.append(']');
+        if (parametros.containsKey("legajo")) {
+            int legajo = entero(parametros.get("legajo"), "Legajo inválido");
+            Map<String, Long> porAnio = new LinkedHashMap<>();
+            analitica.diasEmpleado(estados, legajo).forEach((anio, dias) -> porAnio.put(String.valueOf(anio), dias));
+            json.append(",\"empleado\":{\"legajo\":").append(legajo)
+                .append(",\"porAnio\":").append(Json.conteos(porAnio)).append('}');
+        }
+        return json.append('}').toString();
+    }
+
+    private static YearMonth mes(String texto, YearMonth porDefecto) {
+        if (texto == null || texto.isBlank()) return porDefecto;
+        try {
+            return YearMonth.parse(texto.trim());
+        } catch (DateTimeParseException e) {
+            throw new ErrorHttp(400, "Mes inválido (use AAAA-MM): " + texto);
+        }
+    }
+
+    // --- Auxiliares ---
+
+    private Usuario autenticar(HttpExchange intercambio) {
+        String token = token(intercambio);
+        Sesion sesion = token == null ? null : sesiones.get(token);
+        if (sesion == null) throw new ErrorHttp(401, "Falta iniciar sesión");
+        if (sesion.expiraEn() < System.currentTimeMillis()) {
+            sesiones.remove(token, sesion);
+            throw new ErrorHttp(401, "La sesión expiró");
+        }
+        return sesion.usuario();
+    }
+
+    private static String token(HttpExchange intercambio) {
+        String encabezado = intercambio.getRequestHeaders().getFirst("Authorization");
+        if (encabezado == null || !encabezado.startsWith("Bearer ")) return null;
+        return encabezado.substring("Bearer ".length()).trim();
+    }
+
+    // Un empleado solo ve sus propias licencias; las ajenas se informan como inexistentes
+    private Licencia licenciaVisible(Usuario usuario, int id) {
+        Licencia licencia = storage.getLicenseById(id);
+        if (licencia == null || (usuario.getRole().equals("empleado") && licencia.getLegajoEmpleado() != usuario.getLegajo())) {
+            throw new ErrorHttp(404, "Licencia no encontrada");
+        }
+        return licencia;
+    }
+
+    private static void exigirRol(Usuario usuario, String... roles) {
+        if (!Arrays.asList(roles).contains(usuario.getRole())) {
+            throw new ErrorHttp(403, "Acción no permitida para el rol " + usuario.getRole());
+        }
+    }
+
+    private static void exigirMetodo(String metodo, String esperado) {
+        if (!metodo.equals(esperado)) throw new ErrorHttp(405, "Método no permitido");
+    }
+
+    private static String requerido(Map<String, String> datos, String campo) {
+        String valor = datos.get(campo);
+        if (valor == null || valor.isBlank()) throw new ErrorHttp(400, "Falta el campo " + campo);
+        return valor.trim();
+    }
+
+    private static int entero(String texto, String error) {
+        try {
+            return Integer.parseInt(texto);
+        } catch (NumberFormatException e) {
+            throw new ErrorHttp(400, error);
+        }
+    }
+
+    private static Map<String, String> leerCuerpo(HttpExchange intercambio) throws IOException {
+        byte[] bytes;
+        try (InputStream entrada = intercambio.getRequestBody()) {
+            bytes = entrada.readNBytes(MAX_CUERPO + 1);
+        }
+        if (bytes.length > MAX_CUERPO) throw new ErrorHttp(413, "Cuerpo demasiado grande");
+        if (bytes.length == 0) return Map.of();
+        try {
+            return Json.leerObjeto(new String(bytes, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new ErrorHttp(400, "JSON inválido: " + e.getMessage());
+        }
+    }
+
+    private static Map<String, String> parametros(String consulta) {
+        Map<String, String> parametros = new HashMap<>();
+        if (consulta == null) return parametros;
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual <= 0) continue;
+            parametros.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                    URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+        }
+        return parametros;
+    }
+}
+
+// Lectura y escritura de JSON para la API: solo objetos planos con valores texto, número, booleano o null
+final class Json {
+    private Json() {
+    }
+
+    static String licencia(Licencia licencia) {
+        StringBuilder json = new StringBuilder(256);
+        escribirLicencia(json, licencia);
+        return json.toString();
+    }
+
+    static String pagina(List<Licencia> licencias, int siguienteCursor) {
+        StringBuilder json = new StringBuilder(64 + licencias.size() * 256).append("{\"licencias\":[");
+        for (int i = 0; i < licencias.size(); i++) {
+            if (i > 0) json.append(',');
+            escribirLicencia(json, licencias.get(i));
+        }
+        return json.append("],\"siguienteCursor\":").append(siguienteCursor).append('}').toString();
+    }
+
+    static String busqueda(ResultadoBusqueda resultado) {
+        StringBuilder json = new StringBuilder(64 + resultado.licencias().size() * 256).append("{\"licencias\":[");
+        for (int i = 0; i < resultado.licencias().size(); i++) {
+            if (i > 0) json.append(',');
+            escribirLicencia(json, resultado.licencias().get(i));
+        }
+        return json.append("],\"total\":").append(resultado.total())
+                .append(",\"pagina\":").append(resultado.pagina())
+                .append(",\"hayMas\":").append(resultado.hayMas()).append('}').toString();
+    }
+
+    static String historial(List<EventoAuditoria> eventos) {
+        StringBuilder json = new StringBuilder(32 + eventos.size() * 200).append("{\"eventos\":[");
+        for (int i = 0; i < eventos.size(); i++) {
+            EventoAuditoria evento = eventos.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"instante\":").append(texto(Instant.ofEpochMilli(evento.instante()).toString()))
+                .append(",\"usuario\":").append(texto(evento.usuario()))
+                .append(",\"accion\":").append(texto(evento.accion().name()))
+                .append(",\"licencia\":").append(evento.licencia())
+                .append(",\"tipoAntes\":").append(texto(evento.tipoAntes()))
+                .append(",\"tipo\":").append(texto(evento.tipo()))
+                .append(",\"diasAntes\":").append(evento.diasAntes())
+                .append(",\"dias\":").append(evento.dias())
+                .append(",\"estadoAntes\":").append(texto(evento.estadoAntes()))
+                .append(",\"estado\":").append(texto(evento.estado()))
+                .append(",\"documento\":").append(texto(evento.documento()))
+                .append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    static String conteos(Map<String, Long> conteos) {
+        StringBuilder json = new StringBuilder("{");
+        conteos.forEach((clave, valor) -> {
+            if (json.length() > 1) json.append(',');
+            json.append(texto(clave)).append(':').append(valor);
+        });
+        return json.append('}').toString();
+    }
+
+    private static void escribirLicencia(StringBuilder json, Licencia licencia) {
+        json.append("{\"id\":").append(licencia.getId())
+            .append(",\"legajo\":").append(licencia.getLegajoEmpleado())
+            .append(",\"categoria\":").append(texto(licencia.getCategoria()))
+            .append(",\"tipo\":").append(texto(licencia.getTipo()))
+            .append(",\"estado\":").append(texto(licencia.getEstado()))
+            .append(",\"dias\":").append(licencia.getDias())
+            .append(",\"empleado\":").append(texto(licencia.getEmpleado()))
+            .append(",\"fechaInicio\":").append(texto(licencia.getFechaInicio()))
+            .append(",\"fechaFin\":").append(texto(licencia.getFechaFin()))
+            .append(",\"documentoAdjunto\":").append(texto(licencia.getDocumentoAdjunto()));
+        Adjunto contenido = licencia.getContenidoAdjunto();
+        if (contenido != null) {
+            json.append(",\"hashAdjunto\":").append(texto(contenido.hash()))
+                .append(",\"tamanioAdjunto\":").append(contenido.tamanio());
+        }
+        json.append(",\"creada\":").append(texto(licencia.getCreatedAt().toString()))
+            .append(",\"version\":").append(licencia.getVersion())
+            .append('}');
+    }
+
+    static String texto(String valor) {
+        if (valor == null) return "null";
+        StringBuilder json = new StringBuilder(valor.length() + 2).append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+                    else json.append(c);
+                }
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    // Los números y booleanos se devuelven como texto; null queda como clave ausente
+    static Map<String, String> leerObjeto(String json) {
+        Map<String, String> valores = new HashMap<>();
+        int[] pos = {saltarEspacios(json, 0)};
+        esperar(json, pos, '{');
+        if (siguiente(json, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                String clave = leerTexto(json, pos);
+                esperar(json, pos, ':');
+                String valor = siguiente(json, pos) == '"' ? leerTexto(json, pos) : leerLiteral(json, pos);
+                if (valor != null) valores.put(clave, valor);
+                char c = siguiente(json, pos);
+                pos[0]++;
+                if (c == '}') break;
+                if (c != ',') throw new IllegalArgumentException("se esperaba ',' o '}' en la posición " + (pos[0] - 1));
+            }
+        }
+        if (saltarEspacios(json, pos[0]) != json.length()) throw new IllegalArgumentException("contenido sobrante");
+        return valores;
+    }
+
+    private static String leerTexto(String json, int[] pos) {
+        esperar(json, pos, '"');
+        StringBuilder texto = new StringBuilder();
+        int i = pos[0];
+        while (true) {
+            if (i >= json.length()) throw new IllegalArgumentException("texto sin cerrar");
+            char c = json.charAt(i++);
+            if (c == '"') break;
+            if (c != '\\') {
+                texto.append(c);
+                continue;
+            }
+            if (i >= json.length()) throw new IllegalArgumentException("escape incompleto");
+            char escape = json.charAt(i++);
+            switch (escape) {
+                case '"', '\\', '/' -> texto.append(escape);
+                case 'b' -> texto.append('\b');
+                case 'f' -> texto.append('\f');
+                case 'n' -> texto.append('\n');
+                case 'r' -> texto.append('\r');
+                case 't' -> texto.append('\t');
+                case 'u' -> {
+                    if (i + 4 > json.length()) throw new IllegalArgumentException("escape incompleto");
+                    try {
+                        texto.append((char) Integer.parseInt(json.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("escape \\u inválido");
+                    }
+                    i += 4;
+                }
+                default -> throw new IllegalArgumentException("escape inválido \\" + escape);
+            }
+        }
+        pos[0] = i;
+        return texto.toString();
+    }
+
+    private static String leerLiteral(String json, int[] pos) {
+        int inicio = pos[0];
+        int fin = inicio;
+        while (fin < json.length() && ",}] \t\r\n".indexOf(json.charAt(fin)) < 0) fin++;
+        String literal = json.substring(inicio, fin);
+        pos[0] = fin;
+        if (literal.equals("null")) return null;
+        if (literal.equals("true") || literal.equals("false") || literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+            return literal;
+        }
+        throw new IllegalArgumentException("valor inválido '" + literal + "'");
+    }
 
-    public String getResumen() {
-        return String.format("ID: %d | %s | %s - %s | %d días | Estado: %s | Empleado: %s", 
-                           id, categoria, tipo, estado, dias, estado, empleado);
+    private static void esperar(String json, int[] pos, char esperado) {
+        if (siguiente(json, pos) != esperado) {
+            throw new IllegalArgumentException("se esperaba '" + esperado + "' en la posición " + pos[0]);
+        }
+        pos[0]++;
     }
 
-    public String getDetalle() {
-        return String.format("""
-            ═══════════════════════════════════════
-            LICENCIA ID: %d
-            ═══════════════════════════════════════
-            Empleado: %s (Legajo: %d)
-            Categoría: %s
-            Tipo: %s
-            Estado: %s
-            Días: %d
-            Fecha Inicio: %s
-            Fecha Fin: %s
-            Documento Adjunto: %s
-            Creada: %s
-            ═══════════════════════════════════════
-            """, id, empleado, legajoEmpleado, categoria, tipo, estado, dias, 
-                 fechaInicio, fechaFin, 
-                 documentoAdjunto.isEmpty() ? "Sin documento" : documentoAdjunto,
-                 createdAt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
+    // Devuelve el próximo carácter que no sea espacio, dejando pos apuntando a él
+    private static char siguiente(String json, int[] pos) {
+        pos[0] = saltarEspacios(json, pos[0]);
+        if (pos[0] >= json.length()) throw new IllegalArgumentException("JSON incompleto");
+        return json.charAt(pos[0]);
+    }
+
+    private static int saltarEspacios(String json, int i) {
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) i++;
+        return i;
     }
 }
 
-// Clase para representar un usuario
-class Usuario {
-    private int id;
-    private String username;
-    private String password;
-    private String role;
-    private int legajo;
+// Prueba de carga de la API: N clientes concurrentes (pedidos asíncronos, sin un hilo por cliente) que
+// inician sesión como administrativo y alternan listados (80%) y solicitudes de licencia (20%).
+// Informa pedidos por segundo y la latencia de cada tipo de pedido con MetricasOperaciones.
+class CargaHttp {
+    private static final MetricasOperaciones.Operacion OP_LISTAR = MetricasOperaciones.operacion("http.listar");
+    private static final MetricasOperaciones.Operacion OP_SOLICITAR = MetricasOperaciones.operacion("http.solicitar");
 
-    public Usuario(int id, String username, String password, String role, int legajo) {
-        this.id = id;
-        this.username = username;
-        this.password = password;
-        this.role = role;
-        this.legajo = legajo;
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final URI base;
+    private final LongAdder pedidos = new LongAdder();
+
+    CargaHttp(String url) {
+        this.base = URI.create(url.endsWith("/") ? url : url + "/");
     }
 
-    // Getters
-    public int getId() { return id; }
-    public String getUsername() { return username; }
-    public String getPassword() { return password; }
-    public String getRole() { return role; }
-    public int getLegajo() { return legajo; }
+    void ejecutar(int clientes, int segundos, String usuario, String contrasena) throws IOException, InterruptedException {
+        String token = login(usuario, contrasena);
+        long fin = System.nanoTime() + TimeUnit.SECONDS.toNanos(segundos);
+        long inicio = System.nanoTime();
+        CompletableFuture<?>[] ciclos = new CompletableFuture<?>[clientes];
+        for (int i = 0; i < clientes; i++) {
+            ciclos[i] = ciclo(token, i, fin);
+        }
+        CompletableFuture.allOf(ciclos).join();
+        double transcurrido = (System.nanoTime() - inicio) / 1e9;
+
+        System.out.printf(Locale.ROOT, "clientes=%d segundos=%.1f pedidos=%d pedidos_por_seg=%.1f%n",
+                clientes, transcurrido, pedidos.sum(), pedidos.sum() / transcurrido);
+        System.out.print(MetricasOperaciones.volcar());
+    }
+
+    private String login(String usuario, String contrasena) throws IOException, InterruptedException {
+        HttpResponse<String> respuesta = http.send(HttpRequest.newBuilder(base.resolve("api/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":" + Json.texto(usuario)
+                        + ",\"password\":" + Json.texto(contrasena) + "}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (respuesta.statusCode() != 200) {
+            throw new IllegalStateException("No se pudo iniciar sesión: " + respuesta.body());
+        }
+        return Json.leerObjeto(respuesta.body()).get("token");
+    }
+
+    private CompletableFuture<Void> ciclo(String token, int cliente, long fin) {
+        if (System.nanoTime() >= fin) return CompletableFuture.completedFuture(null);
+
+        boolean solicitar = ThreadLocalRandom.current().nextInt(5) == 0;
+        HttpRequest.Builder pedido = HttpRequest.newBuilder().header("Authorization", "Bearer " + token);
+        if (solicitar) {
+            LocalDate desde = LocalDate.of(2025, 1, 1).plusDays(ThreadLocalRandom.current().nextInt(365));
+            pedido.uri(base.resolve("api/licencias")).POST(HttpRequest.BodyPublishers.ofString(
+                    "{\"categoria\":\"Servicio\",\"tipo\":\"Vacaciones\",\"fechaInicio\":\"" + desde
+                            + "\",\"fechaFin\":\"" + desde.plusDays(4) + "\"}"));
+        } else {
+            pedido.uri(base.resolve("api/licencias?tamanio=20")).GET();
+        }
+        MetricasOperaciones.Operacion operacion = solicitar ? OP_SOLICITAR : OP_LISTAR;
+        long inicio = System.nanoTime();
+        return http.sendAsync(pedido.build(), HttpResponse.BodyHandlers.discarding())
+                .handle((respuesta, error) -> {
+                    operacion.registrar(inicio, error == null && respuesta.statusCode() < 400);
+                    pedidos.increment();
+                    return null;
+                })
+                .thenCompose(nada -> ciclo(token, cliente, fin));
+    }
 }
 
-// Clase para gestionar el almacenamiento en memoria
-class StorageManager {
-    private Map<Integer, Usuario> usuarios;
-    private Map<Integer, Licencia> licencias;
-    private int currentUserId;
-    private int currentLicenseId;
+// Destino del SimuladorCarga sobre el StorageManager, con las mismas reglas que los menús
+class DestinoCargaStorage implements SimuladorCarga.DestinoCarga {
+    private final StorageManager storage;
+    private final int tamanioPagina;
 
-    public StorageManager() {
-        this.usuarios = new HashMap<>();
-        this.licencias = new HashMap<>();
-        this.currentUserId = 1;
-        this.currentLicenseId = 1;
-        initializeDefaultUsers();
+    DestinoCargaStorage(StorageManager storage, int tamanioPagina) {
+        this.storage = storage;
+        this.tamanioPagina = tamanioPagina;
     }
 
-    private void initializeDefaultUsers() {
-        createUser("camila", "1234", "empleado", 100);
-        createUser("admin", "adminpass", "administrativo", 101);
-        createUser("auditor", "auditpass", "auditor", 102);
+    @Override
+    public Map<String, List<String>> catalogo() {
+        Map<String, List<String>> catalogo = new TreeMap<>();
+        SistemaLicenciasCompleto.TIPOS_LICENCIA.forEach((categoria, tipos) -> catalogo.put(categoria, List.of(tipos)));
+        return catalogo;
     }
 
-    public Usuario createUser(String username, String password, String role, int legajo) {
-        Usuario user = new Usuario(currentUserId++, username, password, role, legajo);
-        usuarios.put(user.getId(), user);
-        return user;
+    // El StorageManager acepta altas concurrentes, así que la carga inicial se reparte entre los núcleos.
+    // Es un volcado de datos históricos: entra sin el control de superposición
+    @Override
+    public void cargar(Stream<SimuladorCarga.Solicitud> solicitudes) {
+        solicitudes.parallel().forEach(s -> storage.createLicense(s.legajo(), s.categoria(), s.tipo(), s.dias(),
+                "empleado" + s.legajo(), s.inicio().toString(), s.fin().toString()));
     }
 
-    public Usuario authenticateUser(String username, String password) {
-        return usuarios.values().stream()
-                .filter(u -> u.getUsername().equals(username) && u.getPassword().equals(password))
-                .findFirst()
-                .orElse(null);
+    // Como solicitarLicencia: un pedido que se superpone con otro del mismo empleado cuenta como fallido
+    @Override
+    public boolean solicitar(SimuladorCarga.Solicitud s) {
+        return storage.solicitarLicencia(s.legajo(), s.categoria(), s.tipo(), s.dias(), "empleado" + s.legajo(),
+                s.inicio().toString(), s.fin().toString()).aceptada();
     }
 
-    public Licencia createLicense(int legajoEmpleado, String categoria, String tipo, int dias,
-                                String empleado, String fechaInicio, String fechaFin) {
-        Licencia license = new Licencia(currentLicenseId++, legajoEmpleado, categoria, tipo, 
-                                      dias, empleado, fechaInicio, fechaFin);
-        licencias.put(license.getId(), license);
-        return license;
+    @Override
+    public int listar(int cursor, int tamanio) {
+        return storage.getLicensesPage(cursor, tamanio).licencias().size();
     }
 
-    public List<Licencia> getAllLicenses() {
-        return new ArrayList<>(licencias.values());
+    @Override
+    public boolean modificar(int id, int dias) {
+        Licencia licencia = storage.getLicenseById(id);
+        if (licencia == null) return false;
+        String estado = licencia.getEstado().equals("Solicitada") ? "Pendiente" : null;
+        return storage.updateLicense(id, null, dias, estado);
     }
 
-    public List<Licencia> getLicensesByEmployee(int legajo) {
-        return licencias.values().stream()
-                .filter(l -> l.getLegajoEmpleado() == legajo)
-                .sorted((a, b) -> Integer.compare(b.getId(), a.getId()))
-                .toList();
+    // Toma una pendiente al azar de la primera página, como haría un auditor desde verLicenciasPendientes
+    @Override
+    public boolean validar(String estado) {
+        List<Licencia> pendientes = storage.getLicensesPageByEstado("Pendiente", 0, tamanioPagina).licencias();
+        if (pendientes.isEmpty()) return false;
+        Licencia licencia = pendientes.get(ThreadLocalRandom.current().nextInt(pendientes.size()));
+        // Con la versión leída: si otro usuario simulado la validó antes, cuenta como conflicto
+        return storage.transicionar(licencia.getId(), licencia.getVersion(), estado) == ResultadoTransicion.APLICADA;
     }
 
-    public Licencia getLicenseById(int id) {
-        return licencias.get(id);
+    @Override
+    public long estadisticas() {
+        return storage.getEstadisticas().total();
     }
 
-    public boolean updateLicense(int id, String tipo, int dias, String estado) {
-        Licencia license = licencias.get(id);
-        if (license == null) return false;
-        
-        if (tipo != null) license.setTipo(tipo);
-        if (dias > 0) license.setDias(dias);
-        if (estado != null) license.setEstado(estado);
-        
-        return true;
+    // Los IDs se asignan en orden desde 1
+    @Override
+    public int maximoId() {
+        return (int) storage.getEstadisticas().total();
     }
+}
 
-    public boolean attachDocument(int id, String documento) {
-        Licencia license = licencias.get(id);
-        if (license == null) return false;
-        
-        license.setDocumentoAdjunto(documento);
-        return true;
+// Exportación del StorageManager a CSV o JSON Lines: cada partición es un rango de IDs contiguo,
+// así el archivo final sale ordenado por ID aunque las partes se escriban en paralelo
+class ExportacionStorage implements ExportadorLicencias.Particiones {
+    static final List<String> COLUMNAS = List.of("id", "legajo", "categoria", "tipo", "estado", "dias", "empleado",
+            "fechaInicio", "fechaFin", "documentoAdjunto", "creada");
+
+    private final StorageManager storage;
+    private final int ultimoId;
+    private final int porParticion;
+    private final int cantidad;
+
+    ExportacionStorage(StorageManager storage, int particiones) {
+        this.storage = storage;
+        this.ultimoId = storage.getUltimoIdPublicado();
+        this.cantidad = Math.max(1, Math.min(particiones, ultimoId));
+        this.porParticion = (int) Math.ceil(ultimoId / (double) cantidad);
+    }
+
+    static ExportadorLicencias.Resultado exportar(StorageManager storage, Path destino,
+                                                  ExportadorLicencias.Formato formato, boolean gzip) throws IOException {
+        int hilos = Runtime.getRuntime().availableProcessors();
+        return new ExportadorLicencias(COLUMNAS, formato, gzip)
+                .exportar(destino, new ExportacionStorage(storage, hilos * 4), hilos);
+    }
+
+    @Override
+    public int cantidad() {
+        return cantidad;
+    }
+
+    @Override
+    public void recorrer(int particion, ExportadorLicencias.Filas filas) {
+        int desde = particion * porParticion + 1;
+        int hasta = particion == cantidad - 1 ? ultimoId : desde + porParticion - 1;
+        storage.recorrerRango(desde, hasta, licencia -> {
+            filas.numero(licencia.getId())
+                    .numero(licencia.getLegajoEmpleado())
+                    .texto(licencia.getCategoria())
+                    .texto(licencia.getTipo())
+                    .texto(licencia.getEstado())
+                    .numero(licencia.getDias())
+                    .texto(licencia.getEmpleado())
+                    .texto(licencia.getFechaInicio())
+                    .texto(licencia.getFechaFin())
+                    .texto(licencia.getDocumentoAdjunto())
+                    .fechaHora(licencia.getCreatedAt())
+                    .fin();
+        });
     }
 }
 
 // Clase principal del sistema
 public class SistemaLicenciasCompleto {
-    private static StorageManager storage = new StorageManager();
+    private static StorageManager storage = crearStorage();
     private static Scanner scanner = new Scanner(System.in);
-    private static final Map<String, String[]> TIPOS_LICENCIA = Map.of(
+    private static final int TAMANIO_PAGINA = 20;
+    static final Map<String, String[]> TIPOS_LICENCIA = Map.of(
         "Servicio", new String[]{"Vacaciones", "Adopción", "Maternidad", "Nacimiento", "Neonatología"},
         "Médica", new String[]{"Enfermedad", "Familiar enfermo", "Donación de sangre", "Prevención"}
     );
 
+    // Con -Dlicencias.datos=<directorio> los datos sobreviven al reinicio del proceso.
+    // Con -Dlicencias.bd.url (y .usuario/.contrasena) además se copian a la base de datos en segundo plano
+    private static StorageManager crearStorage() {
+        String directorio = System.getProperty("licencias.datos");
+        String url = System.getProperty("licencias.bd.url");
+        if (directorio == null && url == null) return new StorageManager();
+
+        ConexionesBD baseDatos = url == null ? null : () -> DriverManager.getConnection(url,
+                System.getProperty("licencias.bd.usuario", ""), System.getProperty("licencias.bd.contrasena", ""));
+        StorageManager persistente = new StorageManager(directorio == null ? null : Path.of(directorio), baseDatos);
+        Runtime.getRuntime().addShutdownHook(new Thread(persistente::close));
+        return persistente;
+    }
+
     public static void main(String[] args) {
-        mostrarBienvenida();
-        
-        Usuario usuario = null;
-        do {
-            usuario = login();
-            if (usuario == null) {
-                System.out.println(" Credenciales incorrectas. Intente nuevamente.\n");
+        // java SistemaLicenciasCompleto --bench [tamaños...]
+        if (args.length > 0 && args[0].equals("--bench")) {
+            int[] tamanios = Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray();
+            BenchmarkOperaciones.ejecutar(tamanios.length > 0 ? tamanios : new int[]{10_000, 100_000, 1_000_000});
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--bench-memoria")) {
+            BenchmarkMemoria.ejecutar(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+            return;
+        }
+        // java SistemaLicenciasCompleto --bench-adjuntos [megabytes...]
+        if (args.length > 0 && args[0].equals("--bench-adjuntos")) {
+            int[] megabytes = Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray();
+            try {
+                BenchmarkAdjuntos.ejecutar(megabytes.length > 0 ? megabytes : new int[]{1, 8, 32});
+            } catch (IOException e) {
+                System.err.println("Error en el benchmark de adjuntos: " + e.getMessage());
+            }
+            return;
+        }
+
+        // java SistemaLicenciasCompleto --stress [hilos] [operaciones por hilo]; sale con código 1 si algo no coincide
+        if (args.length > 0 && args[0].equals("--stress")) {
+            int hilos = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors() * 2;
+            int operaciones = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+            try {
+                if (!PruebaEstres.ejecutar(hilos, operaciones)) System.exit(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                System.err.println("Error en la prueba de estrés: " + e.getCause());
+                System.exit(1);
             }
-        } while (usuario == null);
+            return;
+        }
+
+        // java SistemaLicenciasCompleto --simular <guion>
+        if (args.length > 1 && args[0].equals("--simular")) {
+            simularCarga(Path.of(args[1]));
+            return;
+        }
+        // java -Dlicencias.datos=<directorio> SistemaLicenciasCompleto --exportar <archivo> [csv|jsonl] [gzip]
+        if (args.length > 1 && args[0].equals("--exportar")) {
+            exportarLicencias(Path.of(args[1]), args.length > 2 ? args[2] : "csv", args.length > 3 && args[3].equals("gzip"));
+            return;
+        }
+        // java SistemaLicenciasCompleto --servidor [puerto]
+        if (args.length > 0 && args[0].equals("--servidor")) {
+            iniciarServidor(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+            return;
+        }
+        // java SistemaLicenciasCompleto --carga-http <url> [clientes] [segundos] [usuario] [contraseña]
+        if (args.length > 1 && args[0].equals("--carga-http")) {
+            ejecutarCargaHttp(args);
+            return;
+        }
+
+        // Volver al login (opción 9) repite este ciclo en lugar de llamar de nuevo a main
+        boolean volverAlLogin;
+        do {
+            mostrarBienvenida();
+
+            Usuario usuario = null;
+            do {
+                usuario = login();
+                if (usuario == null) {
+                    System.out.println(" Credenciales incorrectas. Intente nuevamente.\n");
+                }
+            } while (usuario == null);
+
+            // Los cambios hechos desde el menú quedan a nombre de este usuario en el diario de auditoría
+            DiarioAuditoria.usuarioActual(usuario.getUsername());
+            volverAlLogin = menuPrincipal(usuario);
+            DiarioAuditoria.usuarioActual(null);
+        } while (volverAlLogin);
+    }
+
+    private static void simularCarga(Path guion) {
+        try {
+            new SimuladorCarga(new DestinoCargaStorage(storage, TAMANIO_PAGINA), guion).ejecutar();
+        } catch (IOException e) {
+            System.err.println("No se pudo leer el guion: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void exportarLicencias(Path destino, String formato, boolean gzip) {
+        try {
+            ExportadorLicencias.Resultado resultado = ExportacionStorage.exportar(storage, destino,
+                    ExportadorLicencias.Formato.valueOf(formato.toUpperCase(Locale.ROOT)), gzip);
+            System.out.printf(" %d licencias exportadas a %s (%d bytes) en %.2f s%n",
+                    resultado.filas(), destino, resultado.bytes(), resultado.segundos());
+        } catch (IllegalArgumentException e) {
+            System.out.println(" Formato inválido. Use csv o jsonl.");
+        } catch (IOException e) {
+            System.out.println(" No se pudo exportar: " + e.getMessage());
+        }
+    }
+
+    private static void iniciarServidor(int puerto) {
+        try {
+            ServidorLicencias servidor = new ServidorLicencias(storage, puerto);
+            servidor.iniciar();
+            System.out.printf(" API de licencias escuchando en http://localhost:%d/api/%n", servidor.puerto());
+        } catch (IOException e) {
+            System.err.println("No se pudo iniciar el servidor: " + e.getMessage());
+        }
+    }
 
-        menuPrincipal(usuario);
+    private static void ejecutarCargaHttp(String[] args) {
+        int clientes = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int segundos = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        String usuario = args.length > 4 ? args[4] : "admin";
+        String contrasena = args.length > 5 ? args[5] : "adminpass";
+        try {
+            new CargaHttp(args[1]).ejecutar(clientes, segundos, usuario, contrasena);
+        } catch (IOException e) {
+            System.err.println("Error en la prueba de carga: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private static void mostrarBienvenida() {
@@ -221,7 +4848,8 @@ public class SistemaLicenciasCompleto {
         return storage.authenticateUser(username, password);
     }
 
-    private static void menuPrincipal(Usuario usuario) {
+    // Devuelve true si el usuario eligió volver al login
+    private static boolean menuPrincipal(Usuario usuario) {
         int opcion;
         do {
             mostrarMenu(usuario);
@@ -235,12 +4863,12 @@ public class SistemaLicenciasCompleto {
             
             if (opcion == 9) {
                 System.out.println(" Regresando al login...\n");
-                main(new String[]{});
-                return;
+                return true;
             }
         } while (opcion != 0);
         
         System.out.println(" ¡Hasta luego! Sistema cerrado.");
+        return false;
     }
 
     private static void mostrarMenu(Usuario usuario) {
@@ -262,6 +4890,10 @@ public class SistemaLicenciasCompleto {
                 System.out.println("3️⃣  Modificar Licencia");
                 System.out.println("4️⃣  Adjuntar Documento");
                 System.out.println("5️⃣  Estadísticas del Sistema");
+                System.out.println("6️⃣  Métricas de Operaciones");
+                System.out.println("7️⃣  Exportar Licencias");
+                System.out.println("8️⃣  Reporte de Días de Licencia");
+                System.out.println("🔟  Buscar Licencias");
             }
             case "auditor" -> {
                 System.out.println("1️⃣  Ver Todas las Licencias");
@@ -269,6 +4901,12 @@ public class SistemaLicenciasCompleto {
                 System.out.println("3️⃣  Validar Licencia");
                 System.out.println("4️⃣  Adjuntar Documento");
                 System.out.println("5️⃣  Estadísticas del Sistema");
+                System.out.println("6️⃣  Métricas de Operaciones");
+                System.out.println("7️⃣  Validar Licencias en Lote");
+                System.out.println("8️⃣  Reporte de Licencias Superpuestas");
+                System.out.println("🔟  Historial de Auditoría");
+                System.out.println("1️⃣1️⃣ Reporte de Días de Licencia");
+                System.out.println("1️⃣2️⃣ Buscar Licencias");
             }
         }
         
@@ -303,6 +4941,10 @@ public class SistemaLicenciasCompleto {
             case 3 -> modificarLicencia(usuario.getRole());
             case 4 -> adjuntarDocumento();
             case 5 -> mostrarEstadisticas();
+            case 6 -> mostrarMetricas();
+            case 7 -> exportarLicencias();
+            case 8 -> mostrarReporteDias();
+            case 10 -> buscarLicencias();
             case 9, 0 -> {} // Manejado en menuPrincipal
             default -> System.out.println(" Opción inválida.");
         }
@@ -315,6 +4957,12 @@ public class SistemaLicenciasCompleto {
             case 3 -> validarLicencia();
             case 4 -> adjuntarDocumento();
             case 5 -> mostrarEstadisticas();
+            case 6 -> mostrarMetricas();
+            case 7 -> validarLicenciasEnLote();
+            case 8 -> mostrarConflictos();
+            case 10 -> mostrarHistorial();
+            case 11 -> mostrarReporteDias();
+            case 12 -> buscarLicencias();
             case 9, 0 -> {} // Manejado en menuPrincipal
             default -> System.out.println(" Opción inválida.");
         }
@@ -367,16 +5015,27 @@ public class SistemaLicenciasCompleto {
             return;
         }
         
-        // Crear licencia
-        Licencia licencia = storage.createLicense(usuario.getLegajo(), categoria, tipo, dias,
+        // Crear licencia, salvo que se superponga con otra del mismo empleado
+        ResultadoSolicitud resultado = storage.solicitarLicencia(usuario.getLegajo(), categoria, tipo, dias,
                                                 usuario.getUsername(), fechaInicio, fechaFin);
+        if (!resultado.aceptada()) {
+            System.out.println(" La licencia se superpone con otras ya solicitadas:");
+            if (resultado.solapadas().isEmpty()) {
+                System.out.println("  (otra solicitud en curso para las mismas fechas)");
+            }
+            for (Licencia solapada : resultado.solapadas()) {
+                System.out.println("  " + solapada.getResumen() + " | " + solapada.getFechaInicio() + " a " + solapada.getFechaFin());
+            }
+            return;
+        }
+        Licencia licencia = resultado.licencia();
         
         System.out.println("\n Licencia solicitada exitosamente!");
         System.out.printf(" Días calculados: %d%n", dias);
         System.out.printf(" ID de licencia: %d%n", licencia.getId());
     }
 
-    private static int calcularDias(String fechaInicio, String fechaFin) {
+    static int calcularDias(String fechaInicio, String fechaFin) {
         try {
             LocalDate inicio = LocalDate.parse(fechaInicio);
             LocalDate fin = LocalDate.parse(fechaFin);
@@ -405,16 +5064,11 @@ public class SistemaLicenciasCompleto {
         System.out.println("\n TODAS LAS LICENCIAS");
         System.out.println("─".repeat(50));
         
-        List<Licencia> licencias = storage.getAllLicenses();
-        if (licencias.isEmpty()) {
-            System.out.println(" No hay licencias registradas en el sistema.");
-            return;
-        }
-        
         // Mostrar resumen
         System.out.println("RESUMEN:");
-        for (Licencia licencia : licencias) {
-            System.out.println(licencia.getResumen());
+        if (!listarPaginado(cursor -> storage.getLicensesPage(cursor, TAMANIO_PAGINA))) {
+            System.out.println(" No hay licencias registradas en el sistema.");
+            return;
         }
         
         // Opción de ver detalle
@@ -430,11 +5084,79 @@ public class SistemaLicenciasCompleto {
         }
     }
 
+    // Búsqueda por empleado, legajo, tipo o documento; los resultados más relevantes primero
+    private static void buscarLicencias() {
+        System.out.println("\n BUSCAR LICENCIAS");
+        System.out.println("─".repeat(50));
+        System.out.print("Buscar (empleado, legajo, tipo o documento): ");
+        String consulta = scanner.nextLine().trim();
+        if (IndiceBusqueda.palabras(consulta).isEmpty()) {
+            System.out.println(" Debe ingresar al menos una palabra.");
+            return;
+        }
+
+        int pagina = 0;
+        while (true) {
+            ResultadoBusqueda resultado = storage.buscarLicencias(consulta, pagina, TAMANIO_PAGINA);
+            if (resultado.total() == 0) {
+                System.out.println(" No se encontraron licencias.");
+                return;
+            }
+            if (pagina == 0) System.out.printf("%d licencias encontradas.%n", resultado.total());
+            for (Licencia licencia : resultado.licencias()) {
+                System.out.println(licencia.getResumen() + " | " + licencia.getTipo()
+                        + (licencia.getDocumentoAdjunto() == null || licencia.getDocumentoAdjunto().isEmpty()
+                            ? "" : " | " + licencia.getDocumentoAdjunto()));
+            }
+            if (!resultado.hayMas()) break;
+            System.out.print("-- Enter para ver más, 0 para terminar: ");
+            if (scanner.nextLine().trim().equals("0")) break;
+            pagina++;
+        }
+
+        System.out.print("\n¿Ver detalle de alguna licencia? (ID o 0 para continuar): ");
+        int id = leerOpcion();
+        if (id > 0) {
+            Licencia licencia = storage.getLicenseById(id);
+            System.out.println(licencia != null ? licencia.getDetalle() : " Licencia no encontrada.");
+        }
+    }
+
+    // Lista solo las licencias en estado 'Pendiente' usando el índice por estado
+    private static boolean verLicenciasPendientes() {
+        System.out.println("PENDIENTES:");
+        if (!listarPaginado(cursor -> storage.getLicensesPageByEstado("Pendiente", cursor, TAMANIO_PAGINA))) {
+            System.out.println(" No hay licencias pendientes de validación.");
+            return false;
+        }
+        return true;
+    }
+
+    // Muestra los resúmenes de a una página por vez. Devuelve false si no había ninguna licencia
+    private static boolean listarPaginado(IntFunction<PaginaLicencias> proveedor) {
+        PaginaLicencias pagina = proveedor.apply(0);
+        if (pagina.licencias().isEmpty()) return false;
+
+        while (true) {
+            for (Licencia licencia : pagina.licencias()) {
+                System.out.println(licencia.getResumen());
+            }
+            if (!pagina.hayMas()) return true;
+
+            System.out.print("-- Enter para ver más, 0 para terminar: ");
+            if (scanner.nextLine().trim().equals("0")) return true;
+            pagina = proveedor.apply(pagina.siguienteCursor());
+        }
+    }
+
     private static void modificarLicencia(String role) {
         System.out.println("\n MODIFICAR LICENCIA");
         System.out.println("─".repeat(50));
         
-        verTodasLasLicencias();
+        if (!listarPaginado(cursor -> storage.getLicensesPage(cursor, TAMANIO_PAGINA))) {
+            System.out.println(" No hay licencias registradas en el sistema.");
+            return;
+        }
         System.out.print("\nIngrese ID de licencia a modificar (0 para cancelar): ");
         int id = leerOpcion();
         
@@ -446,6 +5168,8 @@ public class SistemaLicenciasCompleto {
             return;
         }
         
+        // Versión vista por el usuario: si alguien la cambia mientras edita, no se pisa su cambio
+        long version = licencia.getVersion();
         System.out.println("\nLicencia actual:");
         System.out.println(licencia.getDetalle());
         
@@ -471,10 +5195,11 @@ public class SistemaLicenciasCompleto {
         }
         
         // Aplicar cambios
-        if (storage.updateLicense(id, nuevoTipo, nuevosDias, nuevoEstado)) {
+        ResultadoTransicion resultado = storage.updateLicense(id, version, nuevoTipo, nuevosDias, nuevoEstado);
+        if (resultado == ResultadoTransicion.APLICADA) {
             System.out.println(" Licencia modificada exitosamente.");
         } else {
-            System.out.println(" Error al modificar la licencia.");
+            informarRechazo(resultado);
         }
     }
 
@@ -482,7 +5207,7 @@ public class SistemaLicenciasCompleto {
         System.out.println("\n VALIDAR LICENCIA");
         System.out.println("─".repeat(50));
         
-        verTodasLasLicencias();
+        if (!verLicenciasPendientes()) return;
         System.out.print("\nIngrese ID de licencia a validar (0 para cancelar): ");
         int id = leerOpcion();
         
@@ -499,6 +5224,7 @@ public class SistemaLicenciasCompleto {
             return;
         }
         
+        long version = licencia.getVersion();
         System.out.println("\nLicencia a validar:");
         System.out.println(licencia.getDetalle());
         
@@ -523,10 +5249,153 @@ public class SistemaLicenciasCompleto {
             return;
         }
         
-        if (storage.updateLicense(id, null, 0, nuevoEstado)) {
+        ResultadoTransicion resultado = storage.transicionar(id, version, nuevoEstado);
+        if (resultado == ResultadoTransicion.APLICADA) {
             System.out.printf(" Licencia %s exitosamente.%n", nuevoEstado.toLowerCase());
         } else {
-            System.out.println(" Error al validar la licencia.");
+            informarRechazo(resultado);
+        }
+    }
+
+    // Valida varias pendientes de una vez; cada ID se resuelve por separado
+    private static void validarLicenciasEnLote() {
+        System.out.println("\n VALIDAR LICENCIAS EN LOTE");
+        System.out.println("─".repeat(50));
+
+        System.out.println("Estados disponibles:");
+        for (int i = 0; i < TransicionesLicencia.ESTADOS_VALIDACION.size(); i++) {
+            System.out.printf("%d) %s%n", i + 1, TransicionesLicencia.ESTADOS_VALIDACION.get(i));
+        }
+        System.out.print("Seleccione nuevo estado: ");
+        int estadoIndex = leerOpcion();
+        if (estadoIndex < 1 || estadoIndex > TransicionesLicencia.ESTADOS_VALIDACION.size()) {
+            System.out.println(" Estado inválido.");
+            return;
+        }
+        String nuevoEstado = TransicionesLicencia.ESTADOS_VALIDACION.get(estadoIndex - 1);
+
+        System.out.print("IDs separados por coma (o 'todas' para todas las pendientes): ");
+        String entrada = scanner.nextLine().trim();
+        List<PedidoTransicion> pedidos = new ArrayList<>();
+        if (entrada.equalsIgnoreCase("todas")) {
+            // Con la versión de cada una, para no validar algo que cambió después de leerlo
+            for (Licencia licencia : storage.getLicensesByEstado("Pendiente")) {
+                pedidos.add(new PedidoTransicion(licencia.getId(), licencia.getVersion()));
+            }
+        } else {
+            try {
+                for (String parte : entrada.split(",")) {
+                    if (!parte.isBlank()) {
+                        pedidos.add(new PedidoTransicion(Integer.parseInt(parte.trim()), StorageManager.CUALQUIER_VERSION));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                System.out.println(" ID inválido: " + e.getMessage());
+                return;
+            }
+        }
+        if (pedidos.isEmpty()) {
+            System.out.println(" No hay licencias para validar.");
+            return;
+        }
+
+        List<ResultadoPedido> resultados = storage.transicionarLote(pedidos, nuevoEstado);
+        Map<ResultadoTransicion, Long> conteo = new EnumMap<>(ResultadoTransicion.class);
+        for (ResultadoPedido resultado : resultados) {
+            conteo.merge(resultado.resultado(), 1L, Long::sum);
+        }
+        conteo.forEach((resultado, cantidad) -> System.out.printf("  %s: %d%n", resultado, cantidad));
+        resultados.stream()
+                .filter(r -> r.resultado() != ResultadoTransicion.APLICADA)
+                .limit(TAMANIO_PAGINA)
+                .forEach(r -> System.out.printf("  ID %d: %s%n", r.id(), r.resultado()));
+    }
+
+    private static void mostrarHistorial() {
+        System.out.println("\n HISTORIAL DE AUDITORÍA");
+        System.out.println("─".repeat(50));
+        if (!storage.auditoriaActiva()) {
+            System.out.println(" El diario de auditoría no está activo (usar -Dlicencias.datos=<directorio>"
+                    + " o -Dlicencias.auditoria.enMemoria=true).");
+            return;
+        }
+        System.out.print("ID de licencia o nombre de usuario: ");
+        String entrada = scanner.nextLine().trim();
+        if (entrada.isEmpty()) return;
+
+        // Un número que no entra en un int ("99999999999") no puede ser un ID: se busca como usuario
+        List<EventoAuditoria> eventos;
+        try {
+            eventos = storage.getHistorialLicencia(Integer.parseInt(entrada));
+        } catch (NumberFormatException e) {
+            eventos = storage.getHistorialUsuario(entrada);
+        }
+        if (eventos.isEmpty()) {
+            System.out.println(" No hay cambios registrados.");
+            return;
+        }
+        DateTimeFormatter formato = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
+        for (int i = 0; i < eventos.size(); i++) {
+            if (i > 0 && i % TAMANIO_PAGINA == 0) {
+                System.out.print("-- Enter para ver más, 0 para terminar: ");
+                if (scanner.nextLine().trim().equals("0")) return;
+            }
+            EventoAuditoria evento = eventos.get(i);
+            StringBuilder linea = new StringBuilder()
+                    .append(formato.format(Instant.ofEpochMilli(evento.instante())))
+                    .append(" | ").append(evento.usuario())
+                    .append(" | licencia ").append(evento.licencia())
+                    .append(" | ").append(evento.accion());
+            switch (evento.accion()) {
+                case ALTA -> linea.append(": ").append(evento.tipo()).append(", ").append(evento.dias()).append(" días");
+                case DOCUMENTO -> linea.append(": ").append(evento.documento());
+                case MODIFICACION -> {
+                    if (!Objects.equals(evento.tipoAntes(), evento.tipo())) {
+                        linea.append(" | tipo: ").append(evento.tipoAntes()).append(" -> ").append(evento.tipo());
+                    }
+                    if (evento.diasAntes() != evento.dias()) {
+                        linea.append(" | días: ").append(evento.diasAntes()).append(" -> ").append(evento.dias());
+                    }
+                    if (!Objects.equals(evento.estadoAntes(), evento.estado())) {
+                        linea.append(" | estado: ").append(evento.estadoAntes()).append(" -> ").append(evento.estado());
+                    }
+                }
+            }
+            System.out.println("  " + linea);
+        }
+    }
+
+    private static void mostrarConflictos() {
+        System.out.println("\n LICENCIAS SUPERPUESTAS");
+        System.out.println("─".repeat(50));
+
+        List<ConflictoLicencias> conflictos = storage.buscarConflictos();
+        if (conflictos.isEmpty()) {
+            System.out.println(" No hay licencias superpuestas.");
+            return;
+        }
+        long empleados = conflictos.stream().mapToInt(ConflictoLicencias::legajo).distinct().count();
+        System.out.printf(" %d superposiciones en %d empleados%n", conflictos.size(), empleados);
+        for (int i = 0; i < conflictos.size(); i++) {
+            if (i > 0 && i % TAMANIO_PAGINA == 0) {
+                System.out.print("-- Enter para ver más, 0 para terminar: ");
+                if (scanner.nextLine().trim().equals("0")) return;
+            }
+            ConflictoLicencias conflicto = conflictos.get(i);
+            System.out.printf("  Legajo %d: ID %d (%s a %s) y ID %d (%s a %s), %d días en común%n",
+                    conflicto.legajo(),
+                    conflicto.primera().getId(), conflicto.primera().getFechaInicio(), conflicto.primera().getFechaFin(),
+                    conflicto.segunda().getId(), conflicto.segunda().getFechaInicio(), conflicto.segunda().getFechaFin(),
+                    conflicto.diasSolapados());
+        }
+    }
+
+    private static void informarRechazo(ResultadoTransicion resultado) {
+        switch (resultado) {
+            case NO_ENCONTRADA -> System.out.println(" Licencia no encontrada.");
+            case CONFLICTO_VERSION -> System.out.println(" Otro usuario modificó la licencia mientras tanto. Vuelva a intentarlo.");
+            case TRANSICION_INVALIDA -> System.out.println(" El cambio de estado no está permitido desde el estado actual.");
+            default -> System.out.println(" Error al guardar la licencia.");
         }
     }
 
@@ -534,7 +5403,10 @@ public class SistemaLicenciasCompleto {
         System.out.println("\n ADJUNTAR DOCUMENTO");
         System.out.println("─".repeat(50));
         
-        verTodasLasLicencias();
+        if (!listarPaginado(cursor -> storage.getLicensesPage(cursor, TAMANIO_PAGINA))) {
+            System.out.println(" No hay licencias registradas en el sistema.");
+            return;
+        }
         System.out.print("\nIngrese ID de licencia (0 para cancelar): ");
         int id = leerOpcion();
         
@@ -553,6 +5425,22 @@ public class SistemaLicenciasCompleto {
             System.out.println(" Debe ingresar un nombre de documento.");
             return;
         }
+
+        System.out.print("Archivo a guardar (vacío = solo registrar el nombre): ");
+        String archivo = scanner.nextLine().trim();
+        if (!archivo.isEmpty()) {
+            try {
+                Adjunto contenido = storage.adjuntarArchivo(id, documento, Path.of(archivo));
+                if (contenido == null) {
+                    System.out.println(" Error al adjuntar el documento.");
+                } else {
+                    System.out.printf(" Documento guardado (%d bytes, SHA-256 %s).%n", contenido.tamanio(), contenido.hash());
+                }
+            } catch (IOException | InvalidPathException e) {
+                System.out.println(" No se pudo guardar el archivo: " + e.getMessage());
+            }
+            return;
+        }
         
         if (storage.attachDocument(id, documento)) {
             System.out.println(" Documento adjuntado exitosamente.");
@@ -565,43 +5453,97 @@ public class SistemaLicenciasCompleto {
         System.out.println("\n ESTADÍSTICAS DEL SISTEMA");
         System.out.println("─".repeat(50));
         
-        List<Licencia> todasLasLicencias = storage.getAllLicenses();
+        EstadisticasLicencias estadisticas = storage.getEstadisticas();
         
-        if (todasLasLicencias.isEmpty()) {
+        if (estadisticas.total() == 0) {
             System.out.println(" No hay datos para mostrar estadísticas.");
             return;
         }
         
-        // Contar por estado
-        Map<String, Long> porEstado = todasLasLicencias.stream()
-                .collect(java.util.stream.Collectors.groupingBy(
-                    Licencia::getEstado,
-                    java.util.stream.Collectors.counting()
-                ));
-        
-        // Contar por categoría
-        Map<String, Long> porCategoria = todasLasLicencias.stream()
-                .collect(java.util.stream.Collectors.groupingBy(
-                    Licencia::getCategoria,
-                    java.util.stream.Collectors.counting()
-                ));
-        
-        System.out.printf(" Total de licencias: %d%n%n", todasLasLicencias.size());
+        System.out.printf(" Total de licencias: %d%n%n", estadisticas.total());
         
         System.out.println("Por Estado:");
-        porEstado.forEach((estado, count) -> 
+        estadisticas.porEstado().forEach((estado, count) -> 
             System.out.printf("  %s: %d%n", estado, count));
         
         System.out.println("\nPor Categoría:");
-        porCategoria.forEach((categoria, count) -> 
+        estadisticas.porCategoria().forEach((categoria, count) -> 
             System.out.printf("  %s: %d%n", categoria, count));
         
-        // Promedio de días
-        double promedioDias = todasLasLicencias.stream()
-                .mapToInt(Licencia::getDias)
-                .average()
-                .orElse(0.0);
-        
-        System.out.printf("%nPromedio de días por licencia: %.1f%n", promedioDias);
+        System.out.printf("%nPromedio de días por licencia: %.1f%n", estadisticas.promedioDias());
+    }
+
+    // Días de licencia por mes, por tipo y ranking de ausentismo, a partir de los acumulados del storage
+    private static void mostrarReporteDias() {
+        System.out.println("\n REPORTE DE DÍAS DE LICENCIA");
+        System.out.println("─".repeat(50));
+        YearMonth hasta;
+        YearMonth desde;
+        try {
+            System.out.print("Desde (AAAA-MM, vacío = últimos 12 meses): ");
+            String textoDesde = scanner.nextLine().trim();
+            System.out.print("Hasta (AAAA-MM, vacío = mes actual): ");
+            String textoHasta = scanner.nextLine().trim();
+            hasta = textoHasta.isEmpty() ? YearMonth.now() : YearMonth.parse(textoHasta);
+            desde = textoDesde.isEmpty() ? hasta.minusMonths(11) : YearMonth.parse(textoDesde);
+        } catch (DateTimeParseException e) {
+            System.out.println(" Mes inválido. Use el formato AAAA-MM.");
+            return;
+        }
+        if (desde.isAfter(hasta)) {
+            System.out.println(" El mes inicial es posterior al final.");
+            return;
+        }
+        System.out.print("Estados a contar (separados por coma, vacío = todas menos rechazadas y anuladas): ");
+        Predicate<String> estados = AnaliticaLicencias.filtroEstados(scanner.nextLine());
+
+        AnaliticaLicencias analitica = storage.getAnalitica();
+        System.out.println("\nDías por mes:");
+        analitica.diasPorMes(estados, desde, hasta).forEach((mes, dias) ->
+            System.out.printf("  %s: %d%n", mes, dias));
+
+        System.out.println("\nDías por tipo:");
+        List<Map.Entry<String, Long>> porTipo = analitica.diasPorTipo(estados, desde, hasta);
+        if (porTipo.isEmpty()) System.out.println("  (sin licencias en el período)");
+        porTipo.forEach(entrada -> System.out.printf("  %s: %d%n", entrada.getKey(), entrada.getValue()));
+
+        System.out.printf("%nEmpleados con más días de licencia (%d-%d):%n", desde.getYear(), hasta.getYear());
+        List<AnaliticaLicencias.DiasEmpleado> ausentes = analitica.topAusentes(estados, desde.getYear(), hasta.getYear(), 10);
+        for (int i = 0; i < ausentes.size(); i++) {
+            System.out.printf("  %2d. Legajo %d: %d días%n", i + 1, ausentes.get(i).legajo(), ausentes.get(i).dias());
+        }
+
+        System.out.print("\nLegajo para ver su detalle por año (vacío = ninguno): ");
+        String legajo = scanner.nextLine().trim();
+        if (legajo.isEmpty()) return;
+        try {
+            TreeMap<Integer, Long> porAnio = analitica.diasEmpleado(estados, Integer.parseInt(legajo));
+            if (porAnio.isEmpty()) System.out.println(" El empleado no tiene días de licencia registrados.");
+            porAnio.forEach((anio, dias) -> System.out.printf("  %d: %d días%n", anio, dias));
+        } catch (NumberFormatException e) {
+            System.out.println(" Legajo inválido.");
+        }
+    }
+
+    private static void mostrarMetricas() {
+        System.out.println("\n MÉTRICAS DE OPERACIONES");
+        System.out.println("─".repeat(50));
+        System.out.print(MetricasOperaciones.volcar());
+    }
+
+    private static void exportarLicencias() {
+        System.out.println("\n EXPORTAR LICENCIAS");
+        System.out.println("─".repeat(50));
+        System.out.print("Archivo destino: ");
+        String archivo = scanner.nextLine().trim();
+        if (archivo.isEmpty()) {
+            System.out.println(" Debe indicar un archivo.");
+            return;
+        }
+        System.out.print("Formato (csv/jsonl): ");
+        String formato = scanner.nextLine().trim();
+        System.out.print("¿Comprimir con gzip? (s/n): ");
+        boolean gzip = scanner.nextLine().trim().equalsIgnoreCase("s");
+        exportarLicencias(Path.of(archivo), formato.isEmpty() ? "csv" : formato, gzip);
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,33 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 // Clase abstracta Persona
 abstract class Persona {
@@ -42,48 +70,826 @@ class Licencia extends Persona {
     }
 }
 
+// Proyección reutilizable de una fila del listado: el recorrido por streaming carga cada fila
+// en la misma instancia, así que no hay que guardarla (usar aLicencia() para conservar una copia).
+class FilaLicencia extends Persona {
+    // Columnas de la exportación, en el orden en que las escribe exportar()
+    static final List<String> COLUMNAS_EXPORTACION = List.of("idLicencia", "nombre", "apellido", "categoria",
+            "fechaInicio", "fechaFin", "medico", "servicio", "estado");
+
+    private int idLicencia;
+    private int legajo;
+    private String categoria;
+    private String fechaInicio;
+    private String fechaFin;
+    private String nombreMedico;
+    private String nombreServicio;
+    private String estado;
+
+    public FilaLicencia() {
+        super(null, null);
+    }
+
+    // Columnas en el orden de LicenciaDAO.SQL_LISTAR; los IDs de referencia se traducen con la caché,
+    // que ante un ID desconocido puede recargarse con conn (el resultado tiene que estar ya leído entero)
+    void cargar(ResultSet rs, CacheReferencias referencias, Connection conn) throws SQLException {
+        cargar(rs, (tabla, columna, siNulo) -> referencias.resolver(conn, tabla, rs, columna, siNulo));
+    }
+
+    // Igual, pero solo con las tablas que ya estaban cargadas: para un cursor abierto (streaming), donde la
+    // conexión no puede ejecutar otra consulta hasta terminar de leerlo
+    void cargar(ResultSet rs, CacheReferencias.Tablas tablas) throws SQLException {
+        cargar(rs, (tabla, columna, siNulo) -> tablas.resolver(tabla, rs, columna, siNulo));
+    }
+
+    private interface Resolucion {
+        String resolver(CacheReferencias.Tabla tabla, int columna, String siNulo) throws SQLException;
+    }
+
+    private void cargar(ResultSet rs, Resolucion referencias) throws SQLException {
+        nombre = rs.getString(1);
+        apellido = rs.getString(2);
+        categoria = referencias.resolver(CacheReferencias.Tabla.CATEGORIA, 3, null);
+        fechaInicio = rs.getString(4);
+        fechaFin = rs.getString(5);
+        nombreMedico = referencias.resolver(CacheReferencias.Tabla.MEDICO, 6, "Sin médico");
+        nombreServicio = referencias.resolver(CacheReferencias.Tabla.SERVICIO, 7, "Sin servicio");
+        estado = referencias.resolver(CacheReferencias.Tabla.ESTADO, 8, "Sin estado");
+        idLicencia = rs.getInt(9);
+        legajo = rs.getInt(10);
+    }
+
+    // Suma los días de la fila actual a los acumulados; el tipo es el médico o el servicio de la licencia.
+    // Las filas con fechas inválidas no cuentan
+    void sumarA(AnaliticaLicencias analitica) {
+        try {
+            String tipo = "Sin médico".equals(nombreMedico) ? nombreServicio : nombreMedico;
+            analitica.sumar(legajo, tipo, estado, LocalDate.parse(fechaInicio), LocalDate.parse(fechaFin));
+        } catch (DateTimeParseException | NullPointerException e) {
+            // Sin fechas válidas no hay días que repartir
+        }
+    }
+
+    // Escribe la fila actual como una línea de la exportación (ver COLUMNAS_EXPORTACION)
+    void exportar(ExportadorLicencias.Filas filas) {
+        filas.numero(idLicencia).texto(nombre).texto(apellido).texto(categoria).texto(fechaInicio).texto(fechaFin)
+                .texto(nombreMedico).texto(nombreServicio).texto(estado).fin();
+    }
+
+    public Licencia aLicencia() {
+        return new Licencia(nombre, apellido, categoria, fechaInicio, fechaFin, nombreMedico, nombreServicio, estado);
+    }
+
+    @Override
+    public void mostrarInformacion() {
+        System.out.println("Licencia [Empleado: " + nombre + " " + apellido + ", Categoría: " + categoria +
+                ", Inicio: " + fechaInicio + ", Fin: " + fechaFin +
+                ", Médico: " + nombreMedico + ", Servicio: " + nombreServicio + ", Estado: " + estado + "]");
+    }
+}
+
+// Caché de las tablas de referencia (licenciacategoria, licenciamedica, licenciaservicio, estado).
+// Se cargan enteras la primera vez que se necesitan, en mapas inmutables que se reemplazan de una vez.
+// Si aparece un ID desconocido se recarga (como mucho una vez por segundo), y con TTL se recargan solas.
+class CacheReferencias {
+    enum Tabla {
+        CATEGORIA("SELECT idCatLic, Categoria FROM licenciacategoria"),
+        MEDICO("SELECT idMed, NombreMed FROM licenciamedica"),
+        SERVICIO("SELECT idSer, NombreSer FROM licenciaservicio"),
+        ESTADO("SELECT idEst, Estado FROM estado");
+
+        final String consulta;
+
+        Tabla(String consulta) {
+            this.consulta = consulta;
+        }
+    }
+
+    private static final long RECARGA_MINIMA_MS = 1000;
+
+    // Las tablas tal como estaban al cargarlas; resolver no consulta la base
+    record Tablas(Map<Tabla, Map<Integer, String>> nombres, long cargadaEn) {
+        // Traduce el ID de la columna indicada; siNulo se usa cuando la columna es NULL o el ID no existe
+        String resolver(Tabla tabla, ResultSet rs, int columna, String siNulo) throws SQLException {
+            int id = rs.getInt(columna);
+            if (rs.wasNull()) return siNulo;
+            return nombres.get(tabla).getOrDefault(id, siNulo);
+        }
+    }
+
+    private final long ttlMs;
+    private volatile Tablas actuales;
+
+    CacheReferencias(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    void invalidar() {
+        actuales = null;
+    }
+
+    // Carga las tablas si hace falta y las devuelve. Para los recorridos por streaming se pide antes de
+    // ejecutar el listado: con el cursor abierto la conexión ya no puede recargarlas
+    Tablas vigentes(Connection conn) throws SQLException {
+        return obtener(conn);
+    }
+
+    // Traduce el ID de la columna indicada; siNulo se usa cuando la columna es NULL o el ID no existe
+    String resolver(Connection conn, Tabla tabla, ResultSet rs, int columna, String siNulo) throws SQLException {
+        int id = rs.getInt(columna);
+        if (rs.wasNull()) return siNulo;
+
+        String nombre = obtener(conn).nombres().get(tabla).get(id);
+        if (nombre == null) {
+            nombre = recargarPorFalta(conn).nombres().get(tabla).get(id);
+        }
+        return nombre != null ? nombre : siNulo;
+    }
+
+    private Tablas obtener(Connection conn) throws SQLException {
+        Tablas tablas = actuales;
+        if (tablas != null && (ttlMs <= 0 || System.currentTimeMillis() - tablas.cargadaEn() < ttlMs)) {
+            return tablas;
+        }
+        synchronized (this) {
+            tablas = actuales;
+            if (tablas == null || (ttlMs > 0 && System.currentTimeMillis() - tablas.cargadaEn() >= ttlMs)) {
+                tablas = cargar(conn);
+                actuales = tablas;
+            }
+            return tablas;
+        }
+    }
+
+    private synchronized Tablas recargarPorFalta(Connection conn) throws SQLException {
+        Tablas tablas = actuales;
+        if (tablas != null && System.currentTimeMillis() - tablas.cargadaEn() < RECARGA_MINIMA_MS) {
+            return tablas;
+        }
+        tablas = cargar(conn);
+        actuales = tablas;
+        return tablas;
+    }
+
+    private static Tablas cargar(Connection conn) throws SQLException {
+        Map<Tabla, Map<Integer, String>> nombres = new EnumMap<>(Tabla.class);
+        try (Statement stmt = conn.createStatement()) {
+            for (Tabla tabla : Tabla.values()) {
+                Map<Integer, String> filas = new HashMap<>();
+                try (ResultSet rs = stmt.executeQuery(tabla.consulta)) {
+                    while (rs.next()) {
+                        filas.put(rs.getInt(1), rs.getString(2));
+                    }
+                }
+                nombres.put(tabla, Map.copyOf(filas));
+            }
+        }
+        return new Tablas(Collections.unmodifiableMap(nombres), System.currentTimeMillis());
+    }
+}
+
+// Configuración de la base de datos. Se lee de licenciasdb.properties (o del archivo indicado con
+// -Dlicencias.config) y las variables de entorno LICENCIAS_DB_URL/USUARIO/CONTRASENA tienen prioridad.
+class ConfiguracionBD {
+    final String url;
+    final String usuario;
+    final String contrasena;
+    final int tamanioPool;
+    final long esperaMaximaMs;
+    final long validarSiOciosaMs;
+    final long ociosaMaximaMs;
+    final int minimoOciosas;
+    final int sentenciasPorConexion;
+    final long ttlReferenciasMs;
+
+    ConfiguracionBD(Properties props) {
+        // useCursorFetch=true para que Connector/J respete el fetchSize de los recorridos por streaming
+        this.url = valor(props, "db.url", "LICENCIAS_DB_URL", "jdbc:mysql://localhost:3306/licenciasdb?useCursorFetch=true");
+        this.usuario = valor(props, "db.usuario", "LICENCIAS_DB_USUARIO", "root");
+        this.contrasena = valor(props, "db.contrasena", "LICENCIAS_DB_CONTRASENA", "");
+        this.tamanioPool = Integer.parseInt(props.getProperty("pool.tamanio", "10"));
+        this.esperaMaximaMs = Long.parseLong(props.getProperty("pool.esperaMaximaMs", "5000"));
+        this.validarSiOciosaMs = Long.parseLong(props.getProperty("pool.validarSiOciosaMs", "30000"));
+        this.ociosaMaximaMs = Long.parseLong(props.getProperty("pool.ociosaMaximaMs", "600000"));
+        this.minimoOciosas = Integer.parseInt(props.getProperty("pool.minimoOciosas", "1"));
+        this.sentenciasPorConexion = Integer.parseInt(props.getProperty("pool.sentenciasPorConexion", "32"));
+        this.ttlReferenciasMs = Long.parseLong(props.getProperty("cache.ttlReferenciasMs", "0"));
+        if (tamanioPool <= 0) throw new IllegalArgumentException("pool.tamanio debe ser positivo");
+    }
+
+    // Método para cargar la configuración desde el archivo (si existe) y el entorno.
+    static ConfiguracionBD cargar() {
+        Properties props = new Properties();
+        Path archivo = Path.of(System.getProperty("licencias.config", "licenciasdb.properties"));
+        if (Files.exists(archivo)) {
+            try (Reader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+                props.load(lector);
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo leer " + archivo, e);
+            }
+        }
+        return new ConfiguracionBD(props);
+    }
+
+    private static String valor(Properties props, String clave, String variable, String porDefecto) {
+        String delEntorno = System.getenv(variable);
+        return delEntorno != null ? delEntorno : props.getProperty(clave, porDefecto);
+    }
+}
+
+// Fábrica de conexiones físicas; permite usar el pool con otra base (por ejemplo una embebida en pruebas)
+interface FabricaConexiones {
+    Connection crear() throws SQLException;
+}
+
+// Métricas del pool en un momento dado
+record MetricasPool(int creadas, int enUso, int libres, int maximo, long prestamos, long timeouts,
+                    double esperaPromedioMs, double esperaMaximaMs, long sentenciasReutilizadas) {
+    public double utilizacion() {
+        return maximo == 0 ? 0.0 : (double) enUso / maximo;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Conexiones: %d en uso / %d libres / %d creadas (máx %d, utilización %.0f%%)%n" +
+                        "Préstamos: %d | Timeouts: %d | Espera promedio: %.2f ms | Espera máxima: %.2f ms%n" +
+                        "Sentencias preparadas reutilizadas: %d",
+                enUso, libres, creadas, maximo, utilizacion() * 100, prestamos, timeouts,
+                esperaPromedioMs, esperaMaximaMs, sentenciasReutilizadas);
+    }
+}
+
+// Pool de conexiones con validación, desalojo de ociosas y caché de PreparedStatement por conexión.
+// Las conexiones que entrega son envoltorios: close() las devuelve al pool y prepareStatement(sql)
+// reutiliza la sentencia ya preparada con el mismo SQL.
+class PoolConexiones implements AutoCloseable {
+    private final ConfiguracionBD config;
+    private final FabricaConexiones fabrica;
+    private final BlockingQueue<ConexionPooled> libres;
+    private final AtomicInteger creadas = new AtomicInteger();
+    private final ScheduledExecutorService desalojo;
+    private final LongAdder prestamos = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder esperaTotalNanos = new LongAdder();
+    private final AtomicLong esperaMaximaNanos = new AtomicLong();
+    private final LongAdder sentenciasReutilizadas = new LongAdder();
+    private volatile boolean cerrado;
+
+    PoolConexiones(ConfiguracionBD config) {
+        this(config, () -> DriverManager.getConnection(config.url, config.usuario, config.contrasena));
+    }
+
+    PoolConexiones(ConfiguracionBD config, FabricaConexiones fabrica) {
+        this.config = config;
+        this.fabrica = fabrica;
+        this.libres = new ArrayBlockingQueue<>(config.tamanioPool);
+        this.desalojo = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "pool-desalojo");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        long periodo = Math.max(1000, config.ociosaMaximaMs / 2);
+        desalojo.scheduleAtFixedRate(this::desalojarOciosas, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    // Método para pedir una conexión al pool; espera como máximo pool.esperaMaximaMs.
+    public Connection obtenerConexion() throws SQLException {
+        if (cerrado) throw new SQLException("El pool está cerrado");
+        long inicio = System.nanoTime();
+        long limite = inicio + TimeUnit.MILLISECONDS.toNanos(config.esperaMaximaMs);
+
+        while (true) {
+            ConexionPooled conexion = libres.poll();
+            if (conexion == null) conexion = crearSiHayLugar();
+            if (conexion == null) {
+                try {
+                    conexion = libres.poll(limite - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrumpido esperando una conexión", e);
+                }
+                if (conexion == null) {
+                    timeouts.increment();
+                    throw new SQLTimeoutException("No hay conexiones libres después de " + config.esperaMaximaMs + " ms");
+                }
+            }
+            if (!esValida(conexion)) {
+                descartar(conexion);
+                continue;
+            }
+            registrarEspera(System.nanoTime() - inicio);
+            return conexion.prestar();
+        }
+    }
+
+    public MetricasPool metricas() {
+        int total = creadas.get();
+        int disponibles = libres.size();
+        long cantidad = prestamos.sum();
+        return new MetricasPool(total, total - disponibles, disponibles, config.tamanioPool, cantidad,
+                timeouts.sum(),
+                cantidad == 0 ? 0.0 : esperaTotalNanos.sum() / 1e6 / cantidad,
+                esperaMaximaNanos.get() / 1e6,
+                sentenciasReutilizadas.sum());
+    }
+
+    @Override
+    public void close() {
+        cerrado = true;
+        desalojo.shutdownNow();
+        ConexionPooled conexion;
+        while ((conexion = libres.poll()) != null) {
+            descartar(conexion);
+        }
+    }
+
+    private ConexionPooled crearSiHayLugar() throws SQLException {
+        while (true) {
+            int actuales = creadas.get();
+            if (actuales >= config.tamanioPool) return null;
+            if (creadas.compareAndSet(actuales, actuales + 1)) break;
+        }
+        try {
+            return new ConexionPooled(fabrica.crear());
+        } catch (SQLException | RuntimeException e) {
+            creadas.decrementAndGet();
+            throw e;
+        }
+    }
+
+    // Solo se valida contra la base si la conexión estuvo ociosa un buen rato
+    private boolean esValida(ConexionPooled conexion) {
+        if (System.currentTimeMillis() - conexion.ultimoUso < config.validarSiOciosaMs) return true;
+        try {
+            return conexion.fisica.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void devolver(ConexionPooled conexion) {
+        conexion.ultimoUso = System.currentTimeMillis();
+        try {
+            if (!conexion.fisica.getAutoCommit()) {
+                conexion.fisica.rollback();
+                conexion.fisica.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            descartar(conexion);
+            return;
+        }
+        if (cerrado || !libres.offer(conexion)) descartar(conexion);
+    }
+
+    private void descartar(ConexionPooled conexion) {
+        creadas.decrementAndGet();
+        conexion.cerrarFisica();
+    }
+
+    private void desalojarOciosas() {
+        long ahora = System.currentTimeMillis();
+        for (ConexionPooled conexion : libres) {
+            if (libres.size() <= config.minimoOciosas) return;
+            if (ahora - conexion.ultimoUso > config.ociosaMaximaMs && libres.remove(conexion)) {
+                descartar(conexion);
+            }
+        }
+    }
+
+    private void registrarEspera(long nanos) {
+        prestamos.increment();
+        esperaTotalNanos.add(nanos);
+        esperaMaximaNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    // Conexión física más su caché de sentencias preparadas
+    private final class ConexionPooled {
+        final Connection fisica;
+        final Map<String, SentenciaCacheada> sentencias;
+        volatile long ultimoUso = System.currentTimeMillis();
+
+        ConexionPooled(Connection fisica) {
+            this.fisica = fisica;
+            this.sentencias = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SentenciaCacheada> eldest) {
+                    if (size() <= config.sentenciasPorConexion) return false;
+                    if (!eldest.getValue().enUso) eldest.getValue().cerrar();
+                    return !eldest.getValue().enUso;
+                }
+            };
+        }
+
+        // Cada préstamo recibe su propio envoltorio, que deja de funcionar al cerrarlo
+        Connection prestar() {
+            boolean[] devuelta = {false};
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, metodo, args) -> {
+                        String nombre = metodo.getName();
+                        if (nombre.equals("close")) {
+                            if (!devuelta[0]) {
+                                devuelta[0] = true;
+                                devolver(this);
+                            }
+                            return null;
+                        }
+                        if (nombre.equals("isClosed")) return devuelta[0];
+                        if (devuelta[0]) throw new SQLException("La conexión ya fue devuelta al pool");
+                        if (nombre.equals("prepareStatement") && args.length == 1) {
+                            return preparar((String) args[0]);
+                        }
+                        return invocar(fisica, metodo, args);
+                    });
+        }
+
+        private PreparedStatement preparar(String sql) throws SQLException {
+            SentenciaCacheada cacheada = sentencias.get(sql);
+            if (cacheada != null && !cacheada.enUso) {
+                sentenciasReutilizadas.increment();
+            } else if (cacheada == null) {
+                cacheada = new SentenciaCacheada(fisica.prepareStatement(sql));
+                sentencias.put(sql, cacheada);
+            } else {
+                // La misma sentencia ya está abierta en esta conexión: se prepara una aparte
+                return fisica.prepareStatement(sql);
+            }
+            return cacheada.prestar();
+        }
+
+        void cerrarFisica() {
+            sentencias.values().forEach(SentenciaCacheada::cerrar);
+            sentencias.clear();
+            try {
+                fisica.close();
+            } catch (SQLException e) {
+                System.err.println("Error al cerrar conexión: " + e.getMessage());
+            }
+        }
+    }
+
+    // PreparedStatement reutilizable: close() solo limpia los parámetros
+    private static final class SentenciaCacheada {
+        final PreparedStatement real;
+        boolean enUso;
+
+        SentenciaCacheada(PreparedStatement real) {
+            this.real = real;
+        }
+
+        PreparedStatement prestar() {
+            enUso = true;
+            boolean[] cerrada = {false};
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (proxy, metodo, args) -> {
+                        String nombre = metodo.getName();
+                        if (nombre.equals("close")) {
+                            if (!cerrada[0]) {
+                                cerrada[0] = true;
+                                real.clearParameters();
+                                real.clearBatch();
+                                enUso = false;
+                            }
+                            return null;
+                        }
+                        if (nombre.equals("isClosed")) return cerrada[0];
+                        if (cerrada[0]) throw new SQLException("La sentencia ya fue cerrada");
+                        return invocar(real, metodo, args);
+                    });
+        }
+
+        void cerrar() {
+            try {
+                real.close();
+            } catch (SQLException e) {
+                System.err.println("Error al cerrar sentencia: " + e.getMessage());
+            }
+        }
+    }
+
+    // Desenvuelve la excepción original para que el DAO vea la SQLException real
+    private static Object invocar(Object destino, Method metodo, Object[] args) throws Throwable {
+        try {
+            return metodo.invoke(destino, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
+
+// Fila de la tabla licencia tal como se inserta (IdMed e IdSer pueden ser null)
+record RegistroLicencia(int idLicencia, int legajo, int idCatLic, Integer idMed, Integer idSer,
+                        int idEstado, String fechaInicio, String fechaFin, int diasTotal) {
+}
+
+// Registro con el número de línea del archivo del que salió (0 si no viene de un archivo)
+record RegistroNumerado(long linea, RegistroLicencia registro) {
+}
+
+// Registro que no se pudo importar y el motivo (número de línea 0 si no viene de un archivo)
+record RechazoImportacion(long linea, String contenido, String motivo) {
+}
+
+// Resultado de una carga masiva
+record ResultadoImportacion(long insertadas, long lotes, long reintentos, List<RechazoImportacion> rechazos) {
+    @Override
+    public String toString() {
+        return String.format("Insertadas: %d | Lotes: %d | Reintentos: %d | Rechazadas: %d",
+                insertadas, lotes, reintentos, rechazos.size());
+    }
+}
+
+// Filtros opcionales para buscar licencias; null significa no filtrar por ese campo.
+// desde/hasta seleccionan las licencias que se superponen con ese rango de fechas.
+record FiltroLicencias(Integer legajo, Integer idEstado, LocalDate desde, LocalDate hasta) {
+    static FiltroLicencias todas() {
+        return new FiltroLicencias(null, null, null, null);
+    }
+}
+
+// Página de resultados de la base. siguienteCursor es el último idLicencia devuelto, o 0 si no hay más
+record PaginaLicenciasBD(List<Licencia> licencias, int siguienteCursor) {
+    public boolean hayMas() {
+        return siguienteCursor > 0;
+    }
+}
+
 // DAO para manejar licencias
 class LicenciaDAO {
+    private static final String SQL_INSERTAR = "INSERT INTO licencia (idLicencia, Legajo, idLicenciaCategoria, IdMed, IdSer, IdEstado, FechaInicio, FechaFin, DiasTotal) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int REINTENTOS_POR_LOTE = 2;
+    static final int FETCH_SIZE_POR_DEFECTO = 500;
+    // Solo licencia + empleado: categoría, médico, servicio y estado se resuelven con CacheReferencias.
+    // La columna 9 (idLicencia) es el cursor de la paginación por clave
+    static final String SQL_LISTAR = "SELECT e.nombre, e.apellido, l.idLicenciaCategoria, l.FechaInicio, l.FechaFin, " +
+            "l.IdMed, l.IdSer, l.IdEstado, l.idLicencia, l.Legajo " +
+            "FROM licencia l " +
+            "LEFT JOIN empleado e ON l.Legajo = e.Legajo";
+
+    private static final MetricasOperaciones.Operacion OP_LISTAR = MetricasOperaciones.operacion("dao.obtenerLicencias");
+    private static final MetricasOperaciones.Operacion OP_RECORRER = MetricasOperaciones.operacion("dao.recorrerLicencias");
+    private static final MetricasOperaciones.Operacion OP_BUSCAR = MetricasOperaciones.operacion("dao.buscarLicencias");
+    private static final MetricasOperaciones.Operacion OP_REGISTRAR = MetricasOperaciones.operacion("dao.registrarLicencia");
+    private static final MetricasOperaciones.Operacion OP_MODIFICAR = MetricasOperaciones.operacion("dao.modificarLicencia");
+    private static final MetricasOperaciones.Operacion OP_ELIMINAR = MetricasOperaciones.operacion("dao.eliminarLicencia");
+    private static final MetricasOperaciones.Operacion OP_LOTE = MetricasOperaciones.operacion("dao.insertarLote");
+
+    private final PoolConexiones pool;
+    private final CacheReferencias referencias;
+
+    public LicenciaDAO() {
+        this(null);
+    }
+
+    // Con un pool, los métodos sin Connection piden una conexión prestada por operación
+    public LicenciaDAO(PoolConexiones pool) {
+        this(pool, 0);
+    }
+
+    // ttlReferenciasMs: cada cuánto se recargan las tablas de referencia (0 = solo al invalidar)
+    public LicenciaDAO(PoolConexiones pool, long ttlReferenciasMs) {
+        this.pool = pool;
+        this.referencias = new CacheReferencias(ttlReferenciasMs);
+    }
+
+    // Método para descartar la caché de referencias (por ejemplo después de cargar un nuevo tipo de licencia).
+    public void invalidarReferencias() {
+        referencias.invalidar();
+    }
+
+    private Connection conexion() throws SQLException {
+        if (pool == null) throw new IllegalStateException("LicenciaDAO creado sin pool de conexiones");
+        return pool.obtenerConexion();
+    }
+
+    public ArrayList<Licencia> obtenerLicencias() {
+        try (Connection conn = conexion()) {
+            return obtenerLicencias(conn);
+        } catch (SQLException e) {
+            System.err.println("Error al obtener licencias: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    public boolean registrarLicencia(int idLicencia, int legajo, int idCatLic, Integer idMed, Integer idSer,
+                                     int idEstado, String fechaInicio, String fechaFin, int diasTotal) {
+        try (Connection conn = conexion()) {
+            return registrarLicencia(conn, idLicencia, legajo, idCatLic, idMed, idSer, idEstado, fechaInicio, fechaFin, diasTotal);
+        } catch (SQLException e) {
+            System.err.println("Error al registrar licencia: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean modificarLicencia(int idLicencia, int idEstado, String fechaFin, int diasTotal) {
+        try (Connection conn = conexion()) {
+            return modificarLicencia(conn, idLicencia, idEstado, fechaFin, diasTotal);
+        } catch (SQLException e) {
+            System.err.println("Error al modificar licencia: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean eliminarLicencia(int idLicencia) {
+        try (Connection conn = conexion()) {
+            return eliminarLicencia(conn, idLicencia);
+        } catch (SQLException e) {
+            System.err.println("Error al eliminar licencia: " + e.getMessage());
+            return false;
+        }
+    }
+
 // Método para mostrar todas las licencias guardadas en la base de datos
     public ArrayList<Licencia> obtenerLicencias(Connection conn) {
+        long inicio = System.nanoTime();
+        boolean exito = false;
         ArrayList<Licencia> licencias = new ArrayList<>();
-        String query = "SELECT e.nombre, e.apellido, lc.Categoria, l.FechaInicio, l.FechaFin, " +
-                "IFNULL(lm.NombreMed, 'Sin médico') AS Medico, " +
-                "IFNULL(ls.NombreSer, 'Sin servicio') AS Servicio, " +
-                "IFNULL(est.Estado, 'Sin estado') AS Estado " +
-                "FROM licencia l " +
-                "LEFT JOIN empleado e ON l.Legajo = e.Legajo " +
-                "LEFT JOIN licenciacategoria lc ON l.idLicenciaCategoria = lc.idCatLic " +
-                "LEFT JOIN licenciamedica lm ON l.IdMed = lm.idMed " +
-                "LEFT JOIN licenciaservicio ls ON l.IdSer = ls.idSer " +
-                "LEFT JOIN estado est ON l.IdEstado = est.idEst";
-
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
-            while (rs.next()) {
-                Licencia licencia = new Licencia(
-                        rs.getString("nombre"),
-                        rs.getString("apellido"),
-                        rs.getString("Categoria"),
-                        rs.getString("FechaInicio"),
-                        rs.getString("FechaFin"),
-                        rs.getString("Medico"),
-                        rs.getString("Servicio"),
-                        rs.getString("Estado")
-                );
-                licencias.add(licencia);
+        FilaLicencia fila = new FilaLicencia();
+        try (Statement stmt = conn.createStatement()) {
+            // Con las tablas ya cargadas, solo un ID nuevo hace consultar con el listado abierto
+            referencias.vigentes(conn);
+            try (ResultSet rs = stmt.executeQuery(SQL_LISTAR)) {
+                while (rs.next()) {
+                    fila.cargar(rs, referencias, conn);
+                    licencias.add(fila.aLicencia());
+                }
             }
+            exito = true;
         } catch (SQLException e) {
             System.err.println("Error al obtener licencias: " + e.getMessage());
+        } finally {
+            OP_LISTAR.registrar(inicio, exito);
         }
         return licencias;
     }
- // Método para insertar una nueva licencia en la base de datos.
-    public void registrarLicencia(Connection conn, int idLicencia, int legajo, int idCatLic, Integer idMed, Integer idSer,
-                                  int idEstado, String fechaInicio, String fechaFin, int diasTotal) {
-        String query = "INSERT INTO licencia (idLicencia, Legajo, idLicenciaCategoria, IdMed, IdSer, IdEstado, FechaInicio, FechaFin, DiasTotal) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+ // Método para recorrer todas las licencias sin cargarlas en memoria: cursor de solo avance y solo
+ // lectura, de a fetchSize filas, cargando cada fila en la misma FilaLicencia. Devuelve cuántas filas hubo.
+ // Con MySQL Connector/J el fetchSize se respeta si la URL tiene useCursorFetch=true (así viene por defecto).
+ // Las tablas de referencia se cargan antes de abrir el cursor; un ID que no estaba se muestra como nulo.
+    public long recorrerLicencias(Connection conn, int fetchSize, Consumer<FilaLicencia> accion) throws SQLException {
+        return recorrerLicencias(conn, Integer.MIN_VALUE, Integer.MAX_VALUE, fetchSize, accion);
+    }
 
-        try (PreparedStatement ps = conn.prepareStatement(query)) {
+ // Igual, pero solo las licencias con idLicencia entre desdeId y hastaId (inclusive), en orden de ID.
+ // Con rangos disjuntos, varias conexiones pueden recorrer la tabla en paralelo usando el índice primario.
+    public long recorrerLicencias(Connection conn, int desdeId, int hastaId, int fetchSize,
+                                  Consumer<FilaLicencia> accion) throws SQLException {
+        long inicio = System.nanoTime();
+        boolean exito = false;
+        long filas = 0;
+        FilaLicencia fila = new FilaLicencia();
+        boolean todas = desdeId == Integer.MIN_VALUE && hastaId == Integer.MAX_VALUE;
+        String sql = todas ? SQL_LISTAR : SQL_LISTAR + " WHERE l.idLicencia BETWEEN ? AND ? ORDER BY l.idLicencia";
+        CacheReferencias.Tablas tablas = referencias.vigentes(conn);
+        try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(fetchSize);
+            if (!todas) {
+                stmt.setInt(1, desdeId);
+                stmt.setInt(2, hastaId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    fila.cargar(rs, tablas);
+                    accion.accept(fila);
+                    filas++;
+                }
+            }
+            exito = true;
+        } finally {
+            OP_RECORRER.registrar(inicio, exito);
+        }
+        return filas;
+    }
+
+    public long recorrerLicencias(Consumer<FilaLicencia> accion) {
+        try (Connection conn = conexion()) {
+            return recorrerLicencias(conn, FETCH_SIZE_POR_DEFECTO, accion);
+        } catch (SQLException e) {
+            System.err.println("Error al obtener licencias: " + e.getMessage());
+            return 0;
+        }
+    }
+
+ // Versión con conexión prestada que propaga el error, para la exportación
+    public long recorrerLicencias(int desdeId, int hastaId, Consumer<FilaLicencia> accion) throws SQLException {
+        try (Connection conn = conexion()) {
+            return recorrerLicencias(conn, desdeId, hastaId, FETCH_SIZE_POR_DEFECTO, accion);
+        }
+    }
+
+ // Método para obtener el menor y el mayor idLicencia ({0, -1} si la tabla está vacía)
+    public int[] rangoIds() throws SQLException {
+        try (Connection conn = conexion();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(idLicencia), MAX(idLicencia) FROM licencia")) {
+            rs.next();
+            if (rs.getObject(1) == null) return new int[]{0, -1};
+            return new int[]{rs.getInt(1), rs.getInt(2)};
+        }
+    }
+
+ // Método para obtener las licencias como Stream perezoso. Mantiene una conexión del pool hasta que se
+ // cierra el Stream, así que debe usarse en un try-with-resources. Todos los elementos son la misma FilaLicencia.
+    public Stream<FilaLicencia> streamLicencias(int fetchSize) throws SQLException {
+        Connection conn = conexion();
+        Statement stmt = null;
+        try {
+            CacheReferencias.Tablas tablas = referencias.vigentes(conn);
+            stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(fetchSize);
+            ResultSet rs = stmt.executeQuery(SQL_LISTAR);
+            FilaLicencia fila = new FilaLicencia();
+            Spliterator<FilaLicencia> filas = new Spliterators.AbstractSpliterator<FilaLicencia>(
+                    Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super FilaLicencia> accion) {
+                    try {
+                        if (!rs.next()) return false;
+                        fila.cargar(rs, tablas);
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("Error al leer licencias: " + e.getMessage(), e);
+                    }
+                    accion.accept(fila);
+                    return true;
+                }
+            };
+            Statement sentencia = stmt;
+            return StreamSupport.stream(filas, false).onClose(() -> {
+                try (conn; sentencia; rs) {
+                    // Se cierran el ResultSet, el Statement y se devuelve la conexión
+                } catch (SQLException e) {
+                    System.err.println("Error al cerrar el listado: " + e.getMessage());
+                }
+            });
+        } catch (SQLException | RuntimeException e) {
+            if (stmt != null) stmt.close();
+            conn.close();
+            throw e;
+        }
+    }
+ // Método para buscar licencias filtradas de a páginas. Usa paginación por clave (idLicencia > cursor)
+ // en lugar de OFFSET, así una página profunda cuesta lo mismo que la primera. Cursor 0 para empezar.
+ // Los índices que la sostienen están en Script Crear Indices.txt.
+    public PaginaLicenciasBD buscarLicencias(Connection conn, FiltroLicencias filtro, int cursor, int tamanio) throws SQLException {
+        if (tamanio <= 0) throw new IllegalArgumentException("El tamaño de página debe ser positivo");
+        long inicio = System.nanoTime();
+        boolean exito = false;
+        try (PreparedStatement ps = conn.prepareStatement(sqlBusqueda(filtro))) {
+            int i = 1;
+            ps.setInt(i++, cursor);
+            if (filtro.legajo() != null) ps.setInt(i++, filtro.legajo());
+            if (filtro.idEstado() != null) ps.setInt(i++, filtro.idEstado());
+            if (filtro.hasta() != null) ps.setDate(i++, java.sql.Date.valueOf(filtro.hasta()));
+            if (filtro.desde() != null) ps.setDate(i++, java.sql.Date.valueOf(filtro.desde()));
+            // Se pide una fila de más para saber si hay otra página
+            ps.setInt(i, tamanio + 1);
+
+            List<Licencia> licencias = new ArrayList<>(tamanio);
+            FilaLicencia fila = new FilaLicencia();
+            int ultimoId = 0;
+            boolean hayMas = false;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (licencias.size() == tamanio) {
+                        hayMas = true;
+                        break;
+                    }
+                    fila.cargar(rs, referencias, conn);
+                    licencias.add(fila.aLicencia());
+                    ultimoId = rs.getInt(9);
+                }
+            }
+            exito = true;
+            return new PaginaLicenciasBD(licencias, hayMas ? ultimoId : 0);
+        } finally {
+            OP_BUSCAR.registrar(inicio, exito);
+        }
+    }
+
+    public PaginaLicenciasBD buscarLicencias(FiltroLicencias filtro, int cursor, int tamanio) {
+        try (Connection conn = conexion()) {
+            return buscarLicencias(conn, filtro, cursor, tamanio);
+        } catch (SQLException e) {
+            System.err.println("Error al buscar licencias: " + e.getMessage());
+            return new PaginaLicenciasBD(List.of(), 0);
+        }
+    }
+
+    // Una variante de SQL por combinación de filtros: la caché de sentencias del pool las reutiliza
+    private static String sqlBusqueda(FiltroLicencias filtro) {
+        StringBuilder sql = new StringBuilder(SQL_LISTAR).append(" WHERE l.idLicencia > ?");
+        if (filtro.legajo() != null) sql.append(" AND l.Legajo = ?");
+        if (filtro.idEstado() != null) sql.append(" AND l.IdEstado = ?");
+        if (filtro.hasta() != null) sql.append(" AND l.FechaInicio <= ?");
+        if (filtro.desde() != null) sql.append(" AND l.FechaFin >= ?");
+        return sql.append(" ORDER BY l.idLicencia LIMIT ?").toString();
+    }
+ // Método para insertar una nueva licencia en la base de datos. Devuelve false si no se pudo insertar.
+    public boolean registrarLicencia(Connection conn, int idLicencia, int legajo, int idCatLic, Integer idMed, Integer idSer,
+                                     int idEstado, String fechaInicio, String fechaFin, int diasTotal) {
+        long inicio = System.nanoTime();
+        boolean exito = false;
+        try (PreparedStatement ps = conn.prepareStatement(SQL_INSERTAR)) {
             ps.setInt(1, idLicencia);
             ps.setInt(2, legajo);
             ps.setInt(3, idCatLic);
@@ -94,58 +900,724 @@ class LicenciaDAO {
             ps.setString(8, fechaFin);
             ps.setInt(9, diasTotal);
             ps.executeUpdate();
+            exito = true;
         } catch (SQLException e) {
             System.err.println("Error al registrar licencia: " + e.getMessage());
+        } finally {
+            OP_REGISTRAR.registrar(inicio, exito);
         }
+        return exito;
     }
-// Método para modificar los datos de una licencia existente.
-    public void modificarLicencia(Connection conn, int idLicencia, int idEstado, String fechaFin, int diasTotal) {
+// Método para modificar los datos de una licencia existente. Devuelve false si falló o si el ID no existe.
+    public boolean modificarLicencia(Connection conn, int idLicencia, int idEstado, String fechaFin, int diasTotal) {
         String query = "UPDATE licencia SET IdEstado = ?, FechaFin = ?, DiasTotal = ? WHERE idLicencia = ?";
+        long inicio = System.nanoTime();
+        boolean exito = false;
         try (PreparedStatement ps = conn.prepareStatement(query)) {
             ps.setInt(1, idEstado);
             ps.setString(2, fechaFin);
             ps.setInt(3, diasTotal);
             ps.setInt(4, idLicencia);
-            ps.executeUpdate();
-            System.out.println("Licencia modificada correctamente.");
+            exito = ps.executeUpdate() > 0;
         } catch (SQLException e) {
             System.err.println("Error al modificar licencia: " + e.getMessage());
+        } finally {
+            OP_MODIFICAR.registrar(inicio, exito);
         }
+        return exito;
     }
-  // Método para eliminar una licencia por su ID.
-    public void eliminarLicencia(Connection conn, int idLicencia) {
+  // Método para eliminar una licencia por su ID. Devuelve false si falló o si el ID no existe.
+    public boolean eliminarLicencia(Connection conn, int idLicencia) {
         String query = "DELETE FROM licencia WHERE idLicencia = ?";
+        long inicio = System.nanoTime();
+        boolean exito = false;
         try (PreparedStatement ps = conn.prepareStatement(query)) {
             ps.setInt(1, idLicencia);
-            ps.executeUpdate();
+            exito = ps.executeUpdate() > 0;
         } catch (SQLException e) {
             System.err.println("Error al eliminar licencia: " + e.getMessage());
+        } finally {
+            OP_ELIMINAR.registrar(inicio, exito);
+        }
+        return exito;
+    }
+// Método para insertar muchas licencias con JDBC batch: una transacción por lote de tamanioLote filas.
+// Un lote que falla por un error transitorio (timeout, conexión caída) se reintenta; si sigue fallando, o
+// si el error es de los datos (clave duplicada, FK), se inserta fila por fila para aislar las rechazadas.
+    public ResultadoImportacion registrarLicencias(Stream<RegistroLicencia> registros, int tamanioLote) {
+        return registrarLicenciasNumeradas(registros.map(registro -> new RegistroNumerado(0, registro)), tamanioLote);
+    }
+
+    // Igual que registrarLicencias, pero los rechazos informan la línea de cada registro
+    public ResultadoImportacion registrarLicenciasNumeradas(Stream<RegistroNumerado> registros, int tamanioLote) {
+        if (tamanioLote <= 0) throw new IllegalArgumentException("El tamaño de lote debe ser positivo");
+        long insertadas = 0;
+        long lotes = 0;
+        long reintentos = 0;
+        List<RechazoImportacion> rechazos = new ArrayList<>();
+
+        Iterator<RegistroNumerado> iterador = registros.iterator();
+        List<RegistroNumerado> lote = new ArrayList<>(tamanioLote);
+        while (iterador.hasNext()) {
+            lote.add(iterador.next());
+            if (lote.size() < tamanioLote && iterador.hasNext()) continue;
+
+            lotes++;
+            int intento = 0;
+            while (true) {
+                try {
+                    insertarLote(lote);
+                    insertadas += lote.size();
+                    break;
+                } catch (SQLException e) {
+                    // Reintentar un error de los datos solo repetiría el mismo rechazo
+                    if (esTransitoria(e) && intento++ < REINTENTOS_POR_LOTE) {
+                        reintentos++;
+                        continue;
+                    }
+                    insertadas += insertarDeAUno(lote, rechazos);
+                    break;
+                }
+            }
+            lote.clear();
+        }
+        return new ResultadoImportacion(insertadas, lotes, reintentos, rechazos);
+    }
+
+    // Los drivers suelen envolver la causa en una BatchUpdateException, así que se mira toda la cadena
+    private static boolean esTransitoria(SQLException e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof SQLTransientException || causa instanceof SQLRecoverableException) return true;
+        }
+        return false;
+    }
+
+    private void insertarLote(List<RegistroNumerado> lote) throws SQLException {
+        long inicio = System.nanoTime();
+        boolean exito = false;
+        try (Connection conn = conexion()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(SQL_INSERTAR)) {
+                for (RegistroNumerado registro : lote) {
+                    cargarParametros(ps, registro.registro());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+                exito = true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } finally {
+            OP_LOTE.registrar(inicio, exito);
+        }
+    }
+
+    private long insertarDeAUno(List<RegistroNumerado> lote, List<RechazoImportacion> rechazos) {
+        long insertadas = 0;
+        for (RegistroNumerado registro : lote) {
+            try (Connection conn = conexion(); PreparedStatement ps = conn.prepareStatement(SQL_INSERTAR)) {
+                cargarParametros(ps, registro.registro());
+                ps.executeUpdate();
+                insertadas++;
+            } catch (SQLException e) {
+                rechazos.add(new RechazoImportacion(registro.linea(), registro.registro().toString(), e.getMessage()));
+            }
+        }
+        return insertadas;
+    }
+
+    private static void cargarParametros(PreparedStatement ps, RegistroLicencia registro) throws SQLException {
+        ps.setInt(1, registro.idLicencia());
+        ps.setInt(2, registro.legajo());
+        ps.setInt(3, registro.idCatLic());
+        if (registro.idMed() != null) ps.setInt(4, registro.idMed()); else ps.setNull(4, Types.INTEGER);
+        if (registro.idSer() != null) ps.setInt(5, registro.idSer()); else ps.setNull(5, Types.INTEGER);
+        ps.setInt(6, registro.idEstado());
+        ps.setString(7, registro.fechaInicio());
+        ps.setString(8, registro.fechaFin());
+        ps.setInt(9, registro.diasTotal());
+    }
+}
+// Importador de licencias desde CSV. Un hilo interpreta el archivo mientras el hilo llamador inserta
+// los lotes, comunicados por una cola acotada. Columnas, en orden:
+// idLicencia,Legajo,idLicenciaCategoria,IdMed,IdSer,IdEstado,FechaInicio,FechaFin,DiasTotal
+// (IdMed/IdSer vacíos o NULL). Se ignoran las líneas vacías, las que empiezan con # y un encabezado.
+class ImportadorCsvLicencias {
+    private static final int CAPACIDAD_COLA = 10_000;
+
+    private final LicenciaDAO dao;
+    private final int tamanioLote;
+
+    ImportadorCsvLicencias(LicenciaDAO dao, int tamanioLote) {
+        this.dao = dao;
+        this.tamanioLote = tamanioLote;
+    }
+
+    // Método para importar un archivo completo; devuelve insertadas y rechazadas (incluye errores de formato).
+    public ResultadoImportacion importar(Path archivo) throws IOException {
+        BlockingQueue<Object> cola = new ArrayBlockingQueue<>(CAPACIDAD_COLA);
+        Object fin = new Object();
+        List<RechazoImportacion> malFormadas = Collections.synchronizedList(new ArrayList<>());
+        IOException[] errorLectura = new IOException[1];
+        BufferedReader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8);
+
+        Thread interprete = new Thread(() -> {
+            try (lector) {
+                String linea;
+                long numero = 0;
+                while ((linea = lector.readLine()) != null) {
+                    numero++;
+                    linea = linea.trim();
+                    if (linea.isEmpty() || linea.startsWith("#")) continue;
+                    if (numero == 1 && linea.toLowerCase().startsWith("idlicencia")) continue;
+                    try {
+                        cola.put(new RegistroNumerado(numero, interpretar(linea)));
+                    } catch (IllegalArgumentException e) {
+                        malFormadas.add(new RechazoImportacion(numero, linea, e.getMessage()));
+                    }
+                }
+            } catch (IOException e) {
+                errorLectura[0] = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    cola.put(fin);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "importador-csv");
+        // Si algo falla sin pasar por el finally de abajo, el hilo no debe impedir que la JVM termine
+        interprete.setDaemon(true);
+        interprete.start();
+
+        Stream<RegistroNumerado> registros = StreamSupport.stream(
+                new Spliterators.AbstractSpliterator<RegistroNumerado>(Long.MAX_VALUE, Spliterator.ORDERED) {
+                    @Override
+                    public boolean tryAdvance(Consumer<? super RegistroNumerado> accion) {
+                        try {
+                            Object siguiente = cola.take();
+                            if (siguiente == fin) return false;
+                            accion.accept((RegistroNumerado) siguiente);
+                            return true;
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return false;
+                        }
+                    }
+                }, false);
+
+        ResultadoImportacion resultado;
+        try {
+            resultado = dao.registrarLicenciasNumeradas(registros, tamanioLote);
+        } finally {
+            // Si la inserción falló a mitad del archivo nadie vacía la cola y el intérprete quedaría
+            // bloqueado en put() con el archivo abierto; la interrupción lo hace terminar y cerrar el lector.
+            // Si terminó bien, el intérprete ya encoló el fin y la interrupción no cambia nada
+            interprete.interrupt();
+            try {
+                interprete.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (errorLectura[0] != null) throw errorLectura[0];
+
+        List<RechazoImportacion> rechazos = new ArrayList<>(malFormadas);
+        rechazos.addAll(resultado.rechazos());
+        return new ResultadoImportacion(resultado.insertadas(), resultado.lotes(), resultado.reintentos(), rechazos);
+    }
+
+    static RegistroLicencia interpretar(String linea) {
+        String[] campos = linea.split(",", -1);
+        if (campos.length != 9) {
+            throw new IllegalArgumentException("Se esperaban 9 columnas y hay " + campos.length);
+        }
+        try {
+            return new RegistroLicencia(
+                    Integer.parseInt(campos[0].trim()),
+                    Integer.parseInt(campos[1].trim()),
+                    Integer.parseInt(campos[2].trim()),
+                    enteroOpcional(campos[3]),
+                    enteroOpcional(campos[4]),
+                    Integer.parseInt(campos[5].trim()),
+                    LocalDate.parse(campos[6].trim()).toString(),
+                    LocalDate.parse(campos[7].trim()).toString(),
+                    Integer.parseInt(campos[8].trim()));
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Valor inválido: " + e.getMessage());
+        }
+    }
+
+    private static Integer enteroOpcional(String campo) {
+        String valor = campo.trim();
+        return valor.isEmpty() || valor.equalsIgnoreCase("NULL") ? null : Integer.valueOf(valor);
+    }
+}
+
+// Benchmark de consultas contra una base vacía (pensado para una base embebida en memoria, por ejemplo
+// db.url=jdbc:h2:mem:bench;MODE=MySQL con el driver en el classpath). Crea el esquema con los scripts
+// del repositorio, hace crecer la tabla licencia y mide la mediana de cada consulta en cada tamaño.
+// Salida CSV: filas,consulta,mediana_ms
+class BenchmarkConsultas {
+    private static final int EMPLEADOS = 1000;
+    private static final int TAMANIO_PAGINA = 50;
+    private static final int REPETICIONES = 21;
+    // Por encima de este tamaño el listado completo domina el tiempo de la corrida
+    private static final int LISTADO_COMPLETO_HASTA = 100_000;
+
+    private final PoolConexiones pool;
+    private final LicenciaDAO dao;
+
+    BenchmarkConsultas(PoolConexiones pool) {
+        this.pool = pool;
+        this.dao = new LicenciaDAO(pool);
+    }
+
+    void ejecutar(int[] tamanios, boolean conIndices) throws SQLException, IOException {
+        ejecutarScript(Path.of("Script Crear Tablas.txt"));
+        if (conIndices) ejecutarScript(Path.of("Script Crear Indices.txt"));
+        cargarReferencias();
+
+        System.out.println("filas,consulta,mediana_ms");
+        int filas = 0;
+        for (int tamanio : tamanios) {
+            int desde = filas + 1;
+            dao.registrarLicencias(IntStream.rangeClosed(desde, tamanio).mapToObj(BenchmarkConsultas::generar), 1000);
+            filas = tamanio;
+
+            // Páginas profundas, desde la mitad de la tabla. Cada repetición pide otra página para que
+            // la base no pueda devolver un resultado ya calculado
+            int profundidad = filas / 2;
+            medir(filas, "keyset_profunda", i -> dao.buscarLicencias(
+                    FiltroLicencias.todas(), profundidad + i * TAMANIO_PAGINA, TAMANIO_PAGINA));
+            medir(filas, "offset_profunda", i -> paginaConOffset(profundidad + i * TAMANIO_PAGINA));
+            medir(filas, "keyset_legajo", i -> dao.buscarLicencias(
+                    new FiltroLicencias(i + 1, null, null, null), profundidad, TAMANIO_PAGINA));
+            medir(filas, "keyset_estado", i -> dao.buscarLicencias(
+                    new FiltroLicencias(null, i % 6 + 1, null, null), profundidad + i, TAMANIO_PAGINA));
+            medir(filas, "keyset_legajo_fechas", i -> dao.buscarLicencias(
+                    new FiltroLicencias(i + 1, null, LocalDate.of(2023, 1, 1), LocalDate.of(2023, 3, 31)),
+                    0, TAMANIO_PAGINA));
+
+            // Escrituras de a una por el pool; las altas usan IDs negativos para no chocar con las filas
+            // del próximo tamaño y se borran al terminar
+            int base = filas;
+            medir(filas, "dao_insertar", i -> dao.registrarLicencia(-(base + i + 1), i % EMPLEADOS + 1, 10, 501, null,
+                    1, "2023-01-01", "2023-01-03", 3));
+            borrarInsertadas();
+            if (filas <= LISTADO_COMPLETO_HASTA) {
+                medir(filas, "dao_recorrer_todas", i -> dao.recorrerLicencias(fila -> { }));
+            }
+        }
+    }
+
+    private void medir(int filas, String consulta, IntConsumer accion) {
+        accion.accept(REPETICIONES); // calentamiento
+        long[] tiempos = new long[REPETICIONES];
+        for (int i = 0; i < REPETICIONES; i++) {
+            long inicio = System.nanoTime();
+            accion.accept(i);
+            tiempos[i] = System.nanoTime() - inicio;
+        }
+        Arrays.sort(tiempos);
+        System.out.printf(Locale.ROOT, "%d,%s,%.3f%n", filas, consulta, tiempos[REPETICIONES / 2] / 1e6);
+    }
+
+    private void paginaConOffset(int offset) {
+        String sql = LicenciaDAO.SQL_LISTAR + " ORDER BY l.idLicencia LIMIT ? OFFSET ?";
+        try (Connection conn = pool.obtenerConexion(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, TAMANIO_PAGINA);
+            ps.setInt(2, offset);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rs.getInt(9);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void borrarInsertadas() {
+        try (Connection conn = pool.obtenerConexion(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM licencia WHERE idLicencia < 0");
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static RegistroLicencia generar(int id) {
+        boolean medica = id % 2 == 0;
+        LocalDate inicio = LocalDate.of(2020, 1, 1).plusDays(id % 1800);
+        return new RegistroLicencia(id, id % EMPLEADOS + 1, medica ? 10 : 11, medica ? 501 : null,
+                medica ? null : 601, id % 6 + 1, inicio.toString(), inicio.plusDays(2).toString(), 3);
+    }
+
+    private void cargarReferencias() throws SQLException {
+        try (Connection conn = pool.obtenerConexion(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO CategoriaUsuario (idUsuario, CategoriaU) VALUES (1, 'Empleado')");
+            stmt.executeUpdate("INSERT INTO LicenciaCategoria (idCatLic, Categoria) VALUES (10, 'Licencia Médica'), (11, 'Licencia de Servicio')");
+            stmt.executeUpdate("INSERT INTO LicenciaMedica (idMed, NombreMed, DiasMed, IdCatLicencia) VALUES (501, 'Reposo', 3, 10)");
+            stmt.executeUpdate("INSERT INTO LicenciaServicio (idSer, NombreSer, DiasSer, IdCatLicencia) VALUES (601, 'Curso', 3, 11)");
+            stmt.executeUpdate("INSERT INTO Estado (idEst, Estado) VALUES (1, 'Solicitada'), (2, 'Pendiente'), " +
+                    "(3, 'Otorgada'), (4, 'Rechazada'), (5, 'Suspendida'), (6, 'Anulada')");
+        }
+        try (Connection conn = pool.obtenerConexion();
+             PreparedStatement ps = conn.prepareStatement("INSERT INTO Empleado (Legajo, nombre, apellido, IdCategoriaUsuario) VALUES (?, ?, ?, 1)")) {
+            for (int legajo = 1; legajo <= EMPLEADOS; legajo++) {
+                ps.setInt(1, legajo);
+                ps.setString(2, "Nombre" + legajo);
+                ps.setString(3, "Apellido" + legajo);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    // Ejecuta las sentencias separadas por ';' de uno de los scripts, ignorando comentarios "--"
+    private void ejecutarScript(Path script) throws SQLException, IOException {
+        StringBuilder sinComentarios = new StringBuilder();
+        for (String linea : Files.readAllLines(script, StandardCharsets.UTF_8)) {
+            if (!linea.trim().startsWith("--")) sinComentarios.append(linea).append('\n');
+        }
+        try (Connection conn = pool.obtenerConexion(); Statement stmt = conn.createStatement()) {
+            for (String sentencia : sinComentarios.toString().split(";")) {
+                if (!sentencia.isBlank()) stmt.execute(sentencia);
+            }
+        }
+    }
+}
+
+// Destino del SimuladorCarga sobre la base de datos: las escrituras y los listados pasan por LicenciaDAO.
+// El catálogo sale de las tablas de referencia (categoría -> nombres de licencia médica o de servicio)
+// y los legajos del guion se reparten entre los empleados que existen en la base.
+class DestinoCargaDAO implements SimuladorCarga.DestinoCarga {
+    private final PoolConexiones pool;
+    private final LicenciaDAO dao;
+    private final Map<String, List<String>> catalogo = new LinkedHashMap<>();
+    // "Categoria/Tipo" -> {idCatLic, idMed, idSer} (0 si no corresponde)
+    private final Map<String, int[]> idsPorTipo = new HashMap<>();
+    private final Map<String, Integer> idsEstado = new HashMap<>();
+    private final int[] legajos;
+    private final AtomicInteger ultimoId;
+
+    DestinoCargaDAO(PoolConexiones pool, LicenciaDAO dao) throws SQLException {
+        this.pool = pool;
+        this.dao = dao;
+        List<Integer> legajosBD = new ArrayList<>();
+        int maximo;
+        try (Connection conn = pool.obtenerConexion(); Statement stmt = conn.createStatement()) {
+            cargarTipos(stmt, "SELECT c.Categoria, m.NombreMed, c.idCatLic, m.idMed FROM licenciamedica m " +
+                    "JOIN licenciacategoria c ON m.IdCatLicencia = c.idCatLic", true);
+            cargarTipos(stmt, "SELECT c.Categoria, s.NombreSer, c.idCatLic, s.idSer FROM licenciaservicio s " +
+                    "JOIN licenciacategoria c ON s.IdCatLicencia = c.idCatLic", false);
+            try (ResultSet rs = stmt.executeQuery("SELECT idEst, Estado FROM estado")) {
+                while (rs.next()) idsEstado.put(rs.getString(2), rs.getInt(1));
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT Legajo FROM empleado ORDER BY Legajo")) {
+                while (rs.next()) legajosBD.add(rs.getInt(1));
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(idLicencia), 0) FROM licencia")) {
+                rs.next();
+                maximo = rs.getInt(1);
+            }
+        }
+        if (legajosBD.isEmpty()) throw new IllegalStateException("No hay empleados cargados en la base");
+        for (String estado : List.of("Solicitada", "Pendiente")) {
+            if (!idsEstado.containsKey(estado)) throw new IllegalStateException("Falta el estado '" + estado + "'");
+        }
+        this.legajos = legajosBD.stream().mapToInt(Integer::intValue).toArray();
+        this.ultimoId = new AtomicInteger(maximo);
+    }
+
+    private void cargarTipos(Statement stmt, String sql, boolean medica) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                String categoria = rs.getString(1);
+                String tipo = rs.getString(2);
+                catalogo.computeIfAbsent(categoria, c -> new ArrayList<>()).add(tipo);
+                idsPorTipo.put(categoria + "/" + tipo, new int[]{rs.getInt(3), medica ? rs.getInt(4) : 0, medica ? 0 : rs.getInt(4)});
+            }
+        }
+    }
+
+    @Override
+    public Map<String, List<String>> catalogo() {
+        return catalogo;
+    }
+
+    @Override
+    public void cargar(Stream<SimuladorCarga.Solicitud> solicitudes) {
+        ResultadoImportacion resultado = dao.registrarLicencias(solicitudes.map(this::registro), 1000);
+        if (!resultado.rechazos().isEmpty()) {
+            System.err.println("Licencias sintéticas rechazadas: " + resultado.rechazos().size());
+        }
+    }
+
+    @Override
+    public boolean solicitar(SimuladorCarga.Solicitud solicitud) {
+        RegistroLicencia r = registro(solicitud);
+        return dao.registrarLicencia(r.idLicencia(), r.legajo(), r.idCatLic(), r.idMed(), r.idSer(), r.idEstado(),
+                r.fechaInicio(), r.fechaFin(), r.diasTotal());
+    }
+
+    @Override
+    public int listar(int cursor, int tamanio) {
+        return dao.buscarLicencias(FiltroLicencias.todas(), cursor, tamanio).licencias().size();
+    }
+
+    // Se lee el estado y la fecha de inicio actuales para recalcular el fin como lo haría el operador
+    @Override
+    public boolean modificar(int id, int dias) {
+        int idEstado;
+        LocalDate inicio;
+        try (Connection conn = pool.obtenerConexion();
+             PreparedStatement ps = conn.prepareStatement("SELECT IdEstado, FechaInicio FROM licencia WHERE idLicencia = ?")) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return false;
+                idEstado = rs.getInt(1);
+                inicio = rs.getDate(2).toLocalDate();
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+        if (idEstado == idsEstado.get("Solicitada")) idEstado = idsEstado.get("Pendiente");
+        return dao.modificarLicencia(id, idEstado, inicio.plusDays(dias - 1L).toString(), dias);
+    }
+
+    @Override
+    public boolean validar(String estado) {
+        Integer idEstado = idsEstado.get(estado);
+        if (idEstado == null) return false;
+        int desde = ThreadLocalRandom.current().nextInt(Math.max(1, ultimoId.get()));
+        try (Connection conn = pool.obtenerConexion();
+             PreparedStatement ps = conn.prepareStatement("SELECT idLicencia, FechaFin, DiasTotal FROM licencia " +
+                     "WHERE IdEstado = ? AND idLicencia > ? ORDER BY idLicencia LIMIT 1")) {
+            ps.setInt(1, idsEstado.get("Pendiente"));
+            ps.setInt(2, desde);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return false;
+                return dao.modificarLicencia(rs.getInt(1), idEstado, rs.getString(2), rs.getInt(3));
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // LicenciaDAO no tiene estadísticas; es la misma agregación que muestra el menú del otro programa
+    @Override
+    public long estadisticas() {
+        long total = 0;
+        try (Connection conn = pool.obtenerConexion(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT IdEstado, COUNT(*) FROM licencia GROUP BY IdEstado")) {
+            while (rs.next()) total += rs.getLong(2);
+        } catch (SQLException e) {
+            return -1;
         }
+        return total;
+    }
+
+    @Override
+    public int maximoId() {
+        return ultimoId.get();
+    }
+
+    private RegistroLicencia registro(SimuladorCarga.Solicitud solicitud) {
+        int[] ids = idsPorTipo.get(solicitud.categoria() + "/" + solicitud.tipo());
+        return new RegistroLicencia(ultimoId.incrementAndGet(), legajos[Math.floorMod(solicitud.legajo(), legajos.length)],
+                ids[0], ids[1] == 0 ? null : ids[1], ids[2] == 0 ? null : ids[2], idsEstado.get("Solicitada"),
+                solicitud.inicio().toString(), solicitud.fin().toString(), solicitud.dias());
     }
 }
+
+// Clase para dividir la tabla licencia en rangos de idLicencia contiguos y disjuntos, uno por partición.
+// La última partición llega hasta Integer.MAX_VALUE para incluir las licencias dadas de alta después de
+// medir el rango; cada una se recorre por streaming con su propia conexión del pool
+class RangosIdLicencia {
+    private final LicenciaDAO dao;
+    private final int desde;
+    private final long porParticion;
+    private final int cantidad;
+
+    RangosIdLicencia(LicenciaDAO dao, int particiones) throws SQLException {
+        this.dao = dao;
+        int[] rango = dao.rangoIds();
+        long ancho = (long) rango[1] - rango[0] + 1;
+        this.desde = rango[0];
+        this.cantidad = (int) Math.max(1, Math.min(particiones, ancho));
+        this.porParticion = Math.max(1, (ancho + cantidad - 1) / cantidad);
+    }
+
+    int cantidad() {
+        return cantidad;
+    }
+
+    void recorrer(int particion, Consumer<FilaLicencia> accion) throws SQLException {
+        long inicio = desde + particion * porParticion;
+        long fin = particion == cantidad - 1 ? Integer.MAX_VALUE : inicio + porParticion - 1;
+        if (inicio > Integer.MAX_VALUE) return;
+        dao.recorrerLicencias((int) inicio, (int) Math.min(fin, Integer.MAX_VALUE), accion);
+    }
+}
+
+// Exportación de la tabla licencia a CSV o JSON Lines: cada partición es un rango de idLicencia que se
+// recorre con su propia conexión del pool, así que la cantidad de hilos no debe superar el máximo del pool
+class ExportacionDAO implements ExportadorLicencias.Particiones {
+    private final RangosIdLicencia rangos;
+
+    ExportacionDAO(LicenciaDAO dao, int particiones) throws SQLException {
+        this.rangos = new RangosIdLicencia(dao, particiones);
+    }
+
+    static ExportadorLicencias.Resultado exportar(PoolConexiones pool, LicenciaDAO dao, Path destino,
+                                                  ExportadorLicencias.Formato formato, boolean gzip)
+            throws SQLException, IOException {
+        int hilos = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), pool.metricas().maximo() - 1));
+        return new ExportadorLicencias(FilaLicencia.COLUMNAS_EXPORTACION, formato, gzip)
+                .exportar(destino, new ExportacionDAO(dao, hilos * 4), hilos);
+    }
+
+    @Override
+    public int cantidad() {
+        return rangos.cantidad();
+    }
+
+    @Override
+    public void recorrer(int particion, ExportadorLicencias.Filas filas) throws SQLException {
+        rangos.recorrer(particion, fila -> fila.exportar(filas));
+    }
+}
+
+// Reporte de días de licencia sobre la tabla licencia: cada partición es un rango de idLicencia que se
+// recorre por streaming con su propia conexión y suma en sus propios acumulados; fork-join los combina
+class AnaliticaDAO implements AnaliticaLicencias.Particiones {
+    private final RangosIdLicencia rangos;
+
+    AnaliticaDAO(LicenciaDAO dao, int particiones) throws SQLException {
+        this.rangos = new RangosIdLicencia(dao, particiones);
+    }
+
+    // Tantas particiones como conexiones puede prestar el pool sin dejar sin ninguna al resto del programa
+    static AnaliticaLicencias calcular(PoolConexiones pool, LicenciaDAO dao) throws SQLException {
+        return AnaliticaLicencias.calcular(new AnaliticaDAO(dao, Math.max(1, pool.metricas().maximo() - 1)));
+    }
+
+    @Override
+    public int cantidad() {
+        return rangos.cantidad();
+    }
+
+    @Override
+    public void recorrer(int particion, AnaliticaLicencias analitica) throws SQLException {
+        rangos.recorrer(particion, fila -> fila.sumarA(analitica));
+    }
+}
+
 // Clase principal que maneja todo el sistema
 public class SistemaLicencias_ModificadoFinal {
-// Función para conectar con la base de datos.
+// Función para correr el benchmark de consultas con la base configurada en licenciasdb.properties.
+    private static void ejecutarBenchmark(String[] args) {
+        boolean conIndices = args.length == 0 || !args[0].equals("sin-indices");
+        int[] tamanios = Arrays.stream(args).filter(a -> a.matches("\\d+")).mapToInt(Integer::parseInt).toArray();
+        if (tamanios.length == 0) tamanios = new int[]{10_000, 100_000, 1_000_000};
+        try (PoolConexiones pool = new PoolConexiones(ConfiguracionBD.cargar())) {
+            new BenchmarkConsultas(pool).ejecutar(tamanios, conIndices);
+        } catch (SQLException | IOException e) {
+            System.err.println("Error en el benchmark: " + e.getMessage());
+        }
+    }
+
+// Función para correr un guion del SimuladorCarga contra la base configurada.
+    private static void simularCarga(Path guion) {
+        try (PoolConexiones pool = new PoolConexiones(ConfiguracionBD.cargar())) {
+            LicenciaDAO dao = new LicenciaDAO(pool);
+            new SimuladorCarga(new DestinoCargaDAO(pool, dao), guion).ejecutar();
+        } catch (SQLException | IOException e) {
+            System.err.println("Error en la simulación: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+// Función para exportar todas las licencias a un archivo CSV o JSON Lines (opcionalmente .gz).
+    private static void exportarLicencias(PoolConexiones pool, LicenciaDAO dao, Path destino, String formato, boolean gzip) {
+        try {
+            ExportadorLicencias.Resultado resultado = ExportacionDAO.exportar(pool, dao, destino,
+                    ExportadorLicencias.Formato.valueOf(formato.toUpperCase(Locale.ROOT)), gzip);
+            System.out.printf("%d licencias exportadas a %s (%d bytes) en %.2f s%n",
+                    resultado.filas(), destino, resultado.bytes(), resultado.segundos());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Formato inválido. Use csv o jsonl.");
+        } catch (SQLException | IOException e) {
+            System.err.println("Error al exportar: " + e.getMessage());
+        }
+    }
+
+// Función para mostrar los días de licencia por mes, por tipo y los empleados con más días en un rango de años.
+    private static void mostrarReporteDias(PoolConexiones pool, LicenciaDAO dao, int desdeAnio, int hastaAnio,
+                                           Predicate<String> estados) {
+        try {
+            long inicio = System.nanoTime();
+            AnaliticaLicencias analitica = AnaliticaDAO.calcular(pool, dao);
+            YearMonth desde = YearMonth.of(desdeAnio, 1);
+            YearMonth hasta = YearMonth.of(hastaAnio, 12);
+            System.out.println("Días por mes:");
+            analitica.diasPorMes(estados, desde, hasta).forEach((mes, dias) -> System.out.println("  " + mes + ": " + dias));
+            System.out.println("Días por tipo:");
+            analitica.diasPorTipo(estados, desde, hasta)
+                    .forEach(entrada -> System.out.println("  " + entrada.getKey() + ": " + entrada.getValue()));
+            System.out.println("Empleados con más días de licencia:");
+            for (AnaliticaLicencias.DiasEmpleado ausente : analitica.topAusentes(estados, desdeAnio, hastaAnio, 10)) {
+                System.out.println("  Legajo " + ausente.legajo() + ": " + ausente.dias() + " días");
+            }
+            System.out.printf("Reporte calculado en %.2f s%n", (System.nanoTime() - inicio) / 1e9);
+        } catch (SQLException | IllegalStateException e) {
+            System.err.println("Error al calcular el reporte: " + e.getMessage());
+        }
+    }
+
+// Función para conectar con la base de datos (sin pool), con los datos de licenciasdb.properties.
     public static Connection conectarBD() throws SQLException {
-        String url = "jdbc:mysql://localhost:3306/licenciasdb";// URL de la base de datos 
-        String usuario = "root";// Usuario de la base.
-        String contrasena = "Luca1905+";// Contraseña del usuario 
-        return DriverManager.getConnection(url, usuario, contrasena);// Se devuelve la conexión.
+        ConfiguracionBD config = ConfiguracionBD.cargar();
+        return DriverManager.getConnection(config.url, config.usuario, config.contrasena);// Se devuelve la conexión.
     }
     // Método principal
     public static void main(String[] args) {
+        // java SistemaLicencias_ModificadoFinal --bench-consultas [sin-indices] [tamaños...]
+        if (args.length > 0 && args[0].equals("--bench-consultas")) {
+            ejecutarBenchmark(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // java SistemaLicencias_ModificadoFinal --exportar <archivo> [csv|jsonl] [gzip]
+        if (args.length > 1 && args[0].equals("--exportar")) {
+            ConfiguracionBD config = ConfiguracionBD.cargar();
+            try (PoolConexiones pool = new PoolConexiones(config)) {
+                exportarLicencias(pool, new LicenciaDAO(pool, config.ttlReferenciasMs), Path.of(args[1]),
+                        args.length > 2 ? args[2] : "csv", args.length > 3 && args[3].equals("gzip"));
+            }
+            return;
+        }
+        // java SistemaLicencias_ModificadoFinal --simular <guion>
+        if (args.length > 1 && args[0].equals("--simular")) {
+            simularCarga(Path.of(args[1]));
+            return;
+        }
        // Scanner para leer entrada del usuario
 
         Scanner sc = new Scanner(System.in);
 
-        try (Connection conn = conectarBD()) {
-            if (conn == null) {
-                System.out.println("No se pudo conectar a la base de datos.");
-                return;
-            }
+        ConfiguracionBD config = ConfiguracionBD.cargar();
+        try (PoolConexiones pool = new PoolConexiones(config)) {
+            // Se pide una conexión al arrancar para avisar enseguida si la base no responde
+            pool.obtenerConexion().close();
             System.out.println("Conexión exitosa.");
 // Instancia de la clase DAO para acceder a la base de datos
-            LicenciaDAO dao = new LicenciaDAO();
+            LicenciaDAO dao = new LicenciaDAO(pool, config.ttlReferenciasMs);
  // Menú de opciones
             while (true) {
                 System.out.println("\n--- MENÚ ---");
@@ -154,17 +1626,22 @@ public class SistemaLicencias_ModificadoFinal {
                 System.out.println("3. Modificar licencia existente");
                 System.out.println("4. Eliminar licencia");
                 System.out.println("5. Salir");
+                System.out.println("6. Ver métricas del pool de conexiones");
+                System.out.println("7. Importar licencias desde CSV");
+                System.out.println("8. Recargar tablas de referencia");
+                System.out.println("9. Ver métricas de operaciones");
+                System.out.println("10. Exportar licencias (CSV/JSONL)");
+                System.out.println("11. Reporte de días de licencia");
 
                 int opcion = sc.nextInt();
                 sc.nextLine();
 
                 switch (opcion) {
                     case 1:
-                        ArrayList<Licencia> licencias = dao.obtenerLicencias(conn);
-                        if (licencias.isEmpty()) {
+                        // Se imprimen a medida que llegan, sin juntar todo el listado en memoria
+                        long mostradas = dao.recorrerLicencias(FilaLicencia::mostrarInformacion);
+                        if (mostradas == 0) {
                             System.out.println("No hay licencias registradas.");
-                        } else {
-                            for (Licencia l : licencias) l.mostrarInformacion();
                         }
                         break;
                     case 2:
@@ -200,8 +1677,9 @@ public class SistemaLicencias_ModificadoFinal {
                             System.out.println("Cantidad de días totales:");
                             int dias = sc.nextInt();
 
-                            dao.registrarLicencia(conn, idLicencia, legajo, idCat, idMed, idSer, idEstado, fi, ff, dias);
-                            System.out.println("Licencia registrada correctamente.");
+                            if (dao.registrarLicencia(idLicencia, legajo, idCat, idMed, idSer, idEstado, fi, ff, dias)) {
+                                System.out.println("Licencia registrada correctamente.");
+                            }
                         } catch (Exception ex) {
                             System.err.println("Error al registrar datos: " + ex.getMessage());
                         }
@@ -216,17 +1694,69 @@ public class SistemaLicencias_ModificadoFinal {
                         String nuevaFechaFin = sc.nextLine();
                         System.out.println("Nuevos días totales:");
                         int nuevosDias = sc.nextInt();
-                        dao.modificarLicencia(conn, idLicMod, nuevoEstado, nuevaFechaFin, nuevosDias);
+                        if (dao.modificarLicencia(idLicMod, nuevoEstado, nuevaFechaFin, nuevosDias)) {
+                            System.out.println("Licencia modificada correctamente.");
+                        } else {
+                            System.out.println("No se modificó ninguna licencia.");
+                        }
                         break;
                     case 4:
                         System.out.println("Ingrese el ID de la licencia a eliminar:");
                         int idLic = sc.nextInt();
-                        dao.eliminarLicencia(conn, idLic);
-                        System.out.println("Licencia eliminada.");
+                        if (dao.eliminarLicencia(idLic)) {
+                            System.out.println("Licencia eliminada.");
+                        } else {
+                            System.out.println("No se eliminó ninguna licencia.");
+                        }
                         break;
                     case 5:
                         System.out.println("Saliendo...");
                         return;
+                    case 6:
+                        System.out.println(pool.metricas());
+                        break;
+                    case 7:
+                        System.out.println("Ruta del archivo CSV:");
+                        String ruta = sc.nextLine().trim();
+                        try {
+                            ResultadoImportacion resultado = new ImportadorCsvLicencias(dao, 500).importar(Path.of(ruta));
+                            System.out.println(resultado);
+                            for (RechazoImportacion rechazo : resultado.rechazos()) {
+                                System.out.println("  Línea " + rechazo.linea() + ": " + rechazo.contenido() + " -> " + rechazo.motivo());
+                            }
+                        } catch (IOException ex) {
+                            System.err.println("Error al leer el archivo: " + ex.getMessage());
+                        }
+                        break;
+                    case 8:
+                        dao.invalidarReferencias();
+                        System.out.println("Las tablas de referencia se recargarán en la próxima consulta.");
+                        break;
+                    case 9:
+                        System.out.print(MetricasOperaciones.volcar());
+                        break;
+                    case 10:
+                        System.out.println("Archivo destino:");
+                        String archivo = sc.nextLine().trim();
+                        System.out.println("Formato (csv/jsonl):");
+                        String formato = sc.nextLine().trim();
+                        System.out.println("¿Comprimir con gzip? (s/n):");
+                        boolean gzip = sc.nextLine().trim().equalsIgnoreCase("s");
+                        exportarLicencias(pool, dao, Path.of(archivo), formato.isEmpty() ? "csv" : formato, gzip);
+                        break;
+                    case 11:
+                        System.out.println("Desde el año:");
+                        int desdeAnio = sc.nextInt();
+                        System.out.println("Hasta el año:");
+                        int hastaAnio = sc.nextInt();
+                        sc.nextLine();
+                        if (desdeAnio > hastaAnio) {
+                            System.out.println("El año inicial es posterior al final.");
+                        } else {
+                            System.out.println("Estados a contar (separados por coma, vacío = todas menos rechazadas y anuladas):");
+                            mostrarReporteDias(pool, dao, desdeAnio, hastaAnio, AnaliticaLicencias.filtroEstados(sc.nextLine()));
+                        }
+                        break;
                     default:
                         System.out.println("Opción inválida.");
                         break;